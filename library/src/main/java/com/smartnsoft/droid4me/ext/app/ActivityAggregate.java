@@ -22,6 +22,12 @@
 
 package com.smartnsoft.droid4me.ext.app;
 
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
 import android.app.Activity;
 import android.app.Application;
 import android.os.Bundle;
@@ -39,6 +45,10 @@ import com.smartnsoft.droid4me.app.Smartable;
 import com.smartnsoft.droid4me.ext.app.ActivityAnnotations.ActionBarBehavior;
 import com.smartnsoft.droid4me.ext.app.ActivityAnnotations.ActionBarTitleBehavior;
 import com.smartnsoft.droid4me.ext.app.ActivityAnnotations.ActivityAnnotation;
+import com.smartnsoft.droid4me.ext.app.ActivityAnnotations.PrefetchAnnotation;
+import com.smartnsoft.droid4me.ext.app.FragmentAggregate.Prefetcher;
+import com.smartnsoft.droid4me.ext.json.jackson.CancellationToken;
+import com.smartnsoft.droid4me.ext.ws.JacksonURLConnectionWebServiceCaller;
 import com.smartnsoft.droid4me.log.Logger;
 import com.smartnsoft.droid4me.log.LoggerFactory;
 import com.smartnsoft.droid4me.support.v4.app.SmartFragment;
@@ -58,6 +68,8 @@ public abstract class ActivityAggregate<SmartApplicationClass extends Applicatio
 
   protected final static Logger log = LoggerFactory.getInstance(ActivityAggregate.class);
 
+  private static ExecutorService prefetchingExecutor;
+
   protected final Activity activity;
 
   protected final Smartable<?> smartable;
@@ -70,6 +82,12 @@ public abstract class ActivityAggregate<SmartApplicationClass extends Applicatio
 
   private int lastBackstackCount;
 
+  private CancellationToken cancellationToken;
+
+  private Class<?> prefetchedFragmentClass;
+
+  private Future<Object> prefetchedBusinessObjects;
+
   public ActivityAggregate(Activity activity, Smartable<?> smartable, ActivityAnnotation activityAnnotation)
   {
     this.activity = activity;
@@ -234,6 +252,13 @@ public abstract class ActivityAggregate<SmartApplicationClass extends Applicatio
   {
     if (activityAnnotation != null)
     {
+      // When the activity is being restored, its fragment has already been restored by the fragment manager along with its own state, hence
+      // nothing is prefetched
+      if (activity instanceof FragmentActivity == false || ((FragmentActivity) activity).getSupportFragmentManager().findFragmentById(activityAnnotation.fragmentContainerIdentifier()) == null)
+      {
+        // The business objects of the fragment are retrieved while the layout is inflated and the fragment created
+        prefetchBusinessObjects(activityAnnotation.fragmentClass());
+      }
       activity.setContentView(activityAnnotation.contentViewIdentifier());
       final int toolbarIdentifier = activityAnnotation.toolbarIdentifier();
       if (toolbarIdentifier > 0 && activity instanceof AppCompatActivity)
@@ -255,6 +280,116 @@ public abstract class ActivityAggregate<SmartApplicationClass extends Applicatio
     }
   }
 
+  /**
+   * Starts retrieving in the background the business objects of the provided fragment class, provided it declares a
+   * {@link PrefetchAnnotation}.
+   *
+   * @param fragmentClass the class of the fragment which is about to be displayed
+   */
+  protected void prefetchBusinessObjects(Class<? extends SmartFragment<?>> fragmentClass)
+  {
+    final PrefetchAnnotation prefetchAnnotation = fragmentClass.getAnnotation(PrefetchAnnotation.class);
+    if (prefetchAnnotation == null)
+    {
+      return;
+    }
+    final Prefetcher prefetcher;
+    try
+    {
+      prefetcher = prefetchAnnotation.prefetcherClass().newInstance();
+    }
+    catch (Exception exception)
+    {
+      if (log.isErrorEnabled())
+      {
+        log.error("Unable to instanciate the prefetcher '" + prefetchAnnotation.prefetcherClass().getSimpleName() + "'", exception);
+      }
+      return;
+    }
+    final Application application = activity.getApplication();
+    final Bundle arguments = activity.getIntent().getExtras();
+    final CancellationToken theCancellationToken = getCancellationToken();
+    final ExecutorService executor;
+    synchronized (ActivityAggregate.class)
+    {
+      if (ActivityAggregate.prefetchingExecutor == null)
+      {
+        ActivityAggregate.prefetchingExecutor = Executors.newCachedThreadPool(JacksonURLConnectionWebServiceCaller.computeDaemonThreadFactory("droid4me-prefetch"));
+      }
+      executor = ActivityAggregate.prefetchingExecutor;
+    }
+    final Future<Object> future = executor.submit(new Callable<Object>()
+    {
+      @Override
+      public Object call()
+          throws Exception
+      {
+        return prefetcher.prefetch(application, arguments, theCancellationToken);
+      }
+    });
+    synchronized (this)
+    {
+      prefetchedFragmentClass = fragmentClass;
+      prefetchedBusinessObjects = future;
+    }
+  }
+
+  /**
+   * Hands the prefetched business objects of the provided fragment class, waiting for them if necessary, and forgets them.
+   *
+   * @return the business objects, or {@code null} if none were prefetched for that class, or if the prefetching failed
+   */
+  @SuppressWarnings("unchecked")
+  final <BusinessObjectsType> BusinessObjectsType consumePrefetchedBusinessObjects(Class<?> fragmentClass)
+  {
+    final Future<Object> future;
+    synchronized (this)
+    {
+      if (prefetchedBusinessObjects == null || prefetchedFragmentClass != fragmentClass)
+      {
+        return null;
+      }
+      future = prefetchedBusinessObjects;
+      prefetchedFragmentClass = null;
+      prefetchedBusinessObjects = null;
+    }
+    try
+    {
+      return (BusinessObjectsType) future.get();
+    }
+    catch (InterruptedException exception)
+    {
+      Thread.currentThread().interrupt();
+      return null;
+    }
+    catch (ExecutionException exception)
+    {
+      if (log.isWarnEnabled())
+      {
+        log.warn("The prefetching of the business objects of the fragment '" + fragmentClass.getSimpleName() + "' failed", exception.getCause());
+      }
+      return null;
+    }
+  }
+
+  /**
+   * Cancels the prefetching of the business objects which have not been consumed yet, since no fragment will ever consume them.
+   */
+  protected void onDestroy()
+  {
+    final Future<Object> future;
+    synchronized (this)
+    {
+      future = prefetchedBusinessObjects;
+      prefetchedFragmentClass = null;
+      prefetchedBusinessObjects = null;
+    }
+    if (future != null)
+    {
+      future.cancel(true);
+    }
+  }
+
   protected void openParameterFragment()
   {
     if (activityAnnotation != null)
@@ -266,6 +401,27 @@ public abstract class ActivityAggregate<SmartApplicationClass extends Applicatio
     }
   }
 
+  /**
+   * @return the token to pass to the parsing APIs on behalf of the underlying entity: it is cancelled by the {@link ActivityInterceptor} when the
+   * entity is destroyed, and a new one is returned once the previous one has been cancelled
+   */
+  public final synchronized CancellationToken getCancellationToken()
+  {
+    if (cancellationToken == null || cancellationToken.isCancelled() == true)
+    {
+      cancellationToken = new CancellationToken();
+    }
+    return cancellationToken;
+  }
+
+  protected synchronized void cancelPendingParsings()
+  {
+    if (cancellationToken != null)
+    {
+      cancellationToken.cancel();
+    }
+  }
+
   protected abstract Object getActionBar(Activity activity);
 
   protected void setActionBarBehavior()
@@ -136,6 +136,25 @@ public final class ActivityAnnotations
 
   }
 
+  /**
+   * Declares the business objects a fragment needs, so that the {@link ActivityAggregate} of the hosting activity starts retrieving them while
+   * the activity layout is inflated and the fragment created.
+   *
+   * @see FragmentAggregate#getPrefetchedBusinessObjects()
+   */
+  @Retention(RetentionPolicy.RUNTIME)
+  @Target(ElementType.TYPE)
+  @Inherited
+  public @interface PrefetchAnnotation
+  {
+
+    /**
+     * @return the class which retrieves the business objects, which must have a public no-argument constructor
+     */
+    Class<? extends FragmentAggregate.Prefetcher> prefetcherClass();
+
+  }
+
   /**
    * Defines the available {@link ActionBar} "home" button action behaviors handled by the {@link ActivityAggregate}.
    */
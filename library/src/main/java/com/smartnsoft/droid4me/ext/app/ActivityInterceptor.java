@@ -33,6 +33,7 @@ import com.smartnsoft.droid4me.app.Smartable;
 import com.smartnsoft.droid4me.app.SmartableActivity;
 import com.smartnsoft.droid4me.ext.app.ActivityAnnotations.ActivityAnnotation;
 import com.smartnsoft.droid4me.ext.app.ActivityAnnotations.FragmentAnnotation;
+import com.smartnsoft.droid4me.ext.ws.RequestScheduler;
 import com.smartnsoft.droid4me.support.v4.app.SmartFragment;
 
 /**
@@ -112,6 +113,38 @@ public abstract class ActivityInterceptor<ActivityAggregateClass extends Activit
         smartableFragment.getAggregate().onCreateDone(activity);
       }
     }
+    else if (interceptorEvent == InterceptorEvent.onDestroy)
+    {
+      // The entity will not display the result of its pending parsings, hence we abort them: this is not done when it is only paused, because
+      // the parsings would not be restarted when it is resumed
+      if (component instanceof Smartable<?>)
+      {
+        final FragmentAggregateClass fragmentAggregate = ((Smartable<FragmentAggregateClass>) component).getAggregate();
+        if (fragmentAggregate != null)
+        {
+          fragmentAggregate.cancelPendingParsings();
+        }
+      }
+      else if (component == null && activity instanceof Smartable<?>)
+      {
+        final ActivityAggregateClass activityAggregate = ((Smartable<ActivityAggregateClass>) activity).getAggregate();
+        if (activityAggregate != null)
+        {
+          activityAggregate.cancelPendingParsings();
+          activityAggregate.onDestroy();
+        }
+      }
+    }
+
+    if (interceptorEvent == InterceptorEvent.onResume || interceptorEvent == InterceptorEvent.onPause)
+    {
+      // The pending web service calls of an entity which is not visible anymore should not delay the ones of the visible entities
+      final Object smartable = component instanceof Smartable<?> ? component : (component == null && activity instanceof Smartable<?> ? activity : null);
+      if (smartable != null)
+      {
+        RequestScheduler.getInstance().setOwnerVisible(smartable, interceptorEvent == InterceptorEvent.onResume);
+      }
+    }
   }
 
   /**
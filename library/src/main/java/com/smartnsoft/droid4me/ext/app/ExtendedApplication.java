@@ -31,6 +31,7 @@ import java.lang.reflect.Field;
 import android.content.Context;
 
 import com.smartnsoft.droid4me.app.SmartApplication;
+import com.smartnsoft.droid4me.ext.ws.ConnectionPrewarmer;
 
 import dalvik.system.DexClassLoader;
 
@@ -296,6 +297,24 @@ public abstract class ExtendedApplication
         log.error("Could not tweak the built-in 'ClassLoader'!", exception);
       }
     }
+
+    final String[] prewarmedUris = getPrewarmedUris();
+    if (prewarmedUris != null && prewarmedUris.length > 0)
+    {
+      ConnectionPrewarmer.prewarm(prewarmedUris);
+    }
+  }
+
+  /**
+   * Indicates the web services whose connection should be warmed up on a background thread when the application starts, so that the first
+   * actual call reuses an established connection.
+   *
+   * @return the URIs the warm-up requests are sent to, one per host ; {@code null} by default, which means that no connection is warmed up
+   * @see ConnectionPrewarmer
+   */
+  protected String[] getPrewarmedUris()
+  {
+    return null;
   }
 
   public final WrappedClassLoader getWrappedClassLoader()
@@ -25,13 +25,16 @@ package com.smartnsoft.droid4me.ext.app;
 import android.annotation.SuppressLint;
 import android.app.Activity;
 import android.app.Application;
+import android.os.Bundle;
 import android.support.annotation.IdRes;
 import android.support.v4.app.Fragment;
 import android.support.v4.app.Fragment.SavedState;
 import android.support.v4.app.FragmentTransaction;
 import android.support.v7.app.ActionBar;
 
+import com.smartnsoft.droid4me.app.Smartable;
 import com.smartnsoft.droid4me.ext.app.ActivityAnnotations.FragmentAnnotation;
+import com.smartnsoft.droid4me.ext.json.jackson.CancellationToken;
 import com.smartnsoft.droid4me.log.Logger;
 import com.smartnsoft.droid4me.log.LoggerFactory;
 import com.smartnsoft.droid4me.support.v4.app.SmartFragment;
@@ -50,12 +53,35 @@ public abstract class FragmentAggregate<SmartApplicationClass extends Applicatio
 
   }
 
+  /**
+   * Retrieves the business objects of a fragment ahead of its creation.
+   *
+   * @see ActivityAnnotations.PrefetchAnnotation
+   */
+  public interface Prefetcher
+  {
+
+    /**
+     * Invoked from a background thread, while the hosting activity is being created: this method should not hold any reference to the activity.
+     *
+     * @param application       the application
+     * @param arguments         the arguments the fragment will be created with, may be {@code null}
+     * @param cancellationToken the token which is cancelled when the activity is destroyed
+     * @return the business objects, which are handed to the fragment through the {@link FragmentAggregate#getPrefetchedBusinessObjects()} method
+     */
+    Object prefetch(Application application, Bundle arguments, CancellationToken cancellationToken)
+        throws Exception;
+
+  }
+
   protected final static Logger log = LoggerFactory.getInstance(FragmentAggregate.class);
 
   protected final Fragment supportFragment;
 
   private final FragmentAnnotation fragmentAnnotation;
 
+  private CancellationToken cancellationToken;
+
   public FragmentAggregate(Fragment fragment, FragmentAnnotation fragmentAnnotation)
   {
     this.fragmentAnnotation = fragmentAnnotation;
@@ -106,6 +132,50 @@ public abstract class FragmentAggregate<SmartApplicationClass extends Applicatio
     }
   }
 
+  /**
+   * @return the token to pass to the parsing APIs on behalf of the underlying entity: it is cancelled by the {@link ActivityInterceptor} when the
+   * entity is destroyed, and a new one is returned once the previous one has been cancelled
+   */
+  public final synchronized CancellationToken getCancellationToken()
+  {
+    if (cancellationToken == null || cancellationToken.isCancelled() == true)
+    {
+      cancellationToken = new CancellationToken();
+    }
+    return cancellationToken;
+  }
+
+  protected synchronized void cancelPendingParsings()
+  {
+    if (cancellationToken != null)
+    {
+      cancellationToken.cancel();
+    }
+  }
+
+  /**
+   * Returns the business objects which the hosting activity started retrieving on behalf of the fragment, through the {@link Prefetcher}
+   * declared by its {@link ActivityAnnotations.PrefetchAnnotation}, waiting for them if necessary. This method should be invoked from the
+   * {@link com.smartnsoft.droid4me.LifeCycle#onRetrieveBusinessObjects()} method, and the business objects are handed only once, so that the
+   * next refreshes retrieve them again.
+   *
+   * @return the prefetched business objects, or {@code null} if there are none, or if the prefetching failed, in which case the fragment should
+   * retrieve them by itself
+   */
+  public final <BusinessObjectsType> BusinessObjectsType getPrefetchedBusinessObjects()
+  {
+    final Activity activity = supportFragment.getActivity();
+    if (activity instanceof Smartable<?>)
+    {
+      final Object activityAggregate = ((Smartable<?>) activity).getAggregate();
+      if (activityAggregate instanceof ActivityAggregate<?>)
+      {
+        return ((ActivityAggregate<?>) activityAggregate).<BusinessObjectsType>consumePrefetchedBusinessObjects(supportFragment.getClass());
+      }
+    }
+    return null;
+  }
+
   public FragmentAnnotation getFragmentAnnotation()
   {
     return fragmentAnnotation;
@@ -32,6 +32,9 @@ import java.util.concurrent.atomic.AtomicReference;
 import android.app.Activity;
 import android.content.Context;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
 import android.view.View;
 import android.view.animation.Animation;
 import android.view.animation.Animation.AnimationListener;
@@ -45,6 +48,7 @@ import com.smartnsoft.droid4me.app.AppPublics;
 import com.smartnsoft.droid4me.app.AppPublics.BroadcastListener;
 import com.smartnsoft.droid4me.app.AppPublics.LoadingBroadcastListener;
 import com.smartnsoft.droid4me.app.Smartable;
+import com.smartnsoft.droid4me.ext.ws.JacksonURLConnectionWebServiceCaller.ContentChangeListener;
 import com.smartnsoft.droid4me.ws.WebServiceClient.CallException;
 
 /**
@@ -423,12 +427,29 @@ public abstract class LoadingAndErrorInterceptor
   public static final class LoadingErrorAndRetryAggregate
   {
 
+    public static final long DEFAULT_MINIMUM_REFRESH_INTERVAL_IN_MILLISECONDS = 1000;
+
+    /**
+     * The duration after which a refresh which has not reported its end is not considered as in progress anymore.
+     */
+    public static final long REFRESH_IN_FLIGHT_TIMEOUT_IN_MILLISECONDS = 60 * 1000;
+
     private final AtomicReference<BusinessObjectUnavailableException> issue = new AtomicReference<BusinessObjectUnavailableException>();
 
+    private final Handler handler = new Handler(Looper.getMainLooper());
+
     private boolean displayLoadingViewNextTime = true;
 
     private LoadingErrorAndRetryAttributes loadingErrorAndRetryAttributes;
 
+    private long minimumRefreshIntervalInMilliseconds = LoadingErrorAndRetryAggregate.DEFAULT_MINIMUM_REFRESH_INTERVAL_IN_MILLISECONDS;
+
+    private boolean refreshInFlight;
+
+    private boolean refreshPending;
+
+    private long lastRefreshTimestamp;
+
     public final void onCreate(final ErrorAndRetryManagerProvider errorAndRetryAttributesProvider, Activity activity,
         final Smartable<?> smartable, BusinessObjectUnavailableException issue, boolean handleLoading)
     {
@@ -496,12 +517,15 @@ public abstract class LoadingAndErrorInterceptor
     public void showBusinessObjectUnavailableException(Activity activity, final Smartable<?> smartableFragment,
         BusinessObjectUnavailableException exception)
     {
+      // The business objects retrieval failed, hence the refresh in progress, if any, is over
+      onRefreshOver(smartableFragment);
       loadingErrorAndRetryAttributes.showIssue(activity, smartableFragment, exception, new Runnable()
       {
         @Override
         public void run()
         {
-          smartableFragment.refreshBusinessObjectsAndDisplay(true, null, false);
+          // The taps on the retry button while a refresh is in progress are ignored
+          refreshBusinessObjectsAndDisplay(smartableFragment, false);
         }
       });
     }
@@ -509,6 +533,7 @@ public abstract class LoadingAndErrorInterceptor
     public void showBusinessObjectUnavailableException(Activity activity, final Smartable<?> smartableFragment,
         BusinessObjectUnavailableException exception, Runnable runnable)
     {
+      onRefreshOver(smartableFragment);
       loadingErrorAndRetryAttributes.showIssue(activity, smartableFragment, exception, runnable);
     }
 
@@ -522,6 +547,137 @@ public abstract class LoadingAndErrorInterceptor
       issue.set(exception);
     }
 
+    /**
+     * Computes the listener to hand to the {@link com.smartnsoft.droid4me.ext.ws.JacksonURLConnectionWebServiceCaller} stale-first calls issued
+     * while retrieving the business objects of the provided entity: the entity renders the cached content immediately, and when its background
+     * revalidation reveals a new content, its business objects are retrieved again and displayed, without showing the loading view.
+     *
+     * @param smartable the entity whose business objects are being retrieved
+     * @return a listener which may be shared by all the calls of the entity
+     */
+    public final <ContentType> ContentChangeListener<ContentType> computeContentChangeListener(final Smartable<?> smartable)
+    {
+      return new ContentChangeListener<ContentType>()
+      {
+        @Override
+        public void onContentChanged(ContentType content)
+        {
+          handler.post(new Runnable()
+          {
+            @Override
+            public void run()
+            {
+              // The cached content is already displayed, hence the refresh should be silent
+              doNotDisplayLoadingViewNextTime();
+              refreshBusinessObjectsAndDisplay(smartable, true);
+            }
+          });
+        }
+      };
+    }
+
+    /**
+     * Sets the minimum duration between the starts of two refreshes triggered through the
+     * {@link #refreshBusinessObjectsAndDisplay(Smartable, boolean)} method, which is
+     * {@link #DEFAULT_MINIMUM_REFRESH_INTERVAL_IN_MILLISECONDS} by default.
+     */
+    public final synchronized void setMinimumRefreshIntervalInMilliseconds(long minimumRefreshIntervalInMilliseconds)
+    {
+      this.minimumRefreshIntervalInMilliseconds = minimumRefreshIntervalInMilliseconds;
+    }
+
+    /**
+     * Retrieves the business objects of the entity again and displays them, unless a refresh is already in progress or started less than the
+     * minimum refresh interval ago, which protects the backend from refresh storms.
+     *
+     * @param smartable the entity to refresh
+     * @param merge     when {@code true}, a refresh which cannot start immediately is not dropped, but merged into a single refresh, which starts
+     *                  once the refresh in progress is over and the minimum interval has elapsed ; this is relevant when the refresh reflects
+     *                  a new content, as opposed to a user action which may be repeated
+     * @return {@code true} if the refresh has started
+     */
+    public final boolean refreshBusinessObjectsAndDisplay(final Smartable<?> smartable, boolean merge)
+    {
+      synchronized (this)
+      {
+        final long now = SystemClock.elapsedRealtime();
+        if (refreshInFlight == true && now - lastRefreshTimestamp < LoadingErrorAndRetryAggregate.REFRESH_IN_FLIGHT_TIMEOUT_IN_MILLISECONDS)
+        {
+          refreshPending = refreshPending == true || merge == true;
+          return false;
+        }
+        final long delay = lastRefreshTimestamp + minimumRefreshIntervalInMilliseconds - now;
+        if (delay > 0)
+        {
+          if (merge == true && refreshPending == false)
+          {
+            refreshPending = true;
+            handler.postDelayed(new Runnable()
+            {
+              @Override
+              public void run()
+              {
+                runPendingRefresh(smartable);
+              }
+            }, delay);
+          }
+          return false;
+        }
+        refreshInFlight = true;
+        lastRefreshTimestamp = now;
+      }
+      smartable.refreshBusinessObjectsAndDisplay(true, new Runnable()
+      {
+        @Override
+        public void run()
+        {
+          onRefreshOver(smartable);
+        }
+      }, false);
+      return true;
+    }
+
+    /**
+     * Invoked when a refresh succeeded or failed, so that the next refresh may start.
+     */
+    private void onRefreshOver(final Smartable<?> smartable)
+    {
+      final boolean isPending;
+      synchronized (this)
+      {
+        if (refreshInFlight == false)
+        {
+          return;
+        }
+        refreshInFlight = false;
+        isPending = refreshPending;
+      }
+      if (isPending == true)
+      {
+        handler.post(new Runnable()
+        {
+          @Override
+          public void run()
+          {
+            runPendingRefresh(smartable);
+          }
+        });
+      }
+    }
+
+    private void runPendingRefresh(Smartable<?> smartable)
+    {
+      synchronized (this)
+      {
+        if (refreshPending == false)
+        {
+          return;
+        }
+        refreshPending = false;
+      }
+      refreshBusinessObjectsAndDisplay(smartable, true);
+    }
+
   }
 
   private final ErrorAndRetryManagerProvider errorAndRetryAttributesProvider = getErrorAndRetryAttributesProvider();
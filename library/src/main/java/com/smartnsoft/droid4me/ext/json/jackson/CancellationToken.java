@@ -0,0 +1,200 @@
+// The MIT License (MIT)
+//
+// Copyright (c) 2017 Smart&Soft
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+// SOFTWARE.
+
+package com.smartnsoft.droid4me.ext.json.jackson;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.smartnsoft.droid4me.ext.json.jackson.JacksonExceptions.JacksonParsingCancelledException;
+
+/**
+ * A token which enables to cooperatively abort an in-flight parsing, typically when the component which is waiting for its result is not
+ * displayed anymore.
+ * <p>
+ * A token can only be cancelled once: the resources registered through the {@link #register(Closeable)} method are closed at that time, so that
+ * a thread blocked on a network read is released promptly.
+ * </p>
+ *
+ * @since 2026.10.19
+ */
+public final class CancellationToken
+{
+
+  /**
+   * A stream wrapper which checks the cancellation state before each read, i.e. between two buffer refills of the JSON parser.
+   */
+  private static final class CancellableInputStream
+      extends InputStream
+  {
+
+    private final InputStream inputStream;
+
+    private final CancellationToken cancellationToken;
+
+    private CancellableInputStream(InputStream inputStream, CancellationToken cancellationToken)
+    {
+      this.inputStream = inputStream;
+      this.cancellationToken = cancellationToken;
+    }
+
+    @Override
+    public int read()
+        throws IOException
+    {
+      checkCancelled();
+      return inputStream.read();
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length)
+        throws IOException
+    {
+      checkCancelled();
+      return inputStream.read(buffer, offset, length);
+    }
+
+    private void checkCancelled()
+        throws InterruptedIOException
+    {
+      if (cancellationToken.isCancelled() == true)
+      {
+        // The parser turns this exception into a 'JacksonParsingCancelledException'
+        throw new InterruptedIOException("The parsing has been cancelled");
+      }
+    }
+
+    @Override
+    public int available()
+        throws IOException
+    {
+      return inputStream.available();
+    }
+
+    @Override
+    public void close()
+        throws IOException
+    {
+      cancellationToken.unregister(inputStream);
+      inputStream.close();
+    }
+
+  }
+
+  private final List<Closeable> closeables = new ArrayList<Closeable>();
+
+  private volatile boolean cancelled;
+
+  public boolean isCancelled()
+  {
+    return cancelled;
+  }
+
+  /**
+   * Cancels the token and closes all the resources currently registered. Invoking this method several times has no additional effect.
+   */
+  public void cancel()
+  {
+    final List<Closeable> toBeClosed;
+    synchronized (closeables)
+    {
+      if (cancelled == true)
+      {
+        return;
+      }
+      cancelled = true;
+      toBeClosed = new ArrayList<Closeable>(closeables);
+      closeables.clear();
+    }
+    for (Closeable closeable : toBeClosed)
+    {
+      close(closeable);
+    }
+  }
+
+  /**
+   * @throws JacksonParsingCancelledException if the token has been cancelled
+   */
+  public void throwIfCancelled()
+      throws JacksonParsingCancelledException
+  {
+    if (cancelled == true)
+    {
+      throw new JacksonParsingCancelledException();
+    }
+  }
+
+  /**
+   * Registers a resource which will be closed as soon as the token is cancelled. If the token is already cancelled, the resource is closed
+   * immediately.
+   */
+  public void register(Closeable closeable)
+  {
+    synchronized (closeables)
+    {
+      if (cancelled == false)
+      {
+        closeables.add(closeable);
+        return;
+      }
+    }
+    close(closeable);
+  }
+
+  public void unregister(Closeable closeable)
+  {
+    synchronized (closeables)
+    {
+      closeables.remove(closeable);
+    }
+  }
+
+  /**
+   * Wraps the provided stream so that any read fails with an {@link InterruptedIOException} once the token is cancelled, the stream being also
+   * closed at the time of the cancellation.
+   *
+   * @param inputStream the stream to wrap
+   * @return a stream which takes the token into account
+   */
+  public InputStream wrap(InputStream inputStream)
+  {
+    register(inputStream);
+    return new CancellableInputStream(inputStream, this);
+  }
+
+  private static void close(Closeable closeable)
+  {
+    try
+    {
+      closeable.close();
+    }
+    catch (IOException exception)
+    {
+      // We cannot do anything :(
+    }
+  }
+
+}
@@ -0,0 +1,277 @@
+// The MIT License (MIT)
+//
+// Copyright (c) 2017 Smart&Soft
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+// SOFTWARE.
+
+package com.smartnsoft.droid4me.ext.json.jackson;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import com.smartnsoft.droid4me.ext.json.jackson.JacksonExceptions.JacksonParsingException;
+import com.smartnsoft.droid4me.log.Logger;
+import com.smartnsoft.droid4me.log.LoggerFactory;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Emits the elements of a JSON array one by one, as soon as they are decoded from the underlying stream, while honouring the demand expressed by
+ * its {@link Subscriber}.
+ * <p>
+ * The publishing takes place on the thread which invokes the {@link #subscribe(Subscriber)} method: when the subscriber has not requested any
+ * further element, this thread is blocked and does not read from the stream anymore, which is the way the backpressure is propagated up to the
+ * network connection. The {@link Subscription} may be used from any thread, typically the UI thread.
+ * </p>
+ *
+ * @param <ElementType> the type of the array elements
+ * @since 2026.10.19
+ */
+public final class JacksonElementsPublisher<ElementType>
+{
+
+  /**
+   * The interface which receives the parsed elements, in the spirit of the Reactive Streams specification.
+   */
+  public interface Subscriber<ElementType>
+  {
+
+    /**
+     * Invoked once before any other method, so that the subscriber can express its initial demand.
+     */
+    void onSubscribe(Subscription subscription);
+
+    void onNext(ElementType element);
+
+    void onError(JacksonParsingException exception);
+
+    void onComplete();
+
+  }
+
+  public interface Subscription
+  {
+
+    /**
+     * Indicates that the subscriber is ready to receive the given number of additional elements.
+     *
+     * @param count a strictly positive number
+     */
+    void request(long count);
+
+    /**
+     * Stops the publishing: no other element will be emitted, and the underlying stream will be closed.
+     */
+    void cancel();
+
+  }
+
+  private final class ElementsSubscription
+      implements Subscription
+  {
+
+    @Override
+    public void request(long count)
+    {
+      if (count <= 0)
+      {
+        throw new IllegalArgumentException("The requested elements count must be strictly positive!");
+      }
+      synchronized (lock)
+      {
+        demand = demand + count < 0 ? Long.MAX_VALUE : demand + count;
+        lock.notifyAll();
+      }
+    }
+
+    @Override
+    public void cancel()
+    {
+      synchronized (lock)
+      {
+        cancelled = true;
+        lock.notifyAll();
+      }
+    }
+
+  }
+
+  private static final Logger log = LoggerFactory.getInstance(JacksonElementsPublisher.class);
+
+  private final ObjectMapper objectMapper;
+
+  private final InputStream inputStream;
+
+  private final String arrayFieldName;
+
+  private final JavaType elementType;
+
+  private final Object lock = new Object();
+
+  private long demand;
+
+  private boolean cancelled;
+
+  private boolean subscribed;
+
+  JacksonElementsPublisher(ObjectMapper objectMapper, InputStream inputStream, String arrayFieldName,
+      JavaType elementType)
+  {
+    this.objectMapper = objectMapper;
+    this.inputStream = inputStream;
+    this.arrayFieldName = arrayFieldName;
+    this.elementType = elementType;
+  }
+
+  /**
+   * Parses the stream and pushes its elements to the provided subscriber. This method returns only once the stream has been fully consumed, the
+   * subscription has been cancelled, or an error occurred, and the stream is closed in all cases. A publisher accepts a single subscriber.
+   *
+   * @param subscriber the entity which will receive the elements
+   */
+  public void subscribe(Subscriber<ElementType> subscriber)
+  {
+    synchronized (lock)
+    {
+      if (subscribed == true)
+      {
+        throw new IllegalStateException("A publisher only accepts a single subscriber!");
+      }
+      subscribed = true;
+    }
+    subscriber.onSubscribe(new ElementsSubscription());
+    JsonParser jsonParser = null;
+    try
+    {
+      jsonParser = objectMapper.getFactory().createParser(inputStream);
+      if (moveToArray(jsonParser) == false)
+      {
+        throw new JacksonParsingException("Could not find the JSON array" + (arrayFieldName == null ? "" : " '" + arrayFieldName + "'"));
+      }
+      int count = 0;
+      while (awaitDemand() == true)
+      {
+        final JsonToken token = jsonParser.nextToken();
+        if (token == JsonToken.END_ARRAY || token == null)
+        {
+          break;
+        }
+        final ElementType element = objectMapper.readValue(jsonParser, elementType);
+        synchronized (lock)
+        {
+          demand--;
+        }
+        subscriber.onNext(element);
+        count++;
+      }
+      if (log.isDebugEnabled())
+      {
+        log.debug("Published " + count + " element(s) of type '" + elementType + "'" + (isCancelled() == true ? " before cancellation" : ""));
+      }
+      if (isCancelled() == false)
+      {
+        subscriber.onComplete();
+      }
+    }
+    catch (InterruptedException exception)
+    {
+      // The subscriber is told that the stream is over, while the owner of the thread is still notified of the interruption
+      Thread.currentThread().interrupt();
+      subscriber.onError(JacksonExceptions.toParsingException(exception));
+    }
+    catch (Exception exception)
+    {
+      subscriber.onError(JacksonExceptions.toParsingException(exception));
+    }
+    finally
+    {
+      close(jsonParser);
+    }
+  }
+
+  private boolean moveToArray(JsonParser jsonParser)
+      throws IOException
+  {
+    JsonToken token = jsonParser.nextToken();
+    if (arrayFieldName == null)
+    {
+      return token == JsonToken.START_ARRAY;
+    }
+    if (token != JsonToken.START_OBJECT)
+    {
+      return false;
+    }
+    while ((token = jsonParser.nextToken()) == JsonToken.FIELD_NAME)
+    {
+      final String fieldName = jsonParser.getCurrentName();
+      token = jsonParser.nextToken();
+      if (arrayFieldName.equals(fieldName) == true)
+      {
+        return token == JsonToken.START_ARRAY;
+      }
+      // We ignore the other fields, whatever their nature
+      jsonParser.skipChildren();
+    }
+    return false;
+  }
+
+  /**
+   * @return {@code false} if the subscription has been cancelled while waiting for some demand
+   */
+  private boolean awaitDemand()
+      throws InterruptedException
+  {
+    synchronized (lock)
+    {
+      while (demand <= 0 && cancelled == false)
+      {
+        lock.wait();
+      }
+      return cancelled == false;
+    }
+  }
+
+  private boolean isCancelled()
+  {
+    synchronized (lock)
+    {
+      return cancelled;
+    }
+  }
+
+  private void close(JsonParser jsonParser)
+  {
+    try
+    {
+      if (jsonParser != null)
+      {
+        jsonParser.close();
+      }
+      inputStream.close();
+    }
+    catch (IOException exception)
+    {
+      // We cannot do anything :(
+    }
+  }
+
+}
@@ -22,8 +22,21 @@
 
 package com.smartnsoft.droid4me.ext.json.jackson;
 
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.concurrent.atomic.AtomicLongArray;
+
 import com.smartnsoft.droid4me.ws.WebServiceClient.CallException;
 
+import com.fasterxml.jackson.core.JsonLocation;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.io.JsonEOFException;
+import com.fasterxml.jackson.databind.JsonMappingException;
+
 /**
  * @author Édouard Mercier, Ludovic Roland
  * @since 2016.01.29
@@ -31,6 +44,110 @@ import com.smartnsoft.droid4me.ws.WebServiceClient.CallException;
 public abstract class JacksonExceptions
 {
 
+  /**
+   * The categories of parsing failures, which are counted whatever the failure mode.
+   */
+  public enum FailureCause
+  {
+    /**
+     * The body ended before the JSON document was complete.
+     */
+    Truncated,
+    /**
+     * The body is not a valid JSON document.
+     */
+    Syntax,
+    /**
+     * The JSON document does not match the target type.
+     */
+    Mapping,
+    /**
+     * The stream could not be read.
+     */
+    Input,
+    /**
+     * The parsing has been cancelled.
+     */
+    Cancelled,
+    Other
+  }
+
+  /**
+   * A compact description of a parsing failure, which does not hold any reference to the original exception.
+   */
+  public static final class ParsingDiagnostic
+      implements Serializable
+  {
+
+    private static final long serialVersionUID = 1L;
+
+    public final FailureCause cause;
+
+    /**
+     * The simple class name of the original exception.
+     */
+    public final String type;
+
+    /**
+     * The offset in the body where the failure occurred, or {@code -1} if it is not known.
+     */
+    public final long offset;
+
+    /**
+     * The JSON token which was being processed, or {@code null} if it is not known.
+     */
+    public final String token;
+
+    /**
+     * The path of the property which was being bound, or {@code null} if it is not known.
+     */
+    public final String path;
+
+    public ParsingDiagnostic(FailureCause cause, String type, long offset, String token, String path)
+    {
+      this.cause = cause;
+      this.type = type;
+      this.offset = offset;
+      this.token = token;
+      this.path = path;
+    }
+
+    @Override
+    public String toString()
+    {
+      return cause + " parsing failure (" + type + ") at offset " + offset + (token == null ? "" : " on token " + token) + (path == null ? "" : " for the path '" + path + "'");
+    }
+
+  }
+
+  /**
+   * The exception thrown instead of a {@link JacksonParsingException} when the lightweight failure mode is enabled: it does not wrap the original
+   * exception and does not fill in its stack trace, which makes it cheap to create.
+   *
+   * @see JacksonExceptions#setLightweightFailures(boolean)
+   */
+  public static final class JacksonLightweightParsingException
+      extends JacksonParsingException
+  {
+
+    private static final long serialVersionUID = 1L;
+
+    public final ParsingDiagnostic diagnostic;
+
+    public JacksonLightweightParsingException(ParsingDiagnostic diagnostic)
+    {
+      super(diagnostic.toString());
+      this.diagnostic = diagnostic;
+    }
+
+    @Override
+    public synchronized Throwable fillInStackTrace()
+    {
+      return this;
+    }
+
+  }
+
   public static final class JacksonJsonParsingException
       extends JacksonParsingException
   {
@@ -44,6 +161,29 @@ public abstract class JacksonExceptions
 
   }
 
+  /**
+   * Thrown when a parsing has been aborted through its {@link CancellationToken}.
+   */
+  public static final class JacksonParsingCancelledException
+      extends JacksonParsingException
+  {
+
+    private static final long serialVersionUID = 1L;
+
+    public JacksonParsingCancelledException()
+    {
+      super("The parsing has been cancelled");
+      JacksonExceptions.failuresCount.incrementAndGet(FailureCause.Cancelled.ordinal());
+    }
+
+    @Override
+    public synchronized Throwable fillInStackTrace()
+    {
+      return JacksonExceptions.lightweightFailures == true ? this : super.fillInStackTrace();
+    }
+
+  }
+
   public static class JacksonParsingException
       extends CallException
   {
@@ -82,4 +222,129 @@ public abstract class JacksonExceptions
 
   }
 
+  private static final AtomicLongArray failuresCount = new AtomicLongArray(FailureCause.values().length);
+
+  private static volatile boolean lightweightFailures;
+
+  /**
+   * Enables or disables the lightweight failure mode: when enabled, the parsing failures are reported through a
+   * {@link JacksonLightweightParsingException}, which is much cheaper to create than a regular {@link JacksonParsingException}, and which is
+   * relevant when bursts of failures are expected, typically on flaky networks. This mode is disabled by default.
+   */
+  public static void setLightweightFailures(boolean enabled)
+  {
+    JacksonExceptions.lightweightFailures = enabled;
+  }
+
+  public static boolean isLightweightFailures()
+  {
+    return JacksonExceptions.lightweightFailures;
+  }
+
+  /**
+   * @return the number of parsing failures with the given cause since the application started or since the last
+   * {@link #resetFailuresCount()} invocation
+   */
+  public static long getFailuresCount(FailureCause cause)
+  {
+    return JacksonExceptions.failuresCount.get(cause.ordinal());
+  }
+
+  public static void resetFailuresCount()
+  {
+    for (int index = 0; index < JacksonExceptions.failuresCount.length(); index++)
+    {
+      JacksonExceptions.failuresCount.set(index, 0);
+    }
+  }
+
+  /**
+   * Turns an exception which occurred while parsing into the relevant {@link JacksonParsingException}, taking the failure mode into account, and
+   * counts it.
+   *
+   * @param throwable the original exception
+   * @return the exception to throw
+   */
+  public static JacksonParsingException toParsingException(Throwable throwable)
+  {
+    if (throwable instanceof JacksonParsingException)
+    {
+      return (JacksonParsingException) throwable;
+    }
+    final ParsingDiagnostic diagnostic = computeDiagnostic(throwable);
+    JacksonExceptions.failuresCount.incrementAndGet(diagnostic.cause.ordinal());
+    if (JacksonExceptions.lightweightFailures == true)
+    {
+      return new JacksonLightweightParsingException(diagnostic);
+    }
+    else if (throwable instanceof JsonMappingException)
+    {
+      return new JacksonJsonParsingException(throwable);
+    }
+    return new JacksonParsingException(throwable);
+  }
+
+  public static ParsingDiagnostic computeDiagnostic(Throwable throwable)
+  {
+    final FailureCause cause;
+    if (isTruncation(throwable) == true)
+    {
+      cause = FailureCause.Truncated;
+    }
+    else if (throwable instanceof JsonParseException)
+    {
+      cause = FailureCause.Syntax;
+    }
+    else if (throwable instanceof JsonMappingException)
+    {
+      cause = FailureCause.Mapping;
+    }
+    else if (throwable instanceof IOException)
+    {
+      cause = FailureCause.Input;
+    }
+    else
+    {
+      cause = FailureCause.Other;
+    }
+    long offset = -1;
+    String token = null;
+    String path = null;
+    if (throwable instanceof JsonProcessingException)
+    {
+      final JsonProcessingException exception = (JsonProcessingException) throwable;
+      final JsonLocation location = exception.getLocation();
+      if (location != null)
+      {
+        offset = location.getByteOffset() >= 0 ? location.getByteOffset() : location.getCharOffset();
+      }
+      final Object processor = exception.getProcessor();
+      if (processor instanceof JsonParser)
+      {
+        final JsonToken currentToken = ((JsonParser) processor).getCurrentToken();
+        token = currentToken == null ? null : currentToken.name();
+      }
+      if (exception instanceof JsonMappingException)
+      {
+        path = ((JsonMappingException) exception).getPathReference();
+      }
+    }
+    return new ParsingDiagnostic(cause, throwable.getClass().getSimpleName(), offset, token, path);
+  }
+
+  private static boolean isTruncation(Throwable throwable)
+  {
+    // The binding layer may wrap the end-of-input exception, in order to indicate the path of the property being bound
+    Throwable cause = throwable;
+    while (cause != null)
+    {
+      if (cause instanceof JsonEOFException || cause instanceof EOFException)
+      {
+        return true;
+      }
+      cause = cause.getCause() == cause ? null : cause.getCause();
+    }
+    return false;
+  }
+
 }
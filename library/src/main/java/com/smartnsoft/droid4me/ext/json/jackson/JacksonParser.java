@@ -22,19 +22,41 @@
 
 package com.smartnsoft.droid4me.ext.json.jackson;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.SequenceInputStream;
+import java.nio.ByteBuffer;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Map.Entry;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
 
-import com.smartnsoft.droid4me.ext.json.jackson.JacksonExceptions.JacksonJsonParsingException;
+import com.smartnsoft.droid4me.ext.json.jackson.JacksonExceptions.JacksonParsingCancelledException;
 import com.smartnsoft.droid4me.ext.json.jackson.JacksonExceptions.JacksonParsingException;
 import com.smartnsoft.droid4me.log.Logger;
 import com.smartnsoft.droid4me.log.LoggerFactory;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.JsonDeserializer;
 import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.deser.DefaultDeserializationContext;
+import com.fasterxml.jackson.databind.deser.std.CollectionDeserializer;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 
 /**
  * @author Ludovic Roland
@@ -43,12 +65,149 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 public final class JacksonParser
 {
 
+  /**
+   * The ways a JSON stream may be bound to its target type.
+   */
+  public enum ParseStrategy
+  {
+    /**
+     * The body is entirely read into memory before being bound, which is the fastest way for small bodies.
+     */
+    Buffered,
+    /**
+     * The body is bound while being read from the stream.
+     */
+    Streaming,
+    /**
+     * The elements of a collection are bound one after the other while being read from the stream, which enables to check the cancellation
+     * between each of them.
+     */
+    ElementStreaming
+  }
+
+  /**
+   * Records the parse strategies which have been selected.
+   */
+  public static final class ParseStrategyMetrics
+  {
+
+    private final AtomicLongArray decisionsCount = new AtomicLongArray(ParseStrategy.values().length);
+
+    private final AtomicLongArray durationsInMilliseconds = new AtomicLongArray(ParseStrategy.values().length);
+
+    private final AtomicLong bufferedBytes = new AtomicLong();
+
+    public long getDecisionsCount(ParseStrategy parseStrategy)
+    {
+      return decisionsCount.get(parseStrategy.ordinal());
+    }
+
+    public long getDurationInMilliseconds(ParseStrategy parseStrategy)
+    {
+      return durationsInMilliseconds.get(parseStrategy.ordinal());
+    }
+
+    public long getBufferedBytes()
+    {
+      return bufferedBytes.get();
+    }
+
+    @Override
+    public String toString()
+    {
+      final StringBuilder builder = new StringBuilder();
+      for (ParseStrategy parseStrategy : ParseStrategy.values())
+      {
+        builder.append(builder.length() == 0 ? "" : ", ").append(parseStrategy).append("=").append(getDecisionsCount(parseStrategy)).append(" (").append(getDurationInMilliseconds(parseStrategy)).append(" ms)");
+      }
+      return builder.append(", bufferedBytes=").append(getBufferedBytes()).toString();
+    }
+
+    private void record(ParseStrategy parseStrategy, long durationInMilliseconds)
+    {
+      decisionsCount.incrementAndGet(parseStrategy.ordinal());
+      durationsInMilliseconds.addAndGet(parseStrategy.ordinal(), durationInMilliseconds);
+    }
+
+  }
+
+  /**
+   * Reads a buffer, without copying it.
+   */
+  private static final class ByteBufferInputStream
+      extends InputStream
+  {
+
+    private final ByteBuffer byteBuffer;
+
+    private ByteBufferInputStream(ByteBuffer byteBuffer)
+    {
+      this.byteBuffer = byteBuffer;
+    }
+
+    @Override
+    public int read()
+    {
+      return byteBuffer.hasRemaining() == true ? byteBuffer.get() & 0xFF : -1;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length)
+    {
+      if (byteBuffer.hasRemaining() == false)
+      {
+        return -1;
+      }
+      final int count = Math.min(length, byteBuffer.remaining());
+      byteBuffer.get(buffer, offset, count);
+      return count;
+    }
+
+    @Override
+    public int available()
+    {
+      return byteBuffer.remaining();
+    }
+
+  }
+
+  /**
+   * The default maximum size of a body bound through the {@link ParseStrategy#Buffered} strategy.
+   */
+  public static final int DEFAULT_BUFFERED_MAXIMUM_IN_BYTES = 64 * 1024;
+
+  /**
+   * The default minimum size of a collection body bound through the {@link ParseStrategy#ElementStreaming} strategy.
+   */
+  public static final int DEFAULT_ELEMENT_STREAMING_MINIMUM_IN_BYTES = 1024 * 1024;
+
   private static final Logger log = LoggerFactory.getInstance(JacksonParser.class);
 
+  private final ParseStrategyMetrics parseStrategyMetrics = new ParseStrategyMetrics();
+
   private ObjectMapper objectMapper;
 
   private ObjectMapperComputer objectMapperComputer;
 
+  private volatile int bufferedMaximumInBytes = JacksonParser.DEFAULT_BUFFERED_MAXIMUM_IN_BYTES;
+
+  private volatile int elementStreamingMinimumInBytes = JacksonParser.DEFAULT_ELEMENT_STREAMING_MINIMUM_IN_BYTES;
+
+  /**
+   * Creates the object mapper used by default by the web service callers of this library.
+   *
+   * @return a new object mapper which ignores the unknown properties and writes the {@code null} map values
+   */
+  public static ObjectMapper computeDefaultObjectMapper()
+  {
+    final ObjectMapper theObjectMapper = new ObjectMapper();
+    // We indicate to the parser not to fail in case of unknown properties, for backward compatibility reasons
+    // See http://stackoverflow.com/questions/6300311/java-jackson-org-codehaus-jackson-map-exc-unrecognizedpropertyexception
+    theObjectMapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+    theObjectMapper.configure(SerializationFeature.WRITE_NULL_MAP_VALUES, true);
+    return theObjectMapper;
+  }
+
   public JacksonParser(ObjectMapperComputer objectMapperComputer)
   {
     this.objectMapperComputer = objectMapperComputer;
@@ -60,6 +219,25 @@ public final class JacksonParser
     return objectMapper;
   }
 
+  /**
+   * Tunes the sizes which drive the {@link ParseStrategy} selection.
+   *
+   * @param bufferedMaximumInBytes         the bodies up to that size are bound through the {@link ParseStrategy#Buffered} strategy ; a negative
+   *                                       value disables that strategy
+   * @param elementStreamingMinimumInBytes the collection bodies from that size are bound through the {@link ParseStrategy#ElementStreaming}
+   *                                       strategy
+   */
+  public final void setParseStrategyThresholds(int bufferedMaximumInBytes, int elementStreamingMinimumInBytes)
+  {
+    this.bufferedMaximumInBytes = bufferedMaximumInBytes;
+    this.elementStreamingMinimumInBytes = elementStreamingMinimumInBytes;
+  }
+
+  public final ParseStrategyMetrics getParseStrategyMetrics()
+  {
+    return parseStrategyMetrics;
+  }
+
   public final <ContentType> String serializeJson(ContentType businessObject)
       throws JsonProcessingException
   {
@@ -76,6 +254,23 @@ public final class JacksonParser
     return jsonString;
   }
 
+  /**
+   * Serializes the provided object straight into a stream, so that its JSON form never exists as a whole in memory.
+   *
+   * @param businessObject the object to serialize
+   * @param outputStream   the stream to write to, which is flushed but not closed
+   */
+  public final <ContentType> void serializeJson(ContentType businessObject, OutputStream outputStream)
+      throws IOException
+  {
+    prepareObjectMapper();
+    objectMapper.writer().without(JsonGenerator.Feature.AUTO_CLOSE_TARGET).writeValue(outputStream, businessObject);
+    if (log.isDebugEnabled())
+    {
+      log.debug("Streamed the object with class name '" + businessObject.getClass().getSimpleName() + "' as JSON");
+    }
+  }
+
   public final <ContentType> ContentType deserializeJson(String jsonString, Class<?> valueType)
       throws IOException
   {
@@ -111,35 +306,358 @@ public final class JacksonParser
     return (ContentType) deserializeJson(inputStream, null, null, javaType);
   }
 
-  @SuppressWarnings("unchecked")
   public <ContentType> ContentType deserializeJson(InputStream inputStream, TypeReference<?> typeReference,
       Class<?> theClass, JavaType javaType)
       throws JacksonParsingException
+  {
+    return deserializeJson(inputStream, typeReference, theClass, javaType, null);
+  }
+
+  /**
+   * Same as {@link #deserializeJson(InputStream, TypeReference, Class, JavaType)}, except that the parsing may be aborted through the provided
+   * token: the token is checked every time the parser needs to read from the stream, and the stream is closed as soon as the token is cancelled.
+   *
+   * @param cancellationToken may be {@code null}, and in that case, the parsing cannot be cancelled
+   * @throws JacksonParsingCancelledException if the token has been cancelled before or during the parsing
+   */
+  public <ContentType> ContentType deserializeJson(InputStream inputStream, TypeReference<?> typeReference,
+      Class<?> theClass, JavaType javaType, CancellationToken cancellationToken)
+      throws JacksonParsingException
+  {
+    return deserializeJson(inputStream, -1, typeReference, theClass, javaType, cancellationToken);
+  }
+
+  /**
+   * Binds the provided stream through the {@link ParseStrategy} which suits best the body size and the target type: when the size is not known
+   * beforehand, the first bytes of the stream are read in order to determine whether the body is small enough for being buffered, or, for a
+   * collection, large enough for being bound element by element.
+   *
+   * @param contentLength     the size of the body, typically the HTTP {@code Content-Length} header value, or a negative value if it is not known
+   * @param cancellationToken may be {@code null}, and in that case, the parsing cannot be cancelled
+   * @throws JacksonParsingCancelledException if the token has been cancelled before or during the parsing
+   * @see #setParseStrategyThresholds(int, int)
+   */
+  @SuppressWarnings("unchecked")
+  public <ContentType> ContentType deserializeJson(InputStream inputStream, long contentLength,
+      TypeReference<?> typeReference, Class<?> theClass, JavaType javaType, CancellationToken cancellationToken)
+      throws JacksonParsingException
   {
     prepareObjectMapper();
+    final InputStream sourceInputStream = inputStream;
+    if (cancellationToken != null)
+    {
+      cancellationToken.throwIfCancelled();
+      inputStream = cancellationToken.wrap(inputStream);
+    }
+    final JavaType actualJavaType = theClass != null ? objectMapper.getTypeFactory().constructType(theClass) : (javaType != null ? javaType : objectMapper.getTypeFactory().constructType(typeReference));
+    final long start = System.currentTimeMillis();
+    ParseStrategy parseStrategy = null;
     try
     {
-      if (theClass != null)
+      final int bufferedMaximum = bufferedMaximumInBytes;
+      final int elementStreamingMinimum = elementStreamingMinimumInBytes;
+      final boolean isCollection = actualJavaType.isCollectionLikeType() == true && Collection.class.isAssignableFrom(actualJavaType.getRawClass()) == true;
+      byte[] bytes = null;
+      boolean isLarge = contentLength >= elementStreamingMinimum;
+      if (contentLength >= 0 && contentLength <= bufferedMaximum)
       {
-        return (ContentType) objectMapper.readValue(inputStream, theClass);
+        bytes = readFully(inputStream, (int) contentLength, -1);
       }
-      else if (javaType != null)
+      else if (contentLength < 0 && (bufferedMaximum >= 0 || isCollection == true))
+      {
+        // We read the beginning of the body, in order to figure out whether it is small, or large enough for being bound element by element
+        final int prefixMaximum = Math.max(bufferedMaximum + 1, isCollection == true ? elementStreamingMinimum : 0);
+        final byte[] prefix = readFully(inputStream, bufferedMaximum >= 0 ? bufferedMaximum + 1 : -1, prefixMaximum);
+        if (prefix.length <= bufferedMaximum)
+        {
+          bytes = prefix;
+        }
+        else
+        {
+          inputStream = new SequenceInputStream(new ByteArrayInputStream(prefix), inputStream);
+          isLarge = prefix.length >= elementStreamingMinimum;
+        }
+      }
+
+      if (bytes != null)
       {
-        return (ContentType) objectMapper.readValue(inputStream, javaType);
+        // The body has been entirely read, we release the connection as soon as possible
+        inputStream.close();
+        parseStrategy = ParseStrategy.Buffered;
+        parseStrategyMetrics.bufferedBytes.addAndGet(bytes.length);
+        return (ContentType) objectMapper.readValue(bytes, actualJavaType);
+      }
+      else if (isCollection == true && isLarge == true && supportsElementStreaming(actualJavaType) == true)
+      {
+        parseStrategy = ParseStrategy.ElementStreaming;
+        return (ContentType) bindCollection(inputStream, actualJavaType, cancellationToken);
       }
       else
       {
-        return (ContentType) objectMapper.readValue(inputStream, typeReference);
+        parseStrategy = ParseStrategy.Streaming;
+        return (ContentType) objectMapper.readValue(inputStream, actualJavaType);
       }
     }
-    catch (JsonMappingException exception)
+    catch (Exception exception)
     {
-      throw new JacksonJsonParsingException(exception);
+      if (exception instanceof JacksonParsingCancelledException == false && cancellationToken != null && cancellationToken.isCancelled() == true)
+      {
+        // Whatever the way the failure has been reported, the cancellation is the root cause
+        throw new JacksonParsingCancelledException();
+      }
+      throw JacksonExceptions.toParsingException(exception);
+    }
+    finally
+    {
+      if (cancellationToken != null)
+      {
+        // The token may outlive the parsing, and should not retain the stream when it has not been closed, typically because of a failure
+        cancellationToken.unregister(sourceInputStream);
+      }
+      if (parseStrategy != null)
+      {
+        final long duration = System.currentTimeMillis() - start;
+        parseStrategyMetrics.record(parseStrategy, duration);
+        if (log.isDebugEnabled())
+        {
+          log.debug("Bound the JSON stream of content length " + contentLength + " to the type '" + actualJavaType + "' through the '" + parseStrategy + "' strategy in " + duration + " ms");
+        }
+      }
+    }
+  }
+
+  /**
+   * Binds the content of a buffer, typically a memory-mapped file, without copying it into the heap beforehand.
+   *
+   * @param byteBuffer the buffer holding the JSON document between its position and its limit, which is not modified
+   * @param javaType   the type to bind the document to
+   */
+  public final <ContentType> ContentType deserializeJson(ByteBuffer byteBuffer, JavaType javaType)
+      throws JacksonParsingException
+  {
+    final ByteBuffer duplicate = byteBuffer.duplicate();
+    return deserializeJson(new ByteBufferInputStream(duplicate), duplicate.remaining(), null, null, javaType, null);
+  }
+
+  /**
+   * Binds a JSON document which has already been parsed as a tree, typically because it is embedded in a larger document.
+   *
+   * @param jsonNode the tree to bind
+   * @param javaType the type to bind the tree to
+   */
+  @SuppressWarnings("unchecked")
+  public final <ContentType> ContentType deserializeJson(JsonNode jsonNode, JavaType javaType)
+      throws JacksonParsingException
+  {
+    prepareObjectMapper();
+    try
+    {
+      return (ContentType) objectMapper.readerFor(javaType).readValue(jsonNode);
+    }
+    catch (Exception exception)
+    {
+      throw JacksonExceptions.toParsingException(exception);
+    }
+  }
+
+  /**
+   * Applies a JSON merge patch, as specified by the RFC 7386, on a previously bound business object: only the properties mentioned by the patch
+   * are bound again, the other ones being left untouched.
+   * <p>
+   * Caution: when the business object is a {@link java.util.Map}, a {@code null} patch value is bound as a {@code null} entry instead of removing
+   * the entry.
+   * </p>
+   *
+   * @param businessObject   the object to update, which is modified in place, unless the patch is not a JSON object
+   * @param patchInputStream the stream holding the merge patch, which will be closed
+   * @return the updated business object
+   */
+  @SuppressWarnings("unchecked")
+  public final <ContentType> ContentType applyMergePatch(ContentType businessObject, InputStream patchInputStream)
+      throws JacksonParsingException
+  {
+    prepareObjectMapper();
+    try
+    {
+      final JsonNode patch = objectMapper.readTree(patchInputStream);
+      if (patch == null || patch.isObject() == false)
+      {
+        // The patch replaces the whole document
+        return (ContentType) objectMapper.treeToValue(patch, businessObject.getClass());
+      }
+      final ObjectNode updates = objectMapper.createObjectNode();
+      JsonNode currentTree = null;
+      final Iterator<Entry<String, JsonNode>> iterator = patch.fields();
+      while (iterator.hasNext() == true)
+      {
+        final Entry<String, JsonNode> field = iterator.next();
+        if (field.getValue().isObject() == true)
+        {
+          // Nested objects need to be merged, hence we need their current state
+          if (currentTree == null)
+          {
+            currentTree = objectMapper.valueToTree(businessObject);
+          }
+          updates.set(field.getKey(), JacksonParser.mergePatch(currentTree.get(field.getKey()), field.getValue()));
+        }
+        else
+        {
+          // Including the "null" value, which resets the property
+          updates.set(field.getKey(), field.getValue());
+        }
+      }
+      return objectMapper.readerForUpdating(businessObject).readValue(updates);
+    }
+    catch (Exception exception)
+    {
+      throw JacksonExceptions.toParsingException(exception);
+    }
+  }
+
+  /**
+   * Applies a JSON merge patch, as specified by the RFC 7386, on a JSON document, typically cached, and binds the result.
+   *
+   * @param json             the bytes of the original JSON document
+   * @param patchInputStream the stream holding the merge patch, which will be closed
+   * @param javaType         the type to bind the patched document to
+   * @return the bound patched document
+   * @see #mergePatch(JsonNode, JsonNode)
+   */
+  @SuppressWarnings("unchecked")
+  public final <ContentType> ContentType applyMergePatch(byte[] json, InputStream patchInputStream, JavaType javaType)
+      throws JacksonParsingException
+  {
+    prepareObjectMapper();
+    try
+    {
+      final JsonNode patchedTree = JacksonParser.mergePatch(objectMapper.readTree(json), objectMapper.readTree(patchInputStream));
+      return (ContentType) objectMapper.readerFor(javaType).readValue(patchedTree);
     }
     catch (Exception exception)
     {
-      throw new JacksonParsingException(exception);
+      throw JacksonExceptions.toParsingException(exception);
+    }
+  }
+
+  /**
+   * Implements the RFC 7386 "MergePatch" algorithm.
+   *
+   * @param target the document to patch, which is left untouched ; may be {@code null}
+   * @param patch  the merge patch
+   * @return the patched document
+   */
+  public static JsonNode mergePatch(JsonNode target, JsonNode patch)
+  {
+    if (patch == null || patch.isObject() == false)
+    {
+      return patch;
+    }
+    final ObjectNode result = target != null && target.isObject() == true ? ((ObjectNode) target).deepCopy() : JsonNodeFactory.instance.objectNode();
+    final Iterator<Entry<String, JsonNode>> iterator = patch.fields();
+    while (iterator.hasNext() == true)
+    {
+      final Entry<String, JsonNode> field = iterator.next();
+      if (field.getValue().isNull() == true)
+      {
+        result.remove(field.getKey());
+      }
+      else
+      {
+        result.set(field.getKey(), JacksonParser.mergePatch(result.get(field.getKey()), field.getValue()));
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Prepares a publisher which will emit, one by one, the elements of the top-level JSON array held by the provided stream.
+   *
+   * @see #publishJsonElements(InputStream, String, JavaType)
+   */
+  public final <ElementType> JacksonElementsPublisher<ElementType> publishJsonElements(InputStream inputStream,
+      Class<ElementType> elementClass)
+  {
+    prepareObjectMapper();
+    return new JacksonElementsPublisher<ElementType>(objectMapper, inputStream, null, objectMapper.getTypeFactory().constructType(elementClass));
+  }
+
+  /**
+   * Prepares a publisher which will emit, one by one and according to the subscriber demand, the elements of a JSON array held by the provided
+   * stream, so that an arbitrarily long feed never needs to be held in memory.
+   *
+   * @param inputStream    the stream to read from, which will be closed once the publishing is over
+   * @param arrayFieldName when not {@code null}, the name of the top-level object field holding the array ; otherwise, the stream is expected to
+   *                       hold a top-level array
+   * @param elementType    the type of the array elements
+   * @return a publisher which does not read anything before it is subscribed to
+   */
+  public final <ElementType> JacksonElementsPublisher<ElementType> publishJsonElements(InputStream inputStream,
+      String arrayFieldName, JavaType elementType)
+  {
+    prepareObjectMapper();
+    return new JacksonElementsPublisher<ElementType>(objectMapper, inputStream, arrayFieldName, elementType);
+  }
+
+  /**
+   * The {@link ParseStrategy#ElementStreaming} strategy adds the elements one by one to an instance of the collection, which is only equivalent
+   * to what Jackson does when the type is handled by its default collection deserializer, and that the instance is created through a default
+   * constructor: the immutable collections, the delegating creators and the custom deserializers require the {@link ParseStrategy#Streaming}
+   * strategy.
+   */
+  private boolean supportsElementStreaming(JavaType collectionType)
+      throws JsonMappingException
+  {
+    final DeserializationContext deserializationContext = ((DefaultDeserializationContext) objectMapper.getDeserializationContext()).createInstance(objectMapper.getDeserializationConfig(), null, objectMapper.getInjectableValues());
+    final JsonDeserializer<?> deserializer = deserializationContext.findRootValueDeserializer(collectionType);
+    return deserializer.getClass() == CollectionDeserializer.class && ((CollectionDeserializer) deserializer).getValueInstantiator().canCreateUsingDefault() == true;
+  }
+
+  private Collection<Object> bindCollection(InputStream inputStream, JavaType collectionType,
+      CancellationToken cancellationToken)
+      throws IOException, JacksonParsingCancelledException
+  {
+    final JsonParser jsonParser = objectMapper.getFactory().createParser(inputStream);
+    try
+    {
+      if (jsonParser.nextToken() != JsonToken.START_ARRAY)
+      {
+        // Let Jackson handle the 'null' value and report the mismatched input cases
+        return objectMapper.readValue(jsonParser, collectionType);
+      }
+      // Binding an empty array is the simplest way to get an instance of the right collection implementation
+      final Collection<Object> collection = objectMapper.readValue("[]", collectionType);
+      final JavaType elementType = collectionType.getContentType();
+      while (jsonParser.nextToken() != JsonToken.END_ARRAY)
+      {
+        if (cancellationToken != null)
+        {
+          cancellationToken.throwIfCancelled();
+        }
+        collection.add(objectMapper.readValue(jsonParser, elementType));
+      }
+      return collection;
+    }
+    finally
+    {
+      jsonParser.close();
+    }
+  }
+
+  /**
+   * @param expectedLength the expected number of bytes, or a negative value if it is unknown
+   * @param maximum        the maximum number of bytes to read, or a negative value for reading the stream till its end
+   */
+  private static byte[] readFully(InputStream inputStream, int expectedLength, int maximum)
+      throws IOException
+  {
+    final ByteArrayOutputStream outputStream = new ByteArrayOutputStream(expectedLength >= 0 ? expectedLength : 8192);
+    final byte[] buffer = new byte[8192];
+    int read;
+    while ((maximum < 0 || outputStream.size() < maximum) && (read = inputStream.read(buffer, 0, maximum < 0 ? buffer.length : Math.min(buffer.length, maximum - outputStream.size()))) != -1)
+    {
+      outputStream.write(buffer, 0, read);
     }
+    return outputStream.toByteArray();
   }
 
   private void prepareObjectMapper()
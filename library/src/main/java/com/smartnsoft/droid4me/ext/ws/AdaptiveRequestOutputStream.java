@@ -0,0 +1,235 @@
+// The MIT License (MIT)
+//
+// Copyright (c) 2017 Smart&Soft
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+// SOFTWARE.
+
+package com.smartnsoft.droid4me.ext.ws;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * The stream a request body is serialized into, which decides whether the body is gzip-encoded depending on its size: the first bytes are kept
+ * in memory up to the compression threshold, and the connection stream is only opened once the threshold is exceeded, in which case the body is
+ * compressed and sent chunked, or once the body is complete, in which case it is sent as is, with a fixed length.
+ *
+ * @see RequestCompressionPolicy
+ * @since 2026.10.19
+ */
+abstract class AdaptiveRequestOutputStream
+    extends OutputStream
+{
+
+  /**
+   * Counts the bytes actually sent through the connection, along with the time spent sending them.
+   */
+  private static final class MeteredOutputStream
+      extends FilterOutputStream
+  {
+
+    private long bytesCount;
+
+    private long writeDurationInNanoseconds;
+
+    private MeteredOutputStream(OutputStream outputStream)
+    {
+      super(outputStream);
+    }
+
+    @Override
+    public void write(int value)
+        throws IOException
+    {
+      final long start = System.nanoTime();
+      out.write(value);
+      bytesCount++;
+      writeDurationInNanoseconds += System.nanoTime() - start;
+    }
+
+    @Override
+    public void write(byte[] buffer, int offset, int length)
+        throws IOException
+    {
+      final long start = System.nanoTime();
+      out.write(buffer, offset, length);
+      bytesCount += length;
+      writeDurationInNanoseconds += System.nanoTime() - start;
+    }
+
+    @Override
+    public void flush()
+        throws IOException
+    {
+      final long start = System.nanoTime();
+      out.flush();
+      writeDurationInNanoseconds += System.nanoTime() - start;
+    }
+
+    @Override
+    public void close()
+        throws IOException
+    {
+      final long start = System.nanoTime();
+      out.close();
+      writeDurationInNanoseconds += System.nanoTime() - start;
+    }
+
+  }
+
+  private final long thresholdInBytes;
+
+  private final ByteArrayOutputStream buffer;
+
+  private MeteredOutputStream meteredOutputStream;
+
+  private OutputStream outputStream;
+
+  private boolean compressed;
+
+  private long rawBytesCount;
+
+  private long totalWriteDurationInNanoseconds;
+
+  private long openingNanoTime;
+
+  private boolean closed;
+
+  /**
+   * @param thresholdInBytes the body size above which the body is compressed: {@code 0} means that the body is always compressed, and
+   *                         {@link Long#MAX_VALUE} that it never is, the body being streamed immediately in both cases
+   */
+  AdaptiveRequestOutputStream(long thresholdInBytes)
+  {
+    this.thresholdInBytes = thresholdInBytes;
+    this.buffer = thresholdInBytes <= 0 || thresholdInBytes == Long.MAX_VALUE ? null : new ByteArrayOutputStream((int) Math.min(thresholdInBytes, 8192));
+  }
+
+  /**
+   * Opens the stream of the connection, once the encoding of the body has been decided.
+   *
+   * @param compressed    whether the body is gzip-encoded, in which case the "Content-Encoding" request header should be set
+   * @param contentLength the length of the body as sent, or {@code -1} if it is not known and the body should be sent chunked
+   */
+  protected abstract OutputStream openConnectionStream(boolean compressed, long contentLength)
+      throws IOException;
+
+  @Override
+  public void write(int value)
+      throws IOException
+  {
+    write(new byte[] { (byte) value }, 0, 1);
+  }
+
+  @Override
+  public void write(byte[] bytes, int offset, int length)
+      throws IOException
+  {
+    rawBytesCount += length;
+    if (outputStream == null)
+    {
+      if (buffer != null && buffer.size() + length <= thresholdInBytes)
+      {
+        buffer.write(bytes, offset, length);
+        return;
+      }
+      open(thresholdInBytes != Long.MAX_VALUE, -1);
+    }
+    final long start = System.nanoTime();
+    outputStream.write(bytes, offset, length);
+    totalWriteDurationInNanoseconds += System.nanoTime() - start;
+  }
+
+  @Override
+  public void close()
+      throws IOException
+  {
+    if (closed == true)
+    {
+      return;
+    }
+    closed = true;
+    if (outputStream == null)
+    {
+      // The whole body is below the threshold
+      open(false, buffer == null ? 0 : buffer.size());
+    }
+    final long start = System.nanoTime();
+    // This also completes the gzip stream
+    outputStream.close();
+    totalWriteDurationInNanoseconds += System.nanoTime() - start;
+  }
+
+  boolean isCompressed()
+  {
+    return compressed;
+  }
+
+  /**
+   * @return the number of bytes of the body before its encoding
+   */
+  long getRawBytesCount()
+  {
+    return rawBytesCount;
+  }
+
+  /**
+   * @return the number of bytes sent through the connection
+   */
+  long getSentBytesCount()
+  {
+    return meteredOutputStream == null ? 0 : meteredOutputStream.bytesCount;
+  }
+
+  /**
+   * @return the time spent compressing the body, i.e. the time spent writing it minus the time spent in the connection stream
+   */
+  long getCompressionDurationInNanoseconds()
+  {
+    return compressed == false || meteredOutputStream == null ? 0 : Math.max(0, totalWriteDurationInNanoseconds - meteredOutputStream.writeDurationInNanoseconds);
+  }
+
+  /**
+   * @return the time the connection stream was opened, as returned by {@link System#nanoTime()}
+   */
+  long getOpeningNanoTime()
+  {
+    return openingNanoTime;
+  }
+
+  private void open(boolean compressed, long contentLength)
+      throws IOException
+  {
+    this.compressed = compressed;
+    openingNanoTime = System.nanoTime();
+    meteredOutputStream = new MeteredOutputStream(openConnectionStream(compressed, contentLength));
+    outputStream = compressed == true ? new GZIPOutputStream(meteredOutputStream, 8192) : new BufferedOutputStream(meteredOutputStream, 8192);
+    if (buffer != null && buffer.size() > 0)
+    {
+      final long start = System.nanoTime();
+      buffer.writeTo(outputStream);
+      totalWriteDurationInNanoseconds += System.nanoTime() - start;
+    }
+  }
+
+}
@@ -0,0 +1,250 @@
+// The MIT License (MIT)
+//
+// Copyright (c) 2017 Smart&Soft
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+// SOFTWARE.
+
+package com.smartnsoft.droid4me.ext.ws;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * The per-phase timing breakdown of a single web service call.
+ * <p>
+ * The {@code HttpURLConnection} does not expose the DNS resolution and the TLS handshake separately: both are part of the
+ * {@link Phase#Connect} phase. When the body is bound while being downloaded, the {@link Phase#Download}, {@link Phase#Decompression} and
+ * {@link Phase#Bind} phases overlap. A phase which has not been measured has a negative duration.
+ * </p>
+ *
+ * @see JacksonURLConnectionWebServiceCaller#setCallTimingsListener(JacksonURLConnectionWebServiceCaller.CallTimingsListener)
+ * @since 2026.10.19
+ */
+public final class CallTimings
+{
+
+  public enum Phase
+  {
+    /**
+     * The DNS resolution, the TCP connection and the TLS handshake.
+     */
+    Connect,
+    /**
+     * From the connection establishment till the response headers reception, which includes the server processing time.
+     */
+    FirstByte,
+    /**
+     * From the response headers reception till the end of the body.
+     */
+    Download,
+    /**
+     * The time spent decoding the body content encoding.
+     */
+    Decompression,
+    /**
+     * The time spent binding the body with the {@link com.smartnsoft.droid4me.ext.json.jackson.JacksonParser}.
+     */
+    Bind,
+    /**
+     * The whole call duration.
+     */
+    Total
+  }
+
+  public final String endpoint;
+
+  public final String uri;
+
+  private final long startNanoTime = System.nanoTime();
+
+  private final long[] durationsInNanoseconds = new long[Phase.values().length];
+
+  private int statusCode = -1;
+
+  private long receivedBytes = -1;
+
+  private long decodedBytes = -1;
+
+  private long networkReadDurationInNanoseconds = -1;
+
+  private boolean fromCache;
+
+  private long headersNanoTime;
+
+  private MeteredInputStream networkInputStream;
+
+  private MeteredInputStream decodedInputStream;
+
+  private boolean bodyConsumed;
+
+  CallTimings(String endpoint, String uri)
+  {
+    this.endpoint = endpoint;
+    this.uri = uri;
+    for (int index = 0; index < durationsInNanoseconds.length; index++)
+    {
+      durationsInNanoseconds[index] = -1;
+    }
+  }
+
+  public long getDurationInMilliseconds(Phase phase)
+  {
+    final long durationInNanoseconds = durationsInNanoseconds[phase.ordinal()];
+    return durationInNanoseconds < 0 ? -1 : durationInNanoseconds / 1000000L;
+  }
+
+  public int getStatusCode()
+  {
+    return statusCode;
+  }
+
+  /**
+   * @return the number of bytes received over the network for the body, or {@code -1} if it is not known
+   */
+  public long getReceivedBytes()
+  {
+    return receivedBytes;
+  }
+
+  /**
+   * @return the number of bytes of the body once its content encoding decoded, or {@code -1} if it is not known
+   */
+  public long getDecodedBytes()
+  {
+    return decodedBytes;
+  }
+
+  /**
+   * @return {@code true} if the bound body comes from the response cache, after a revalidation
+   */
+  public boolean isFromCache()
+  {
+    return fromCache;
+  }
+
+  @Override
+  public String toString()
+  {
+    final StringBuilder builder = new StringBuilder(endpoint).append(" [").append(statusCode).append("]");
+    for (Phase phase : Phase.values())
+    {
+      builder.append(' ').append(phase).append('=').append(getDurationInMilliseconds(phase)).append("ms");
+    }
+    return builder.append(" received=").append(receivedBytes).append("B decoded=").append(decodedBytes).append("B").append(fromCache == true ? " (cache)" : "").toString();
+  }
+
+  /**
+   * Wraps the response body stream, so as to measure the download and the decompression.
+   *
+   * @param inputStream     the raw body stream, as received over the network
+   * @param contentEncoding the {@code Content-Encoding} response header value, may be {@code null}
+   * @return the decoded body stream
+   */
+  InputStream meter(InputStream inputStream, String contentEncoding)
+      throws IOException
+  {
+    headersNanoTime = System.nanoTime();
+    networkInputStream = new MeteredInputStream(inputStream);
+    if (ContentDecoders.isEncoded(contentEncoding) == true)
+    {
+      decodedInputStream = new MeteredInputStream(ContentDecoders.decode(contentEncoding, networkInputStream));
+      return decodedInputStream;
+    }
+    return networkInputStream;
+  }
+
+  /**
+   * Computes the download and decompression phases, once the body has been consumed.
+   */
+  void onBodyConsumed()
+  {
+    if (bodyConsumed == true)
+    {
+      return;
+    }
+    bodyConsumed = true;
+    if (networkInputStream == null)
+    {
+      setDuration(Phase.Download, 0);
+      return;
+    }
+    final long endNanoTime = networkInputStream.getEndNanoTime() == -1 ? System.nanoTime() : networkInputStream.getEndNanoTime();
+    setDuration(Phase.Download, endNanoTime - headersNanoTime);
+    networkReadDurationInNanoseconds = networkInputStream.getReadDurationInNanoseconds();
+    if (decodedInputStream != null)
+    {
+      // The time spent reading the decoded stream includes the time spent reading the network stream
+      setDuration(Phase.Decompression, Math.max(0, decodedInputStream.getReadDurationInNanoseconds() - networkInputStream.getReadDurationInNanoseconds()));
+      setBytes(networkInputStream.getBytesCount(), decodedInputStream.getBytesCount());
+    }
+    else
+    {
+      setBytes(networkInputStream.getBytesCount(), networkInputStream.getBytesCount());
+    }
+  }
+
+  /**
+   * @return the time spent waiting for the body bytes from the network, which, unlike the {@link Phase#Download} duration, excludes the time
+   * spent decoding and binding them, or {@code -1} if it has not been measured
+   */
+  long getNetworkReadDurationInNanoseconds()
+  {
+    return networkReadDurationInNanoseconds;
+  }
+
+  /**
+   * @return {@code true} if the body has a content encoding, in which case its decoded length is not known beforehand
+   */
+  boolean isEncoded()
+  {
+    return decodedInputStream != null;
+  }
+
+  void setDuration(Phase phase, long durationInNanoseconds)
+  {
+    durationsInNanoseconds[phase.ordinal()] = durationInNanoseconds;
+  }
+
+  long getStartNanoTime()
+  {
+    return startNanoTime;
+  }
+
+  void setStatusCode(int statusCode)
+  {
+    this.statusCode = statusCode;
+  }
+
+  void setBytes(long receivedBytes, long decodedBytes)
+  {
+    this.receivedBytes = receivedBytes;
+    this.decodedBytes = decodedBytes;
+  }
+
+  void setFromCache(boolean fromCache)
+  {
+    this.fromCache = fromCache;
+  }
+
+  void complete()
+  {
+    setDuration(Phase.Total, System.nanoTime() - startNanoTime);
+  }
+
+}
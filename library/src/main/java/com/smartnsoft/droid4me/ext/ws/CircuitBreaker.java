@@ -0,0 +1,196 @@
+// The MIT License (MIT)
+//
+// Copyright (c) 2017 Smart&Soft
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+// SOFTWARE.
+
+package com.smartnsoft.droid4me.ext.ws;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.smartnsoft.droid4me.log.Logger;
+import com.smartnsoft.droid4me.log.LoggerFactory;
+
+/**
+ * Makes the calls to a backend which is down fail immediately, instead of each of them waiting for its time-out.
+ * <p>
+ * Every circuit, which is identified by a key, typically the host or the endpoint of the calls, is closed at first. It opens once a given
+ * number of consecutive calls have failed, because of the network or with a 5xx status code: while open, the calls fail immediately with an
+ * {@link OpenCircuitException}. Once the open duration has elapsed, the circuit becomes half-open, and a single probe call is let through: the
+ * circuit closes if it succeeds, and opens again otherwise.
+ * </p>
+ *
+ * @see JacksonURLConnectionWebServiceCaller#setCircuitBreaker(CircuitBreaker)
+ * @since 2026.10.19
+ */
+public final class CircuitBreaker
+{
+
+  public enum State
+  {
+    Closed, Open, HalfOpen
+  }
+
+  /**
+   * Thrown instead of connecting to a backend whose circuit is open. Since it is an {@link IOException}, it is reported the same way as a
+   * connectivity issue.
+   */
+  public static final class OpenCircuitException
+      extends IOException
+  {
+
+    private static final long serialVersionUID = 1L;
+
+    public final String key;
+
+    public OpenCircuitException(String key)
+    {
+      super("The circuit '" + key + "' is open");
+      this.key = key;
+    }
+
+    @Override
+    public synchronized Throwable fillInStackTrace()
+    {
+      // This exception is expected to be thrown in bursts
+      return this;
+    }
+
+  }
+
+  private static final class Circuit
+  {
+
+    private State state = State.Closed;
+
+    private int consecutiveFailuresCount;
+
+    private long openedTimestamp;
+
+    private long probeTimestamp;
+
+  }
+
+  public static final int DEFAULT_FAILURES_THRESHOLD = 5;
+
+  public static final long DEFAULT_OPEN_DURATION_IN_MILLISECONDS = 30 * 1000;
+
+  private static final Logger log = LoggerFactory.getInstance(CircuitBreaker.class);
+
+  private final int failuresThreshold;
+
+  private final long openDurationInMilliseconds;
+
+  private final Map<String, Circuit> circuits = new HashMap<String, Circuit>();
+
+  public CircuitBreaker()
+  {
+    this(CircuitBreaker.DEFAULT_FAILURES_THRESHOLD, CircuitBreaker.DEFAULT_OPEN_DURATION_IN_MILLISECONDS);
+  }
+
+  /**
+   * @param failuresThreshold          the number of consecutive failures which opens a circuit
+   * @param openDurationInMilliseconds how long a circuit remains open before a probe call is let through
+   */
+  public CircuitBreaker(int failuresThreshold, long openDurationInMilliseconds)
+  {
+    this.failuresThreshold = Math.max(1, failuresThreshold);
+    this.openDurationInMilliseconds = openDurationInMilliseconds;
+  }
+
+  public synchronized State getState(String key)
+  {
+    final Circuit circuit = circuits.get(key);
+    return circuit == null ? State.Closed : circuit.state;
+  }
+
+  /**
+   * Should be invoked before a call.
+   *
+   * @throws OpenCircuitException if the call must not take place
+   */
+  public synchronized void checkAllowed(String key)
+      throws OpenCircuitException
+  {
+    final Circuit circuit = circuits.get(key);
+    if (circuit == null || circuit.state == State.Closed)
+    {
+      return;
+    }
+    final long now = System.currentTimeMillis();
+    if (circuit.state == State.Open && now - circuit.openedTimestamp >= openDurationInMilliseconds)
+    {
+      if (log.isDebugEnabled())
+      {
+        log.debug("The circuit '" + key + "' is half-open: letting a probe call through");
+      }
+      circuit.state = State.HalfOpen;
+      circuit.probeTimestamp = now;
+      return;
+    }
+    else if (circuit.state == State.HalfOpen && now - circuit.probeTimestamp >= openDurationInMilliseconds)
+    {
+      // The outcome of the previous probe has never been reported
+      circuit.probeTimestamp = now;
+      return;
+    }
+    throw new OpenCircuitException(key);
+  }
+
+  public synchronized void onSuccess(String key)
+  {
+    final Circuit circuit = circuits.get(key);
+    if (circuit != null)
+    {
+      if (circuit.state != State.Closed && log.isDebugEnabled())
+      {
+        log.debug("The circuit '" + key + "' is closed again");
+      }
+      circuits.remove(key);
+    }
+  }
+
+  public synchronized void onFailure(String key)
+  {
+    Circuit circuit = circuits.get(key);
+    if (circuit == null)
+    {
+      circuit = new Circuit();
+      circuits.put(key, circuit);
+    }
+    if (circuit.state == State.Open)
+    {
+      // The failure of a call which started before the circuit opened
+      return;
+    }
+    circuit.consecutiveFailuresCount++;
+    if (circuit.state == State.HalfOpen || circuit.consecutiveFailuresCount >= failuresThreshold)
+    {
+      if (log.isWarnEnabled())
+      {
+        log.warn("Opening the circuit '" + key + "' for " + openDurationInMilliseconds + " ms after " + circuit.consecutiveFailuresCount + " consecutive failure(s)");
+      }
+      circuit.state = State.Open;
+      circuit.openedTimestamp = System.currentTimeMillis();
+    }
+  }
+
+}
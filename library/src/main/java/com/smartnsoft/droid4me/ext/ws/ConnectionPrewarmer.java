@@ -0,0 +1,136 @@
+// The MIT License (MIT)
+//
+// Copyright (c) 2017 Smart&Soft
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+// SOFTWARE.
+
+package com.smartnsoft.droid4me.ext.ws;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.URL;
+
+import com.smartnsoft.droid4me.log.Logger;
+import com.smartnsoft.droid4me.log.LoggerFactory;
+
+/**
+ * Resolves the hosts of the web services and opens a keep-alive connection to them ahead of time, so that the first actual call does not pay
+ * the DNS resolution, the TCP handshake and the TLS handshake.
+ * <p>
+ * The warm-up request is a "HEAD", whose response is fully consumed, so that the underlying socket is returned to the {@link HttpURLConnection}
+ * keep-alive pool, from which the next request to the same host takes it. Its status code does not matter.
+ * </p>
+ *
+ * @see com.smartnsoft.droid4me.ext.app.ExtendedApplication#getPrewarmedUris()
+ * @since 2026.10.19
+ */
+public abstract class ConnectionPrewarmer
+{
+
+  public static final int DEFAULT_TIME_OUT_IN_MILLISECONDS = 10000;
+
+  private static final Logger log = LoggerFactory.getInstance(ConnectionPrewarmer.class);
+
+  /**
+   * Warms up the connections on a background thread, and returns immediately.
+   *
+   * @param uris the URIs to send the warm-up requests to, one per host, typically the root of every web service host
+   */
+  public static void prewarm(final String... uris)
+  {
+    final Thread thread = new Thread(new Runnable()
+    {
+      @Override
+      public void run()
+      {
+        for (String uri : uris)
+        {
+          prewarm(uri, ConnectionPrewarmer.DEFAULT_TIME_OUT_IN_MILLISECONDS);
+        }
+      }
+    }, "droid4me-prewarmer");
+    thread.setDaemon(true);
+    thread.setPriority(Thread.MIN_PRIORITY);
+    thread.start();
+  }
+
+  /**
+   * Warms up the connection to the given URI on the calling thread.
+   *
+   * @return {@code true} if the connection could be established
+   */
+  public static boolean prewarm(String uri, int timeOutInMilliseconds)
+  {
+    final long start = System.currentTimeMillis();
+    HttpURLConnection httpURLConnection = null;
+    try
+    {
+      final URL url = new URL(uri);
+      // The resolution is cached by the system, hence it also benefits to the other connections to the same host
+      InetAddress.getAllByName(url.getHost());
+      httpURLConnection = (HttpURLConnection) url.openConnection();
+      httpURLConnection.setConnectTimeout(timeOutInMilliseconds);
+      httpURLConnection.setReadTimeout(timeOutInMilliseconds);
+      httpURLConnection.setRequestMethod("HEAD");
+      final int statusCode = httpURLConnection.getResponseCode();
+      consume(statusCode < 400 ? httpURLConnection.getInputStream() : httpURLConnection.getErrorStream());
+      if (log.isDebugEnabled())
+      {
+        log.debug("Warmed up the connection to '" + uri + "' in " + (System.currentTimeMillis() - start) + " ms (status code " + statusCode + ")");
+      }
+      return true;
+    }
+    catch (IOException exception)
+    {
+      if (httpURLConnection != null)
+      {
+        httpURLConnection.disconnect();
+      }
+      if (log.isWarnEnabled())
+      {
+        log.warn("Could not warm up the connection to '" + uri + "'", exception);
+      }
+      return false;
+    }
+  }
+
+  private static void consume(InputStream inputStream)
+      throws IOException
+  {
+    if (inputStream == null)
+    {
+      return;
+    }
+    try
+    {
+      final byte[] buffer = new byte[512];
+      while (inputStream.read(buffer) != -1)
+      {
+        // The body is discarded
+      }
+    }
+    finally
+    {
+      inputStream.close();
+    }
+  }
+
+}
@@ -0,0 +1,157 @@
+// The MIT License (MIT)
+//
+// Copyright (c) 2017 Smart&Soft
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+// SOFTWARE.
+
+package com.smartnsoft.droid4me.ext.ws;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The registry of the HTTP content encodings which the web service callers are able to decode.
+ * <p>
+ * The "gzip" and "deflate" encodings are built in, and are decoded with pooled inflaters and buffers. Additional encodings, like "br" or
+ * "zstd", may be registered by the application through the {@link #register(String, ContentDecoder)} method, typically with a decoder relying
+ * on a third-party library: the registered encodings are advertised in the {@code Accept-Encoding} request header.
+ * </p>
+ *
+ * @since 2026.10.19
+ */
+public abstract class ContentDecoders
+{
+
+  /**
+   * Decodes a body with a given content encoding.
+   */
+  public interface ContentDecoder
+  {
+
+    /**
+     * @param inputStream the encoded stream
+     * @return a stream which decodes the provided one, and which closes it when closed
+     */
+    InputStream decode(InputStream inputStream)
+        throws IOException;
+
+  }
+
+  private static final Map<String, ContentDecoder> decoders = new LinkedHashMap<String, ContentDecoder>();
+
+  private static String acceptEncoding;
+
+  static
+  {
+    ContentDecoders.register("gzip", new ContentDecoder()
+    {
+      @Override
+      public InputStream decode(InputStream inputStream)
+          throws IOException
+      {
+        return new PooledInflaterInputStream(inputStream, true);
+      }
+    });
+    ContentDecoders.register("deflate", new ContentDecoder()
+    {
+      @Override
+      public InputStream decode(InputStream inputStream)
+          throws IOException
+      {
+        return new PooledInflaterInputStream(inputStream, false);
+      }
+    });
+  }
+
+  /**
+   * Registers or replaces the decoder of a content encoding.
+   *
+   * @param encoding the content encoding token, as it appears in the {@code Content-Encoding} response header
+   * @param decoder  the decoder
+   */
+  public static synchronized void register(String encoding, ContentDecoder decoder)
+  {
+    decoders.put(encoding.toLowerCase(), decoder);
+    final StringBuilder builder = new StringBuilder();
+    for (String name : decoders.keySet())
+    {
+      builder.append(builder.length() == 0 ? "" : ", ").append(name);
+    }
+    acceptEncoding = builder.toString();
+  }
+
+  /**
+   * @return the value of the {@code Accept-Encoding} request header which lists all the registered encodings
+   */
+  public static synchronized String getAcceptEncoding()
+  {
+    return acceptEncoding;
+  }
+
+  /**
+   * @param contentEncoding the {@code Content-Encoding} response header value, may be {@code null}
+   * @return {@code true} if the body needs to be decoded
+   */
+  public static boolean isEncoded(String contentEncoding)
+  {
+    return contentEncoding != null && contentEncoding.trim().length() > 0 && "identity".equalsIgnoreCase(contentEncoding.trim()) == false;
+  }
+
+  /**
+   * Decodes a body, possibly encoded several times.
+   *
+   * @param contentEncoding the {@code Content-Encoding} response header value, may be {@code null}
+   * @param inputStream     the body, as received
+   * @return the decoded body, which is the provided stream if it is not encoded
+   * @throws IOException if one of the encodings is not registered, or if the body is corrupted
+   */
+  public static InputStream decode(String contentEncoding, InputStream inputStream)
+      throws IOException
+  {
+    if (ContentDecoders.isEncoded(contentEncoding) == false)
+    {
+      return inputStream;
+    }
+    // The encodings are listed in the order they were applied
+    final String[] encodings = contentEncoding.split(",");
+    InputStream decodedInputStream = inputStream;
+    for (int index = encodings.length - 1; index >= 0; index--)
+    {
+      final String encoding = encodings[index].trim().toLowerCase();
+      if (encoding.length() == 0 || "identity".equals(encoding) == true)
+      {
+        continue;
+      }
+      final ContentDecoder decoder;
+      synchronized (ContentDecoders.class)
+      {
+        decoder = decoders.get("x-gzip".equals(encoding) == true ? "gzip" : encoding);
+      }
+      if (decoder == null)
+      {
+        throw new IOException("The content encoding '" + encoding + "' is not supported");
+      }
+      decodedInputStream = decoder.decode(decodedInputStream);
+    }
+    return decodedInputStream;
+  }
+
+}
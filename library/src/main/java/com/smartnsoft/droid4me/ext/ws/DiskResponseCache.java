@@ -0,0 +1,603 @@
+// The MIT License (MIT)
+//
+// Copyright (c) 2017 Smart&Soft
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+// SOFTWARE.
+
+package com.smartnsoft.droid4me.ext.ws;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.zip.CRC32;
+
+import android.content.Context;
+
+import com.smartnsoft.droid4me.log.Logger;
+import com.smartnsoft.droid4me.log.LoggerFactory;
+
+/**
+ * A persistent HTTP response cache, bounded in size, which evicts the least recently used entries first.
+ * <p>
+ * Each entry is made of a body file and of a metadata file, which holds the validators ({@code ETag}, {@code Last-Modified}) and the freshness
+ * information extracted from the {@code Cache-Control} and {@code Expires} headers.
+ * </p>
+ *
+ * @see JacksonURLConnectionWebServiceCaller#setResponseCache(DiskResponseCache)
+ * @since 2026.10.19
+ */
+public final class DiskResponseCache
+{
+
+  /**
+   * The freshness and validation information of a response, as indicated by the server.
+   */
+  public static final class CachePolicy
+  {
+
+    /**
+     * Extracts the cache policy from the response headers.
+     *
+     * @param cacheControl   the {@code Cache-Control} header value, may be {@code null}
+     * @param expirationDate the {@code Expires} header value, in milliseconds since the epoch, or {@code 0} if it is not set
+     * @param date           the {@code Date} header value, in milliseconds since the epoch, or {@code 0} if it is not set
+     * @return the policy
+     */
+    public static CachePolicy parse(String cacheControl, long expirationDate, long date)
+    {
+      long maxAgeInMilliseconds = expirationDate > 0 ? Math.max(0, expirationDate - (date > 0 ? date : System.currentTimeMillis())) : 0;
+      long staleWhileRevalidateInMilliseconds = 0;
+      boolean noStore = false;
+      boolean noCache = false;
+      boolean mustRevalidate = false;
+      if (cacheControl != null)
+      {
+        for (String directive : cacheControl.toLowerCase().split(","))
+        {
+          final String trimmedDirective = directive.trim();
+          if (trimmedDirective.equals("no-store") == true)
+          {
+            noStore = true;
+          }
+          else if (trimmedDirective.equals("no-cache") == true)
+          {
+            noCache = true;
+          }
+          else if (trimmedDirective.equals("must-revalidate") == true)
+          {
+            mustRevalidate = true;
+          }
+          else if (trimmedDirective.startsWith("max-age=") == true)
+          {
+            maxAgeInMilliseconds = parseSeconds(trimmedDirective.substring("max-age=".length())) * 1000L;
+          }
+          else if (trimmedDirective.startsWith("stale-while-revalidate=") == true)
+          {
+            staleWhileRevalidateInMilliseconds = parseSeconds(trimmedDirective.substring("stale-while-revalidate=".length())) * 1000L;
+          }
+        }
+      }
+      // Those directives win whatever their position among the other ones
+      return new CachePolicy(noStore, noCache == true ? 0 : maxAgeInMilliseconds, noCache == true || mustRevalidate == true ? 0 : staleWhileRevalidateInMilliseconds);
+    }
+
+    private static long parseSeconds(String value)
+    {
+      try
+      {
+        return Math.max(0, Long.parseLong(value.replace("\"", "").trim()));
+      }
+      catch (NumberFormatException exception)
+      {
+        return 0;
+      }
+    }
+
+    /**
+     * Whether the response must not be stored at all.
+     */
+    public final boolean noStore;
+
+    public final long maxAgeInMilliseconds;
+
+    public final long staleWhileRevalidateInMilliseconds;
+
+    public CachePolicy(boolean noStore, long maxAgeInMilliseconds, long staleWhileRevalidateInMilliseconds)
+    {
+      this.noStore = noStore;
+      this.maxAgeInMilliseconds = maxAgeInMilliseconds;
+      this.staleWhileRevalidateInMilliseconds = staleWhileRevalidateInMilliseconds;
+    }
+
+  }
+
+  /**
+   * A cached response.
+   */
+  public static final class Entry
+  {
+
+    public final String key;
+
+    public final String eTag;
+
+    public final String lastModified;
+
+    /**
+     * The time the response was last received or revalidated, in milliseconds since the epoch.
+     */
+    public final long storedTimestamp;
+
+    public final CachePolicy cachePolicy;
+
+    private final File bodyFile;
+
+    /**
+     * The body opened when the entry was stored or revalidated, so that it remains readable even if the entry is evicted in the meantime.
+     */
+    private InputStream openedBody;
+
+    private Entry(String key, String eTag, String lastModified, long storedTimestamp, CachePolicy cachePolicy,
+        File bodyFile)
+    {
+      this.key = key;
+      this.eTag = eTag;
+      this.lastModified = lastModified;
+      this.storedTimestamp = storedTimestamp;
+      this.cachePolicy = cachePolicy;
+      this.bodyFile = bodyFile;
+    }
+
+    /**
+     * @return {@code true} if the entry can be used without contacting the server
+     */
+    public boolean isFresh()
+    {
+      return System.currentTimeMillis() < storedTimestamp + cachePolicy.maxAgeInMilliseconds;
+    }
+
+    /**
+     * @return {@code true} if the entry is not fresh anymore, but may be used while it is revalidated in the background
+     */
+    public boolean isStaleWhileRevalidate()
+    {
+      return isFresh() == false && System.currentTimeMillis() < storedTimestamp + cachePolicy.maxAgeInMilliseconds + cachePolicy.staleWhileRevalidateInMilliseconds;
+    }
+
+    public long getBodyLength()
+    {
+      return bodyFile.length();
+    }
+
+    /**
+     * Opens the body. The first invocation on an entry returned by the {@link DiskResponseCache#put(String, String, String, CachePolicy, InputStream)}
+     * or {@link DiskResponseCache#revalidate(Entry, CachePolicy)} methods returns the body which has been opened by them, and hence succeeds even if
+     * the entry has been evicted since.
+     */
+    public InputStream openBody()
+        throws IOException
+    {
+      synchronized (this)
+      {
+        if (openedBody != null)
+        {
+          final InputStream inputStream = openedBody;
+          openedBody = null;
+          return inputStream;
+        }
+      }
+      return new FileInputStream(bodyFile);
+    }
+
+    /**
+     * Releases the body opened when the entry was stored or revalidated, which should be invoked when the {@link #openBody()} method will not be.
+     */
+    public void releaseBody()
+    {
+      final InputStream inputStream;
+      synchronized (this)
+      {
+        inputStream = openedBody;
+        openedBody = null;
+      }
+      if (inputStream != null)
+      {
+        try
+        {
+          inputStream.close();
+        }
+        catch (IOException exception)
+        {
+          // We cannot do anything :(
+        }
+      }
+    }
+
+    /**
+     * @return a checksum of the body, which tells whether two entries hold the same content, even when the server does not send any validator
+     */
+    public long computeBodyChecksum()
+        throws IOException
+    {
+      final CRC32 crc = new CRC32();
+      final InputStream inputStream = openBody();
+      try
+      {
+        final byte[] buffer = new byte[8192];
+        int count;
+        while ((count = inputStream.read(buffer)) != -1)
+        {
+          crc.update(buffer, 0, count);
+        }
+      }
+      finally
+      {
+        inputStream.close();
+      }
+      return crc.getValue();
+    }
+
+  }
+
+  private static final Logger log = LoggerFactory.getInstance(DiskResponseCache.class);
+
+  private static final String BODY_EXTENSION = ".body";
+
+  private static final String METADATA_EXTENSION = ".metadata";
+
+  private static final String TEMPORARY_EXTENSION = ".tmp";
+
+  /**
+   * Creates a cache located in a sub-directory of the application cache directory.
+   *
+   * @param context            the context used to locate the cache directory
+   * @param directoryName      the name of the cache sub-directory
+   * @param maximumSizeInBytes the maximum cumulated size of the cached bodies
+   * @return a new cache instance, which should be shared by all callers
+   */
+  public static DiskResponseCache create(Context context, String directoryName, long maximumSizeInBytes)
+  {
+    return new DiskResponseCache(new File(context.getCacheDir(), directoryName), maximumSizeInBytes);
+  }
+
+  private final File directory;
+
+  private final long maximumSizeInBytes;
+
+  /**
+   * The body sizes indexed by entry file name, ordered from the least to the most recently used.
+   */
+  private final LinkedHashMap<String, Long> sizes = new LinkedHashMap<String, Long>(16, 0.75f, true);
+
+  private long sizeInBytes;
+
+  public DiskResponseCache(File directory, long maximumSizeInBytes)
+  {
+    this.directory = directory;
+    this.maximumSizeInBytes = maximumSizeInBytes;
+    directory.mkdirs();
+    index();
+  }
+
+  public synchronized long getSizeInBytes()
+  {
+    return sizeInBytes;
+  }
+
+  /**
+   * @param key the request key
+   * @return the cached entry, or {@code null} if there is none
+   */
+  public synchronized Entry get(String key)
+  {
+    final String fileName = computeFileName(key);
+    if (sizes.get(fileName) == null)
+    {
+      return null;
+    }
+    try
+    {
+      final Properties properties = readMetadata(fileName);
+      final File bodyFile = new File(directory, fileName + DiskResponseCache.BODY_EXTENSION);
+      // We record the access, so that the LRU order survives the process
+      bodyFile.setLastModified(System.currentTimeMillis());
+      return new Entry(key, properties.getProperty("eTag"), properties.getProperty("lastModified"), Long.parseLong(properties.getProperty("storedTimestamp")), new CachePolicy(false, Long.parseLong(properties.getProperty("maxAge")), Long.parseLong(properties.getProperty("staleWhileRevalidate"))), bodyFile);
+    }
+    catch (Exception exception)
+    {
+      if (log.isWarnEnabled())
+      {
+        log.warn("Could not read the cache entry for '" + DiskResponseCache.describe(key) + "': discarding it", exception);
+      }
+      removeFiles(fileName);
+      return null;
+    }
+  }
+
+  /**
+   * Stores a response body. The body is first written to a temporary file, so that a pending reader of the previous entry is not disturbed.
+   *
+   * @param key          the request key
+   * @param eTag         the {@code ETag} response header value, may be {@code null}
+   * @param lastModified the {@code Last-Modified} response header value, may be {@code null}
+   * @param cachePolicy  the response cache policy
+   * @param inputStream  the response body, which will be entirely read, but not closed
+   * @return the new entry, whose body is open till its {@link Entry#openBody()} or {@link Entry#releaseBody()} method is invoked
+   */
+  public Entry put(String key, String eTag, String lastModified, CachePolicy cachePolicy, InputStream inputStream)
+      throws IOException
+  {
+    final String fileName = computeFileName(key);
+    final File temporaryFile = File.createTempFile(fileName, DiskResponseCache.TEMPORARY_EXTENSION, directory);
+    final OutputStream outputStream = new FileOutputStream(temporaryFile);
+    try
+    {
+      final byte[] buffer = new byte[8192];
+      int length;
+      while ((length = inputStream.read(buffer)) != -1)
+      {
+        outputStream.write(buffer, 0, length);
+      }
+    }
+    catch (IOException exception)
+    {
+      temporaryFile.delete();
+      throw exception;
+    }
+    finally
+    {
+      outputStream.close();
+    }
+
+    synchronized (this)
+    {
+      final File bodyFile = new File(directory, fileName + DiskResponseCache.BODY_EXTENSION);
+      removeFiles(fileName);
+      if (temporaryFile.renameTo(bodyFile) == false)
+      {
+        temporaryFile.delete();
+        throw new IOException("Could not store the cache entry for '" + DiskResponseCache.describe(key) + "'");
+      }
+      final long storedTimestamp = System.currentTimeMillis();
+      writeMetadata(fileName, eTag, lastModified, storedTimestamp, cachePolicy);
+      sizes.put(fileName, bodyFile.length());
+      sizeInBytes += bodyFile.length();
+      final Entry entry = new Entry(key, eTag, lastModified, storedTimestamp, cachePolicy, bodyFile);
+      // The body is opened before the trimming, which may evict the new entry when it is larger than the cache, or later on because of another
+      // entry, so that the caller can read what it has just downloaded
+      entry.openedBody = new FileInputStream(bodyFile);
+      trim();
+      return entry;
+    }
+  }
+
+  /**
+   * Records that an entry has been revalidated by the server, i.e. that it received a "304 Not Modified" response.
+   *
+   * @param entry       the entry which has been revalidated
+   * @param cachePolicy the cache policy of the revalidation response
+   * @return the refreshed entry, whose body is open till its {@link Entry#openBody()} or {@link Entry#releaseBody()} method is invoked, or
+   * {@code null} if the entry has been evicted in the meantime
+   */
+  public synchronized Entry revalidate(Entry entry, CachePolicy cachePolicy)
+      throws IOException
+  {
+    final String fileName = computeFileName(entry.key);
+    if (sizes.containsKey(fileName) == false)
+    {
+      // The body is gone, and writing the metadata would only leave an orphan file
+      return null;
+    }
+    final long storedTimestamp = System.currentTimeMillis();
+    writeMetadata(fileName, entry.eTag, entry.lastModified, storedTimestamp, cachePolicy);
+    final Entry newEntry = new Entry(entry.key, entry.eTag, entry.lastModified, storedTimestamp, cachePolicy, entry.bodyFile);
+    newEntry.openedBody = new FileInputStream(entry.bodyFile);
+    return newEntry;
+  }
+
+  public synchronized void remove(String key)
+  {
+    removeFiles(computeFileName(key));
+  }
+
+  public synchronized void clear()
+  {
+    for (String fileName : new ArrayList<String>(sizes.keySet()))
+    {
+      removeFiles(fileName);
+    }
+  }
+
+  private void index()
+  {
+    final File[] files = directory.listFiles();
+    if (files == null)
+    {
+      return;
+    }
+    // The body files last modification date reflects their last access
+    Arrays.sort(files, new Comparator<File>()
+    {
+      @Override
+      public int compare(File file1, File file2)
+      {
+        return file1.lastModified() < file2.lastModified() ? -1 : (file1.lastModified() == file2.lastModified() ? 0 : 1);
+      }
+    });
+    final List<File> leftOvers = new ArrayList<File>();
+    synchronized (this)
+    {
+      for (File file : files)
+      {
+        final String name = file.getName();
+        if (name.endsWith(DiskResponseCache.BODY_EXTENSION) == true)
+        {
+          final String fileName = name.substring(0, name.length() - DiskResponseCache.BODY_EXTENSION.length());
+          if (new File(directory, fileName + DiskResponseCache.METADATA_EXTENSION).exists() == true)
+          {
+            sizes.put(fileName, file.length());
+            sizeInBytes += file.length();
+          }
+          else
+          {
+            leftOvers.add(file);
+          }
+        }
+        else if (name.endsWith(DiskResponseCache.METADATA_EXTENSION) == true)
+        {
+          final String fileName = name.substring(0, name.length() - DiskResponseCache.METADATA_EXTENSION.length());
+          if (new File(directory, fileName + DiskResponseCache.BODY_EXTENSION).exists() == false)
+          {
+            leftOvers.add(file);
+          }
+        }
+        else if (name.endsWith(DiskResponseCache.TEMPORARY_EXTENSION) == true)
+        {
+          leftOvers.add(file);
+        }
+      }
+      trim();
+    }
+    for (File file : leftOvers)
+    {
+      file.delete();
+    }
+    if (log.isDebugEnabled())
+    {
+      log.debug("Indexed " + sizes.size() + " cache entry(ies) for a total of " + sizeInBytes + " byte(s) in the directory '" + directory + "'");
+    }
+  }
+
+  private void trim()
+  {
+    final Iterator<Map.Entry<String, Long>> iterator = sizes.entrySet().iterator();
+    while (sizeInBytes > maximumSizeInBytes && iterator.hasNext() == true)
+    {
+      final Map.Entry<String, Long> eldest = iterator.next();
+      iterator.remove();
+      sizeInBytes -= eldest.getValue();
+      new File(directory, eldest.getKey() + DiskResponseCache.BODY_EXTENSION).delete();
+      new File(directory, eldest.getKey() + DiskResponseCache.METADATA_EXTENSION).delete();
+    }
+  }
+
+  private void removeFiles(String fileName)
+  {
+    final Long size = sizes.remove(fileName);
+    if (size != null)
+    {
+      sizeInBytes -= size;
+    }
+    new File(directory, fileName + DiskResponseCache.BODY_EXTENSION).delete();
+    new File(directory, fileName + DiskResponseCache.METADATA_EXTENSION).delete();
+  }
+
+  private Properties readMetadata(String fileName)
+      throws IOException
+  {
+    final Properties properties = new Properties();
+    final InputStream inputStream = new FileInputStream(new File(directory, fileName + DiskResponseCache.METADATA_EXTENSION));
+    try
+    {
+      properties.load(inputStream);
+    }
+    finally
+    {
+      inputStream.close();
+    }
+    return properties;
+  }
+
+  /**
+   * The key is not written, because it holds the values of request headers like {@code Authorization}: the file name, which is a digest of the
+   * key, is enough for identifying the entry.
+   */
+  private void writeMetadata(String fileName, String eTag, String lastModified, long storedTimestamp,
+      CachePolicy cachePolicy)
+      throws IOException
+  {
+    final Properties properties = new Properties();
+    if (eTag != null)
+    {
+      properties.setProperty("eTag", eTag);
+    }
+    if (lastModified != null)
+    {
+      properties.setProperty("lastModified", lastModified);
+    }
+    properties.setProperty("storedTimestamp", Long.toString(storedTimestamp));
+    properties.setProperty("maxAge", Long.toString(cachePolicy.maxAgeInMilliseconds));
+    properties.setProperty("staleWhileRevalidate", Long.toString(cachePolicy.staleWhileRevalidateInMilliseconds));
+    final OutputStream outputStream = new FileOutputStream(new File(directory, fileName + DiskResponseCache.METADATA_EXTENSION));
+    try
+    {
+      properties.store(outputStream, null);
+    }
+    finally
+    {
+      outputStream.close();
+    }
+  }
+
+  /**
+   * @return the method and the URI of the request key, without its header values, which may hold credentials, and which is hence suitable for
+   * the logs and the exception messages
+   */
+  static String describe(String key)
+  {
+    final int index = key.indexOf('\n');
+    return index < 0 ? key : key.substring(0, index);
+  }
+
+  private static String computeFileName(String key)
+  {
+    try
+    {
+      final byte[] digest = MessageDigest.getInstance("MD5").digest(key.getBytes("UTF-8"));
+      final StringBuilder builder = new StringBuilder(digest.length * 2);
+      for (byte aByte : digest)
+      {
+        builder.append(Character.forDigit((aByte >> 4) & 0xF, 16)).append(Character.forDigit(aByte & 0xF, 16));
+      }
+      return builder.toString();
+    }
+    catch (NoSuchAlgorithmException exception)
+    {
+      throw new IllegalStateException(exception);
+    }
+    catch (IOException exception)
+    {
+      throw new IllegalStateException(exception);
+    }
+  }
+
+}
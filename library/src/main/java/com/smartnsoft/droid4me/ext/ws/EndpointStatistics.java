@@ -0,0 +1,216 @@
+// The MIT License (MIT)
+//
+// Copyright (c) 2017 Smart&Soft
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+// SOFTWARE.
+
+package com.smartnsoft.droid4me.ext.ws;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+
+import com.smartnsoft.droid4me.ext.ws.CallTimings.Phase;
+
+/**
+ * Aggregates the {@link CallTimings} per endpoint, in order to compute the percentiles of each phase duration over the most recent calls.
+ *
+ * @since 2026.10.19
+ */
+public final class EndpointStatistics
+{
+
+  /**
+   * The most recent samples of a single endpoint, stored in circular buffers.
+   */
+  private static final class Samples
+  {
+
+    private final long[][] durations;
+
+    private long receivedBytes;
+
+    private long encodedReceivedBytes;
+
+    private long encodedDecodedBytes;
+
+    private int count;
+
+    private int next;
+
+    private Samples(int capacity)
+    {
+      durations = new long[Phase.values().length][capacity];
+    }
+
+    private void add(CallTimings callTimings)
+    {
+      for (Phase phase : Phase.values())
+      {
+        durations[phase.ordinal()][next] = callTimings.getDurationInMilliseconds(phase);
+      }
+      receivedBytes += Math.max(0, callTimings.getReceivedBytes());
+      if (callTimings.getReceivedBytes() > 0 && callTimings.getDecodedBytes() >= 0 && callTimings.isEncoded() == true)
+      {
+        encodedReceivedBytes += callTimings.getReceivedBytes();
+        encodedDecodedBytes += callTimings.getDecodedBytes();
+      }
+      next = (next + 1) % durations[0].length;
+      count++;
+    }
+
+    private long getPercentile(Phase phase, int percentile)
+    {
+      final int size = Math.min(count, durations[0].length);
+      final long[] sorted = new long[size];
+      int measuredCount = 0;
+      for (int index = 0; index < size; index++)
+      {
+        final long duration = durations[phase.ordinal()][index];
+        if (duration >= 0)
+        {
+          sorted[measuredCount++] = duration;
+        }
+      }
+      if (measuredCount == 0)
+      {
+        return -1;
+      }
+      Arrays.sort(sorted, 0, measuredCount);
+      // The "nearest rank" method
+      final int rank = (int) Math.ceil(percentile / 100d * measuredCount);
+      return sorted[Math.max(0, Math.min(measuredCount, rank) - 1)];
+    }
+
+  }
+
+  public static final int DEFAULT_CAPACITY = 100;
+
+  private final int capacity;
+
+  private final Map<String, Samples> samples = new HashMap<String, Samples>();
+
+  public EndpointStatistics()
+  {
+    this(EndpointStatistics.DEFAULT_CAPACITY);
+  }
+
+  /**
+   * @param capacity the number of most recent calls taken into account per endpoint
+   */
+  public EndpointStatistics(int capacity)
+  {
+    this.capacity = capacity;
+  }
+
+  public synchronized void record(CallTimings callTimings)
+  {
+    Samples endpointSamples = samples.get(callTimings.endpoint);
+    if (endpointSamples == null)
+    {
+      endpointSamples = new Samples(capacity);
+      samples.put(callTimings.endpoint, endpointSamples);
+    }
+    endpointSamples.add(callTimings);
+  }
+
+  /**
+   * @return the number of calls recorded for the given endpoint since its statistics were created
+   */
+  public synchronized int getCallsCount(String endpoint)
+  {
+    final Samples endpointSamples = samples.get(endpoint);
+    return endpointSamples == null ? 0 : endpointSamples.count;
+  }
+
+  /**
+   * @param endpoint   the endpoint
+   * @param phase      the call phase
+   * @param percentile a value between 0 and 100
+   * @return the given percentile of the phase duration over the most recent calls of the endpoint, in milliseconds, or {@code -1} if no
+   * measure is available
+   */
+  public synchronized long getPercentile(String endpoint, Phase phase, int percentile)
+  {
+    final Samples endpointSamples = samples.get(endpoint);
+    return endpointSamples == null ? -1 : endpointSamples.getPercentile(phase, percentile);
+  }
+
+  /**
+   * @return the ratio between the decoded size and the received size of the encoded bodies of the endpoint, or {@code -1} if none of its bodies
+   * has been encoded ; the time spent decoding them is available through the {@link Phase#Decompression} phase percentiles
+   */
+  public synchronized double getCompressionRatio(String endpoint)
+  {
+    final Samples endpointSamples = samples.get(endpoint);
+    return endpointSamples == null || endpointSamples.encodedReceivedBytes <= 0 ? -1 : (double) endpointSamples.encodedDecodedBytes / endpointSamples.encodedReceivedBytes;
+  }
+
+  public synchronized void clear()
+  {
+    samples.clear();
+  }
+
+  /**
+   * Writes the p50, p90 and p99 of every phase of every endpoint into a CSV file, for an offline analysis.
+   *
+   * @param file the file to write, which is overwritten
+   */
+  public void dump(File file)
+      throws IOException
+  {
+    final Map<String, Samples> sortedSamples;
+    final StringBuilder builder = new StringBuilder("endpoint,calls,receivedBytes,compressionRatio");
+    for (Phase phase : Phase.values())
+    {
+      builder.append(',').append(phase).append("P50,").append(phase).append("P90,").append(phase).append("P99");
+    }
+    builder.append('\n');
+    synchronized (this)
+    {
+      sortedSamples = new TreeMap<String, Samples>(samples);
+      for (Entry<String, Samples> entry : sortedSamples.entrySet())
+      {
+        final Samples endpointSamples = entry.getValue();
+        builder.append('"').append(entry.getKey().replace("\"", "\"\"")).append("\",").append(endpointSamples.count).append(',').append(endpointSamples.receivedBytes).append(',').append(endpointSamples.encodedReceivedBytes <= 0 ? -1 : (double) endpointSamples.encodedDecodedBytes / endpointSamples.encodedReceivedBytes);
+        for (Phase phase : Phase.values())
+        {
+          builder.append(',').append(endpointSamples.getPercentile(phase, 50)).append(',').append(endpointSamples.getPercentile(phase, 90)).append(',').append(endpointSamples.getPercentile(phase, 99));
+        }
+        builder.append('\n');
+      }
+    }
+    final Writer writer = new FileWriter(file);
+    try
+    {
+      writer.write(builder.toString());
+    }
+    finally
+    {
+      writer.close();
+    }
+  }
+
+}
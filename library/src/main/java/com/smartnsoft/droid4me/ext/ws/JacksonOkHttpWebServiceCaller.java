@@ -0,0 +1,239 @@
+// The MIT License (MIT)
+//
+// Copyright (c) 2017 Smart&Soft
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+// SOFTWARE.
+
+package com.smartnsoft.droid4me.ext.ws;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.TimeUnit;
+
+import com.smartnsoft.droid4me.ext.json.jackson.CancellationToken;
+import com.smartnsoft.droid4me.ext.json.jackson.JacksonParser;
+import com.smartnsoft.droid4me.ext.json.jackson.ObjectMapperComputer;
+import com.smartnsoft.droid4me.log.Logger;
+import com.smartnsoft.droid4me.log.LoggerFactory;
+import com.smartnsoft.droid4me.ws.WebServiceClient.CallException;
+
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import okhttp3.Call;
+import okhttp3.ConnectionPool;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.BufferedSink;
+
+/**
+ * A web service caller which is supported by Jackson, like the {@link JacksonURLConnectionWebServiceCaller}, but which runs over OkHttp, and
+ * hence over HTTP/2 when the server supports it: the concurrent calls to the same host are multiplexed over a single connection, instead of
+ * each one requiring its own connection.
+ * <p>
+ * The OkHttp library is an optional dependency of this library: the application which uses this class must declare the
+ * {@code com.squareup.okhttp3:okhttp} dependency, in a 3.12.x version for Android 4.x devices to be supported.
+ * </p>
+ * <p>
+ * All the instances created through the {@link #JacksonOkHttpWebServiceCaller(int, int)} constructor share the same connection pool.
+ * </p>
+ *
+ * @since 2026.10.19
+ */
+public abstract class JacksonOkHttpWebServiceCaller
+    implements ObjectMapperComputer
+{
+
+  private static final Logger log = LoggerFactory.getInstance(JacksonOkHttpWebServiceCaller.class);
+
+  private static final MediaType JSON_MEDIA_TYPE = MediaType.parse("application/json; charset=utf-8");
+
+  private static volatile OkHttpClient sharedOkHttpClient;
+
+  // We accept the "out-of-order writes" case
+  private static OkHttpClient getSharedOkHttpClient()
+  {
+    if (sharedOkHttpClient == null)
+    {
+      synchronized (JacksonOkHttpWebServiceCaller.class)
+      {
+        if (sharedOkHttpClient == null)
+        {
+          sharedOkHttpClient = new OkHttpClient.Builder().protocols(Arrays.asList(Protocol.HTTP_2, Protocol.HTTP_1_1)).connectionPool(new ConnectionPool(5, 5, TimeUnit.MINUTES)).build();
+        }
+      }
+    }
+    return sharedOkHttpClient;
+  }
+
+  public final JacksonParser jacksonParser;
+
+  private final OkHttpClient okHttpClient;
+
+  protected JacksonOkHttpWebServiceCaller(int readTimeOutInMilliseconds, int connectTimeOutInMilliseconds)
+  {
+    this(JacksonOkHttpWebServiceCaller.getSharedOkHttpClient().newBuilder().readTimeout(readTimeOutInMilliseconds, TimeUnit.MILLISECONDS).connectTimeout(connectTimeOutInMilliseconds, TimeUnit.MILLISECONDS).build());
+  }
+
+  /**
+   * @param okHttpClient the client used for all the calls, which should be shared with the other callers for the connections to be shared
+   */
+  protected JacksonOkHttpWebServiceCaller(OkHttpClient okHttpClient)
+  {
+    this.okHttpClient = okHttpClient;
+    this.jacksonParser = new JacksonParser(this);
+  }
+
+  @Override
+  public ObjectMapper computeObjectMapper()
+  {
+    return JacksonParser.computeDefaultObjectMapper();
+  }
+
+  public final OkHttpClient getOkHttpClient()
+  {
+    return okHttpClient;
+  }
+
+  /**
+   * Runs a "GET" request and binds its body while it is being downloaded.
+   *
+   * @param uri               the full URI of the request
+   * @param headers           the request headers, may be {@code null}
+   * @param javaType          the type to bind the body to
+   * @param cancellationToken the token which aborts the request and the parsing, may be {@code null}
+   * @return the bound body
+   */
+  protected final <ContentType> ContentType getJson(String uri, Map<String, String> headers, JavaType javaType,
+      CancellationToken cancellationToken)
+      throws CallException
+  {
+    return execute(computeRequestBuilder(uri, headers).get().build(), javaType, cancellationToken);
+  }
+
+  /**
+   * Sends a request whose JSON body is serialized straight into the connection while being transmitted.
+   *
+   * @param uri      the full URI of the request
+   * @param verb     the HTTP method, typically "POST" or "PUT"
+   * @param headers  the request headers, may be {@code null}
+   * @param body     the object to serialize as the request body
+   * @param javaType the type to bind the response body to ; when {@code null}, the response body is ignored
+   * @return the bound response body, or {@code null} if the {@code javaType} parameter is {@code null}
+   */
+  protected final <ContentType> ContentType sendJson(String uri, String verb, Map<String, String> headers,
+      final Object body, JavaType javaType)
+      throws CallException
+  {
+    final RequestBody requestBody = new RequestBody()
+    {
+      @Override
+      public MediaType contentType()
+      {
+        return JacksonOkHttpWebServiceCaller.JSON_MEDIA_TYPE;
+      }
+
+      @Override
+      public void writeTo(BufferedSink sink)
+          throws IOException
+      {
+        jacksonParser.serializeJson(body, sink.outputStream());
+      }
+    };
+    return execute(computeRequestBuilder(uri, headers).method(verb, requestBody).build(), javaType, null);
+  }
+
+  private Request.Builder computeRequestBuilder(String uri, Map<String, String> headers)
+  {
+    final Request.Builder builder = new Request.Builder().url(uri);
+    if (headers != null)
+    {
+      for (Entry<String, String> header : headers.entrySet())
+      {
+        builder.header(header.getKey(), header.getValue());
+      }
+    }
+    return builder;
+  }
+
+  private <ContentType> ContentType execute(Request request, JavaType javaType, CancellationToken cancellationToken)
+      throws CallException
+  {
+    final Call call = okHttpClient.newCall(request);
+    final Closeable canceller = new Closeable()
+    {
+      @Override
+      public void close()
+      {
+        call.cancel();
+      }
+    };
+    if (cancellationToken != null)
+    {
+      cancellationToken.register(canceller);
+    }
+    Response response = null;
+    try
+    {
+      response = call.execute();
+      if (log.isDebugEnabled())
+      {
+        log.debug("Received the response to the " + request.method() + " request '" + request.url() + "' over " + response.protocol() + " with the status code " + response.code());
+      }
+      if (response.isSuccessful() == false)
+      {
+        throw new CallException("The request to '" + request.url() + "' failed with the status code " + response.code(), response.code());
+      }
+      final ResponseBody responseBody = response.body();
+      if (javaType == null || responseBody == null)
+      {
+        return null;
+      }
+      // OkHttp decodes the gzip bodies transparently, in which case the content length is unknown
+      return jacksonParser.deserializeJson(responseBody.byteStream(), responseBody.contentLength(), null, null, javaType, cancellationToken);
+    }
+    catch (IOException exception)
+    {
+      if (cancellationToken != null)
+      {
+        cancellationToken.throwIfCancelled();
+      }
+      throw new CallException("The request to '" + request.url() + "' failed", exception);
+    }
+    finally
+    {
+      if (response != null)
+      {
+        response.close();
+      }
+      if (cancellationToken != null)
+      {
+        cancellationToken.unregister(canceller);
+      }
+    }
+  }
+
+}
@@ -22,16 +22,58 @@
 
 package com.smartnsoft.droid4me.ext.ws;
 
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import com.smartnsoft.droid4me.ext.json.jackson.CancellationToken;
 import com.smartnsoft.droid4me.ext.json.jackson.JacksonParser;
 import com.smartnsoft.droid4me.ext.json.jackson.ObjectMapperComputer;
+import com.smartnsoft.droid4me.ext.ws.CallTimings.Phase;
+import com.smartnsoft.droid4me.ext.ws.DiskResponseCache.CachePolicy;
+import com.smartnsoft.droid4me.ext.ws.RequestScheduler.Priority;
+import com.smartnsoft.droid4me.log.Logger;
+import com.smartnsoft.droid4me.log.LoggerFactory;
 import com.smartnsoft.droid4me.ws.URLConnectionWebServiceCaller;
+import com.smartnsoft.droid4me.ws.WebServiceClient.CallException;
 
-import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JavaType;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.SerializationFeature;
 
 /**
  * A web service which is supported by Jackson.
+ * <p>
+ * The features which need the HTTP exchange itself, i.e. the {@code getJson*()}, {@code sendJson()} and {@code downloadJson()} methods, go through
+ * {@link #openConnection(String, String, Map)}: only those calls are measured, reported to the {@link CallTimingsListener} and the
+ * {@link NetworkQualityEstimator}, adapted by the {@link TailLatencyPolicy} and guarded by the {@link CircuitBreaker}. The requests run through
+ * the inherited {@link URLConnectionWebServiceCaller} methods are left untouched, hence are not seen by those components.
+ * </p>
  *
  * @author Ludovic Roland
  * @since 2016.01.29
@@ -41,24 +83,1422 @@ public abstract class JacksonURLConnectionWebServiceCaller
     implements ObjectMapperComputer
 {
 
+  /**
+   * Represents a web service call along with the handling of its response.
+   *
+   * @param <ResultType> the type of the call outcome
+   */
+  public interface Call<ResultType>
+  {
+
+    ResultType call()
+        throws CallException;
+
+  }
+
+  /**
+   * A call which may be aborted through its {@link CancellationToken}, when another call made the same request first.
+   *
+   * @param <ResultType> the type of the call outcome
+   */
+  public interface CancellableCall<ResultType>
+  {
+
+    /**
+     * @param cancellationToken the token which should be used for the connection and the parsing of the call
+     */
+    ResultType call(CancellationToken cancellationToken)
+        throws CallException;
+
+  }
+
+  private static final Logger log = LoggerFactory.getInstance(JacksonURLConnectionWebServiceCaller.class);
+
+  /**
+   * The maximum number of duplicate calls run simultaneously by the {@link #runHedged(String, String, CancellableCall)} method.
+   */
+  private static final int HEDGING_THREADS_COUNT = 8;
+
+  /**
+   * The maximum initial capacity of the buffer holding a body which is about to be snapshotted, whatever its announced length.
+   */
+  private static final int SNAPSHOT_INITIAL_BUFFER_MAXIMUM_IN_BYTES = 64 * 1024;
+
+  /**
+   * Notified of the per-phase timing breakdown of every call run through the features of this class which handle the HTTP exchange themselves.
+   */
+  public interface CallTimingsListener
+  {
+
+    /**
+     * Invoked from the calling thread, once the call is over.
+     */
+    void onCallTimings(CallTimings callTimings);
+
+  }
+
+  /**
+   * Notified when the background revalidation of a response which has been served from the cache reveals that its content has changed.
+   *
+   * @param <ContentType> the type of the bound body
+   * @see #getJsonStaleFirst(String, Map, JavaType, ContentChangeListener)
+   */
+  public interface ContentChangeListener<ContentType>
+  {
+
+    /**
+     * Invoked from a background thread.
+     *
+     * @param content the new content, bound from the revalidated response
+     */
+    void onContentChanged(ContentType content);
+
+  }
+
+  /**
+   * A listener waiting for the outcome of a background revalidation, along with the checksum of the body which has been served to it.
+   */
+  private static final class PendingListener
+  {
+
+    private final ContentChangeListener<Object> listener;
+
+    private final JavaType javaType;
+
+    private final long servedChecksum;
+
+    private PendingListener(ContentChangeListener<Object> listener, JavaType javaType, long servedChecksum)
+    {
+      this.listener = listener;
+      this.javaType = javaType;
+      this.servedChecksum = servedChecksum;
+    }
+
+  }
+
   public final JacksonParser jacksonParser;
 
+  private final int readTimeOutInMilliseconds;
+
+  private final int connectTimeOutInMilliseconds;
+
+  private final boolean acceptGzip;
+
+  private final EndpointStatistics endpointStatistics = new EndpointStatistics();
+
+  private volatile CallTimingsListener callTimingsListener;
+
+  private final RequestCoalescer requestCoalescer = new RequestCoalescer();
+
+  private volatile RequestThrottler requestThrottler;
+
+  private volatile RequestScheduler requestScheduler = RequestScheduler.getInstance();
+
+  /**
+   * The listeners waiting for the revalidations in progress, indexed by cache key.
+   */
+  private final Map<String, List<PendingListener>> pendingRevalidations = new HashMap<String, List<PendingListener>>();
+
+  private volatile DiskResponseCache responseCache;
+
+  private ExecutorService revalidationExecutor;
+
+  private volatile TailLatencyPolicy tailLatencyPolicy;
+
+  private ExecutorService hedgingExecutor;
+
+  private ScheduledExecutorService hedgingTimer;
+
+  private volatile RequestBatcher requestBatcher;
+
+  private volatile CircuitBreaker circuitBreaker;
+
+  private volatile RequestCompressionPolicy requestCompressionPolicy;
+
+  private volatile ResponseJournal responseJournal;
+
+  private volatile NetworkQualityEstimator networkQualityEstimator = NetworkQualityEstimator.getInstance();
+
   protected JacksonURLConnectionWebServiceCaller(int readTimeOutInMilliseconds, int connectTimeOutInMilliseconds,
       boolean acceptGzip)
   {
     super(readTimeOutInMilliseconds, connectTimeOutInMilliseconds, acceptGzip);
     this.jacksonParser = new JacksonParser(this);
+    this.readTimeOutInMilliseconds = readTimeOutInMilliseconds;
+    this.connectTimeOutInMilliseconds = connectTimeOutInMilliseconds;
+    this.acceptGzip = acceptGzip;
   }
 
   @Override
   public ObjectMapper computeObjectMapper()
   {
-    final ObjectMapper theObjectMapper = new ObjectMapper();
-    // We indicate to the parser not to fail in case of unknown properties, for backward compatibility reasons
-    // See http://stackoverflow.com/questions/6300311/java-jackson-org-codehaus-jackson-map-exc-unrecognizedpropertyexception
-    theObjectMapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
-    theObjectMapper.configure(SerializationFeature.WRITE_NULL_MAP_VALUES, true);
-    return theObjectMapper;
+    return JacksonParser.computeDefaultObjectMapper();
+  }
+
+  /**
+   * Runs the provided call, while making sure that, if the call is idempotent, it is coalesced with an identical in-flight call: in that case,
+   * a single network call and a single parsing take place, and their outcome is shared with every caller.
+   * When a {@link RequestThrottler} has been set, the outcome of an identical call which succeeded recently is also reused.
+   *
+   * @param verb    the HTTP method of the call: only the "GET" and "HEAD" calls are coalesced
+   * @param uri     the full URI of the call
+   * @param headers the headers of the call, may be {@code null}
+   * @param call    the actual call, which performs the request and parses its response
+   * @return the call outcome, which may be shared with other callers and should hence not be modified
+   * @see #getCoalescingHeaderNames()
+   * @see #setRequestThrottler(RequestThrottler)
+   */
+  protected final <ResultType> ResultType runCoalesced(String verb, String uri, Map<String, String> headers,
+      Call<ResultType> call)
+      throws CallException
+  {
+    if ("GET".equalsIgnoreCase(verb) == false && "HEAD".equalsIgnoreCase(verb) == false)
+    {
+      return call.call();
+    }
+    final String key = RequestCoalescer.computeKey(verb.toUpperCase(), uri, headers, getCoalescingHeaderNames());
+    final RequestThrottler throttler = requestThrottler;
+    return throttler == null ? requestCoalescer.execute(key, call) : throttler.execute(key, call);
+  }
+
+  /**
+   * Sets the throttler used by the {@link #runCoalesced(String, String, Map, Call)} method.
+   *
+   * @param requestThrottler the throttler ; {@code null}, which is the default, means that the calls are only coalesced
+   */
+  public final void setRequestThrottler(RequestThrottler requestThrottler)
+  {
+    this.requestThrottler = requestThrottler;
+  }
+
+  public final RequestThrottler getRequestThrottler()
+  {
+    return requestThrottler;
+  }
+
+  /**
+   * @return the names of the request headers which make two calls with the same method and URI different, which is used for coalescing the calls
+   * and for computing their cache key
+   */
+  protected String[] getCoalescingHeaderNames()
+  {
+    return new String[] { "Authorization", "Accept", "Accept-Language" };
+  }
+
+  /**
+   * Sets the scheduler used by the {@link #runScheduled(String, Object, Priority, Call)} method, which is the shared
+   * {@link RequestScheduler#getInstance() instance} by default.
+   * <p>
+   * The scheduler, which may be shared by several callers, relies on its own {@link RequestScheduler#setNetworkQualityEstimator(NetworkQualityEstimator)
+   * estimator}, which is not the one set through {@link #setNetworkQualityEstimator(NetworkQualityEstimator)}: when using a dedicated
+   * estimator, it should also be set on the scheduler.
+   * </p>
+   */
+  public final void setRequestScheduler(RequestScheduler requestScheduler)
+  {
+    this.requestScheduler = requestScheduler;
+  }
+
+  /**
+   * Runs the provided call once the scheduler grants it a connection slot for its host, according to its priority and to the visibility of its
+   * owner.
+   *
+   * @param uri      the full URI of the call
+   * @param owner    the entity which needs the call result, typically a {@link com.smartnsoft.droid4me.app.Smartable}, may be {@code null}
+   * @param priority the call priority
+   * @param call     the actual call, which performs the request and parses its response
+   * @return the call outcome
+   */
+  protected final <ResultType> ResultType runScheduled(String uri, Object owner, Priority priority, Call<ResultType> call)
+      throws CallException
+  {
+    final RequestScheduler scheduler = requestScheduler;
+    return scheduler == null ? call.call() : scheduler.execute(uri, owner, priority, call);
+  }
+
+  /**
+   * Sets the persistent cache used by the {@link #getJsonThroughCache(String, Map, JavaType)} method.
+   *
+   * @param responseCache the cache, which may be shared by several callers ; {@code null} disables the caching
+   */
+  public final void setResponseCache(DiskResponseCache responseCache)
+  {
+    this.responseCache = responseCache;
+  }
+
+  public final DiskResponseCache getResponseCache()
+  {
+    return responseCache;
+  }
+
+  /**
+   * Runs a "GET" request through the response cache and binds its body:
+   * <ul>
+   * <li>a fresh cached response is bound without contacting the server;</li>
+   * <li>a stale cached response within its {@code stale-while-revalidate} window is bound, while being revalidated in the background;</li>
+   * <li>otherwise, a conditional request is issued, and the cached body is bound if the server answers "304 Not Modified";</li>
+   * <li>if the server cannot be reached, the cached response is bound, whatever its freshness.</li>
+   * </ul>
+   * When no cache has been set, the request is simply executed and its body bound.
+   *
+   * @param uri      the full URI of the request
+   * @param headers  the request headers, may be {@code null}
+   * @param javaType the type to bind the body to
+   * @return the bound body
+   * @see #setResponseCache(DiskResponseCache)
+   */
+  protected final <ContentType> ContentType getJsonThroughCache(String uri, Map<String, String> headers,
+      JavaType javaType)
+      throws CallException
+  {
+    final DiskResponseCache cache = responseCache;
+    final String key = RequestCoalescer.computeKey("GET", uri, headers, getCoalescingHeaderNames());
+    final DiskResponseCache.Entry entry = cache == null ? null : cache.get(key);
+    if (entry != null && entry.isFresh() == true)
+    {
+      return parseCacheEntry(entry, javaType);
+    }
+    else if (entry != null && entry.isStaleWhileRevalidate() == true)
+    {
+      revalidateInBackground(cache, key, uri, headers, entry, null, null, 0);
+      return parseCacheEntry(entry, javaType);
+    }
+    try
+    {
+      return fetchThroughCache(cache, key, uri, headers, entry, javaType);
+    }
+    catch (IOException exception)
+    {
+      if (entry != null)
+      {
+        if (log.isWarnEnabled())
+        {
+          log.warn("Could not reach the server for the URI '" + uri + "': using the cached response", exception);
+        }
+        return parseCacheEntry(entry, javaType);
+      }
+      throw new CallException(exception);
+    }
+  }
+
+  /**
+   * Runs a "GET" request through the response cache, favouring the responsiveness over the freshness: as long as a cached response exists, it is
+   * bound and returned immediately, whatever its age, and when it is not fresh anymore, it is revalidated in the background. The provided listener
+   * is notified only if the revalidated content differs from the one which has been returned, so that the display is refreshed only when
+   * relevant.
+   * <p>
+   * When there is no cached response, or no cache has been set, this method behaves like the
+   * {@link #getJsonThroughCache(String, Map, JavaType)} method.
+   * </p>
+   *
+   * @param uri      the full URI of the request
+   * @param headers  the request headers, may be {@code null}
+   * @param javaType the type to bind the body to
+   * @param listener notified when the background revalidation changed the content, may be {@code null}
+   * @return the bound body, possibly stale
+   */
+  protected final <ContentType> ContentType getJsonStaleFirst(String uri, Map<String, String> headers,
+      JavaType javaType, ContentChangeListener<ContentType> listener)
+      throws CallException
+  {
+    final DiskResponseCache cache = responseCache;
+    final String key = RequestCoalescer.computeKey("GET", uri, headers, getCoalescingHeaderNames());
+    final DiskResponseCache.Entry entry = cache == null ? null : cache.get(key);
+    if (entry == null)
+    {
+      return getJsonThroughCache(uri, headers, javaType);
+    }
+    if (entry.isFresh() == true || listener == null)
+    {
+      if (entry.isFresh() == false)
+      {
+        revalidateInBackground(cache, key, uri, headers, entry, null, null, 0);
+      }
+      return parseCacheEntry(entry, javaType);
+    }
+    // The checksum is captured before the body is served, because a revalidation in progress may overwrite it in the meantime
+    final long servedChecksum;
+    try
+    {
+      servedChecksum = entry.computeBodyChecksum();
+    }
+    catch (IOException exception)
+    {
+      throw new CallException("Could not read the cached response for '" + DiskResponseCache.describe(key) + "'", exception);
+    }
+    final ContentType content = parseCacheEntry(entry, javaType);
+    revalidateInBackground(cache, key, uri, headers, entry, javaType, listener, servedChecksum);
+    return content;
+  }
+
+  /**
+   * Sets the journal used by the {@link #getJsonOrSnapshot(String, Map, JavaType)} method.
+   *
+   * @param responseJournal the journal ; {@code null}, which is the default, means that no snapshot is kept
+   */
+  public final void setResponseJournal(ResponseJournal responseJournal)
+  {
+    this.responseJournal = responseJournal;
+  }
+
+  public final ResponseJournal getResponseJournal()
+  {
+    return responseJournal;
+  }
+
+  /**
+   * Sets the estimator which is fed with the timings of the calls, and which is queried before hedging a call. Only the calls going through
+   * {@link #openConnection(String, String, Map)} are taken into account.
+   *
+   * @param networkQualityEstimator the estimator ; the default one is the {@link NetworkQualityEstimator#getInstance() shared instance}, and
+   *                                {@code null} means that the network quality is neither estimated nor taken into account ; the
+   *                                {@link #setRequestScheduler(RequestScheduler) scheduler} is not affected and keeps its own estimator
+   */
+  public final void setNetworkQualityEstimator(NetworkQualityEstimator networkQualityEstimator)
+  {
+    this.networkQualityEstimator = networkQualityEstimator;
+  }
+
+  public final NetworkQualityEstimator getNetworkQualityEstimator()
+  {
+    return networkQualityEstimator;
+  }
+
+  /**
+   * Runs a "GET" request and binds its body, while keeping the body as the offline snapshot of the request in the {@link ResponseJournal}: when
+   * the server cannot be reached, fails with a 5xx status code or returns a body which cannot be bound, the last snapshot is bound instead,
+   * straight from the journal.
+   * When no journal has been set, the request is simply executed and its body bound.
+   *
+   * @param uri      the full URI of the request
+   * @param headers  the request headers, may be {@code null}
+   * @param javaType the type to bind the body to
+   * @return the bound body, possibly from a snapshot
+   * @see #setResponseJournal(ResponseJournal)
+   */
+  protected final <ContentType> ContentType getJsonOrSnapshot(String uri, Map<String, String> headers,
+      JavaType javaType)
+      throws CallException
+  {
+    final ResponseJournal journal = responseJournal;
+    if (journal == null)
+    {
+      return getJson(uri, headers, javaType, new CancellationToken());
+    }
+    final String key = RequestCoalescer.computeKey("GET", uri, headers, getCoalescingHeaderNames());
+    final CallTimings callTimings = new CallTimings(computeEndpoint(uri), uri);
+    final Map<String, String> keptHeaders = new HashMap<String, String>();
+    final byte[] body;
+    HttpURLConnection httpURLConnection = null;
+    try
+    {
+      httpURLConnection = openConnection(uri, "GET", headers);
+      final int statusCode = connect(httpURLConnection, callTimings);
+      if (statusCode < 200 || statusCode >= 300)
+      {
+        httpURLConnection.disconnect();
+        final CallException exception = new CallException("The request to '" + uri + "' failed with the status code " + statusCode, statusCode);
+        if (statusCode < 500)
+        {
+          throw exception;
+        }
+        return this.<ContentType>readSnapshot(journal, key, uri, javaType, exception);
+      }
+      final InputStream inputStream = callTimings.meter(httpURLConnection.getInputStream(), httpURLConnection.getContentEncoding());
+      try
+      {
+        // The announced length is not trusted for the initial allocation, the buffer grows if needed
+        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream(Math.max(1024, Math.min(httpURLConnection.getContentLength(), JacksonURLConnectionWebServiceCaller.SNAPSHOT_INITIAL_BUFFER_MAXIMUM_IN_BYTES)));
+        final byte[] buffer = new byte[8192];
+        int count;
+        while ((count = inputStream.read(buffer)) != -1)
+        {
+          outputStream.write(buffer, 0, count);
+        }
+        body = outputStream.toByteArray();
+      }
+      finally
+      {
+        inputStream.close();
+      }
+      for (String headerName : new String[] { "Content-Type", "Date", "ETag", "Last-Modified" })
+      {
+        final String value = httpURLConnection.getHeaderField(headerName);
+        if (value != null)
+        {
+          keptHeaders.put(headerName, value);
+        }
+      }
+      callTimings.onBodyConsumed();
+      onCallTimings(callTimings);
+    }
+    catch (IOException exception)
+    {
+      if (httpURLConnection != null)
+      {
+        httpURLConnection.disconnect();
+      }
+      return this.<ContentType>readSnapshot(journal, key, uri, javaType, new CallException(exception));
+    }
+    // The body is parsed before being stored, so that a response which is not the expected one, like a captive portal page or a truncated body,
+    // does not replace the last good snapshot
+    final ContentType content;
+    try
+    {
+      content = jacksonParser.deserializeJson(ByteBuffer.wrap(body), javaType);
+    }
+    catch (CallException exception)
+    {
+      return this.<ContentType>readSnapshot(journal, key, uri, javaType, exception);
+    }
+    try
+    {
+      journal.put(key, keptHeaders, body);
+    }
+    catch (IOException exception)
+    {
+      if (log.isWarnEnabled())
+      {
+        log.warn("Could not store the snapshot of the URI '" + uri + "' in the journal", exception);
+      }
+    }
+    return content;
+  }
+
+  /**
+   * Sets the policy which adapts the time-outs of the connections opened by this class to the latency of their endpoint, and which enables the
+   * {@link #runHedged(String, String, CancellableCall)} method to duplicate the slow calls. The connections opened by the inherited
+   * {@link URLConnectionWebServiceCaller} methods keep the time-outs set in the constructor.
+   *
+   * @param tailLatencyPolicy the policy ; {@code null}, which is the default, means that the time-outs set in the constructor are always used and
+   *                          that no call is hedged
+   */
+  public final void setTailLatencyPolicy(TailLatencyPolicy tailLatencyPolicy)
+  {
+    this.tailLatencyPolicy = tailLatencyPolicy;
+  }
+
+  public final TailLatencyPolicy getTailLatencyPolicy()
+  {
+    return tailLatencyPolicy;
+  }
+
+  /**
+   * Runs the provided call on the calling thread and, if it is idempotent and has not completed after the delay computed by the
+   * {@link TailLatencyPolicy}, runs it a second time in parallel: the first successful outcome is returned, and the other call is cancelled. The
+   * calls are not hedged when the {@link NetworkQualityEstimator} reports a {@link NetworkQualityEstimator.Quality#Poor} network, nor when the
+   * hedging pool is saturated.
+   *
+   * @param verb the HTTP method of the call: only the "GET" and "HEAD" calls are hedged
+   * @param uri  the full URI of the call
+   * @param call the actual call, which should honour the cancellation token it receives
+   * @return the outcome of the call which succeeded first
+   * @throws CallException the failure of the call run on the calling thread, when both calls failed
+   */
+  protected final <ResultType> ResultType runHedged(String verb, final String uri, final CancellableCall<ResultType> call)
+      throws CallException
+  {
+    final TailLatencyPolicy policy = tailLatencyPolicy;
+    final NetworkQualityEstimator estimator = networkQualityEstimator;
+    // On a poor network, the slowness comes from the link rather than from a server instance, and a duplicate call would only congest it more
+    final boolean poorNetwork = estimator != null && estimator.getQuality() == NetworkQualityEstimator.Quality.Poor;
+    final long hedgingDelayInMilliseconds = policy == null || poorNetwork == true || ("GET".equalsIgnoreCase(verb) == false && "HEAD".equalsIgnoreCase(verb) == false) ? -1 : policy.computeHedgingDelayInMilliseconds(endpointStatistics, computeEndpoint(uri));
+    if (hedgingDelayInMilliseconds < 0)
+    {
+      return call.call(new CancellationToken());
+    }
+    synchronized (this)
+    {
+      if (hedgingExecutor == null)
+      {
+        // The pool is bounded and does not queue anything, so that a stalled endpoint does not delay the hedges of the other calls, which are
+        // skipped instead when the pool is saturated
+        hedgingExecutor = new ThreadPoolExecutor(0, JacksonURLConnectionWebServiceCaller.HEDGING_THREADS_COUNT, 60, TimeUnit.SECONDS, new SynchronousQueue<Runnable>(), JacksonURLConnectionWebServiceCaller.computeDaemonThreadFactory("droid4me-hedging"));
+        hedgingTimer = Executors.newSingleThreadScheduledExecutor(JacksonURLConnectionWebServiceCaller.computeDaemonThreadFactory("droid4me-hedging-timer"));
+      }
+    }
+    final CancellationToken primaryCancellationToken = new CancellationToken();
+    final CancellationToken hedgeCancellationToken = new CancellationToken();
+    // Holds the future of the hedge, once it has been started
+    final List<Future<ResultType>> hedges = new ArrayList<Future<ResultType>>(1);
+    final ScheduledFuture<?> hedgeTimer = hedgingTimer.schedule(new Runnable()
+    {
+      @Override
+      public void run()
+      {
+        synchronized (hedges)
+        {
+          if (primaryCancellationToken.isCancelled() == true || hedgeCancellationToken.isCancelled() == true)
+          {
+            // The primary call is over
+            return;
+          }
+          try
+          {
+            hedges.add(hedgingExecutor.submit(new Callable<ResultType>()
+            {
+              @Override
+              public ResultType call()
+                  throws CallException
+              {
+                final ResultType result = call.call(hedgeCancellationToken);
+                // The hedge won: the primary call is aborted
+                primaryCancellationToken.cancel();
+                return result;
+              }
+            }));
+          }
+          catch (RejectedExecutionException exception)
+          {
+            if (log.isDebugEnabled())
+            {
+              log.debug("Not hedging the call to '" + uri + "', since the hedging pool is saturated");
+            }
+            return;
+          }
+        }
+        if (log.isDebugEnabled())
+        {
+          log.debug("Hedging the call to '" + uri + "', which has not completed after " + hedgingDelayInMilliseconds + " ms");
+        }
+        policy.onHedge();
+      }
+    }, hedgingDelayInMilliseconds, TimeUnit.MILLISECONDS);
+    try
+    {
+      // The primary call runs on the calling thread, so that it never waits for a pool thread
+      ResultType result = null;
+      CallException primaryException = null;
+      try
+      {
+        result = call.call(primaryCancellationToken);
+      }
+      catch (CallException exception)
+      {
+        primaryException = exception;
+      }
+      final Future<ResultType> hedge;
+      synchronized (hedges)
+      {
+        hedgeTimer.cancel(false);
+        // Prevents the hedge from being started from now on
+        hedgeCancellationToken.cancel();
+        hedge = hedges.isEmpty() == true ? null : hedges.get(0);
+      }
+      if (primaryException == null || hedge == null)
+      {
+        if (primaryException != null)
+        {
+          throw primaryException;
+        }
+        return result;
+      }
+      // The primary call failed, possibly because the hedge won and aborted it
+      try
+      {
+        final ResultType hedgeResult = hedge.get();
+        policy.onHedgeWin();
+        return hedgeResult;
+      }
+      catch (ExecutionException exception)
+      {
+        if (exception.getCause() instanceof RuntimeException)
+        {
+          throw (RuntimeException) exception.getCause();
+        }
+        throw primaryException;
+      }
+    }
+    catch (InterruptedException exception)
+    {
+      Thread.currentThread().interrupt();
+      throw new CallException("Interrupted while waiting for the call to '" + uri + "'", exception);
+    }
+    finally
+    {
+      // The loser, if any, is aborted
+      hedgeTimer.cancel(false);
+      hedgeCancellationToken.cancel();
+    }
+  }
+
+  /**
+   * Runs a "GET" request and binds its body, the request being hedged according to the {@link TailLatencyPolicy}, if any.
+   *
+   * @param uri      the full URI of the request
+   * @param headers  the request headers, may be {@code null}
+   * @param javaType the type to bind the body to
+   * @return the bound body
+   * @see #runHedged(String, String, CancellableCall)
+   */
+  protected final <ContentType> ContentType getJsonHedged(final String uri, final Map<String, String> headers,
+      final JavaType javaType)
+      throws CallException
+  {
+    return runHedged("GET", uri, new CancellableCall<ContentType>()
+    {
+      @Override
+      public ContentType call(CancellationToken cancellationToken)
+          throws CallException
+      {
+        return getJson(uri, headers, javaType, cancellationToken);
+      }
+    });
+  }
+
+  /**
+   * Enables the batching of the calls run through the {@link #getJsonBatched(String, Map, JavaType)} method.
+   *
+   * @param batchUri             the URI of the batch endpoint, which should implement the protocol described in {@link RequestBatcher} ;
+   *                             {@code null} disables the batching
+   * @param windowInMilliseconds how long the first call of a batch waits for other calls to join it
+   * @param maximumBatchSize     the number of calls which triggers the sending of the batch before the end of the window
+   */
+  public final synchronized void setBatching(String batchUri, long windowInMilliseconds, int maximumBatchSize)
+  {
+    final RequestBatcher previousBatcher = requestBatcher;
+    this.requestBatcher = batchUri == null ? null : new RequestBatcher(this, batchUri, windowInMilliseconds, maximumBatchSize);
+    if (previousBatcher != null)
+    {
+      previousBatcher.shutdown();
+    }
+  }
+
+  /**
+   * Runs a "GET" request and binds its body, the request being sent along with the other calls issued within the batching window when the
+   * batching is enabled.
+   *
+   * @param uri      the full URI of the request
+   * @param headers  the request headers, may be {@code null}
+   * @param javaType the type to bind the body to
+   * @return the bound body
+   * @see #setBatching(String, long, int)
+   */
+  protected final <ContentType> ContentType getJsonBatched(String uri, Map<String, String> headers, JavaType javaType)
+      throws CallException
+  {
+    final RequestBatcher batcher = requestBatcher;
+    if (batcher == null)
+    {
+      return getJson(uri, headers, javaType, new CancellationToken());
+    }
+    return batcher.execute(uri, headers, javaType);
+  }
+
+  /**
+   * Sends a request whose JSON body is serialized straight into the connection, with the chunked transfer encoding: the transmission starts
+   * immediately, and the body never exists as a whole in memory, which is relevant for large uploads.
+   *
+   * @param uri      the full URI of the request
+   * @param verb     the HTTP method, typically "POST" or "PUT"
+   * @param headers  the request headers, may be {@code null}
+   * @param body     the object to serialize as the request body
+   * @param gzip     whether the body should be gzip-compressed on the fly, which requires the server to support the "Content-Encoding" request
+   *                 header
+   * @param javaType the type to bind the response body to ; when {@code null}, the response body is ignored
+   * @return the bound response body, or {@code null} if the {@code javaType} parameter is {@code null}
+   */
+  protected final <ContentType> ContentType sendJson(String uri, String verb, Map<String, String> headers, Object body,
+      boolean gzip, JavaType javaType)
+      throws CallException
+  {
+    return this.<ContentType>sendJson(uri, verb, headers, body, gzip == true ? 0 : Long.MAX_VALUE, null, javaType);
+  }
+
+  /**
+   * Sends a request whose JSON body is gzip-encoded depending on its size, as decided by the {@link RequestCompressionPolicy}: the beginning of
+   * the body is kept in memory up to the compression threshold of the endpoint, and a body which exceeds it is compressed and streamed chunked,
+   * while a smaller one is sent as is, with a fixed length. When no policy has been set, the body is never compressed.
+   *
+   * @param uri      the full URI of the request
+   * @param verb     the HTTP method, typically "POST" or "PUT"
+   * @param headers  the request headers, may be {@code null}
+   * @param body     the object to serialize as the request body
+   * @param javaType the type to bind the response body to ; when {@code null}, the response body is ignored
+   * @return the bound response body, or {@code null} if the {@code javaType} parameter is {@code null}
+   * @see #setRequestCompressionPolicy(RequestCompressionPolicy)
+   */
+  protected final <ContentType> ContentType sendJson(String uri, String verb, Map<String, String> headers, Object body,
+      JavaType javaType)
+      throws CallException
+  {
+    final RequestCompressionPolicy policy = requestCompressionPolicy;
+    final long thresholdInBytes = policy == null ? Long.MAX_VALUE : policy.computeThresholdInBytes(computeEndpoint(uri));
+    return this.<ContentType>sendJson(uri, verb, headers, body, thresholdInBytes, policy, javaType);
+  }
+
+  /**
+   * Downloads a large body into a file through a {@link RangedDownloader}, so that an interrupted download resumes where it stopped, and then
+   * binds the file, which is memory-mapped instead of being read into the heap.
+   *
+   * @param uri           the full URI of the body
+   * @param headers       the request headers, may be {@code null}
+   * @param file          the file the body is downloaded into, which is kept once bound
+   * @param maximumRanges the maximum number of ranges downloaded concurrently
+   * @param javaType      the type to bind the body to
+   * @return the bound body
+   */
+  protected final <ContentType> ContentType downloadJson(String uri, Map<String, String> headers, File file,
+      int maximumRanges, JavaType javaType)
+      throws CallException
+  {
+    new RangedDownloader(this).download(uri, headers, file, maximumRanges);
+    try
+    {
+      final RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+      try
+      {
+        final FileChannel channel = randomAccessFile.getChannel();
+        return jacksonParser.deserializeJson(channel.map(MapMode.READ_ONLY, 0, channel.size()), javaType);
+      }
+      finally
+      {
+        // The mapping remains valid once the file is closed
+        randomAccessFile.close();
+      }
+    }
+    catch (IOException exception)
+    {
+      throw new CallException("Could not map the file '" + file.getAbsolutePath() + "'", exception);
+    }
+  }
+
+  /**
+   * Sets the circuit breaker which makes the connections opened by this class fail immediately while their backend is considered down, in which
+   * case the calls fail with a {@link CallException} caused by a {@link CircuitBreaker.OpenCircuitException}. The requests run through the
+   * inherited {@link URLConnectionWebServiceCaller} methods are neither blocked nor recorded by it.
+   *
+   * @param circuitBreaker the circuit breaker, which may be shared by several callers ; {@code null}, which is the default, disables it
+   * @see #computeCircuitKey(String)
+   */
+  public final void setCircuitBreaker(CircuitBreaker circuitBreaker)
+  {
+    this.circuitBreaker = circuitBreaker;
+  }
+
+  public final CircuitBreaker getCircuitBreaker()
+  {
+    return circuitBreaker;
+  }
+
+  /**
+   * Sets the policy which decides whether the request bodies sent through the {@link #sendJson(String, String, Map, Object, JavaType)} method
+   * are compressed.
+   *
+   * @param requestCompressionPolicy the policy ; {@code null}, which is the default, means that those bodies are never compressed
+   */
+  public final void setRequestCompressionPolicy(RequestCompressionPolicy requestCompressionPolicy)
+  {
+    this.requestCompressionPolicy = requestCompressionPolicy;
+  }
+
+  public final RequestCompressionPolicy getRequestCompressionPolicy()
+  {
+    return requestCompressionPolicy;
+  }
+
+  /**
+   * Sets the listener notified of the timings of the calls going through {@link #openConnection(String, String, Map)}.
+   *
+   * @param callTimingsListener the listener ; {@code null}, which is the default, means that no one is notified
+   */
+  public final void setCallTimingsListener(CallTimingsListener callTimingsListener)
+  {
+    this.callTimingsListener = callTimingsListener;
+  }
+
+  /**
+   * @return the per-endpoint statistics of the calls run through the features of this class which handle the HTTP exchange themselves
+   */
+  public final EndpointStatistics getEndpointStatistics()
+  {
+    return endpointStatistics;
+  }
+
+  /**
+   * Computes the endpoint a URI belongs to, which is the key of the {@link EndpointStatistics}. By default, this is the URI without its query
+   * string: override this method when some path segments are identifiers, so that they are grouped.
+   *
+   * @param uri the full URI of a call
+   * @return the endpoint identifier
+   */
+  protected String computeEndpoint(String uri)
+  {
+    final int index = uri.indexOf('?');
+    return index == -1 ? uri : uri.substring(0, index);
+  }
+
+  /**
+   * Computes the circuit a URI belongs to, for the {@link CircuitBreaker}. By default, this is the URI host and port, so that a backend which is
+   * down is detected whatever the endpoints being called: override this method in order to isolate the endpoints, typically by returning the
+   * {@link #computeEndpoint(String) endpoint}.
+   *
+   * @param uri the full URI of a call
+   * @return the circuit identifier
+   */
+  protected String computeCircuitKey(String uri)
+  {
+    try
+    {
+      return new URL(uri).getAuthority();
+    }
+    catch (IOException exception)
+    {
+      return uri;
+    }
+  }
+
+  /**
+   * Opens a connection configured with the time-outs, possibly adapted by the {@link TailLatencyPolicy}, and the gzip acceptance of this caller: this is the connection used by the features of
+   * this class which need to access the HTTP exchange itself, like the response cache.
+   *
+   * @param uri     the full URI of the request
+   * @param verb    the HTTP method
+   * @param headers the request headers, may be {@code null}
+   * @return a connection which has not been connected yet
+   * @throws CircuitBreaker.OpenCircuitException if the circuit of the URI is open
+   */
+  protected HttpURLConnection openConnection(String uri, String verb, Map<String, String> headers)
+      throws IOException
+  {
+    final CircuitBreaker breaker = circuitBreaker;
+    if (breaker != null)
+    {
+      breaker.checkAllowed(computeCircuitKey(uri));
+    }
+    final HttpURLConnection httpURLConnection = (HttpURLConnection) new URL(uri).openConnection();
+    final TailLatencyPolicy policy = tailLatencyPolicy;
+    if (policy == null)
+    {
+      httpURLConnection.setReadTimeout(readTimeOutInMilliseconds);
+      httpURLConnection.setConnectTimeout(connectTimeOutInMilliseconds);
+    }
+    else
+    {
+      final String endpoint = computeEndpoint(uri);
+      httpURLConnection.setReadTimeout(policy.computeReadTimeOutInMilliseconds(endpointStatistics, endpoint, readTimeOutInMilliseconds));
+      httpURLConnection.setConnectTimeout(policy.computeConnectTimeOutInMilliseconds(endpointStatistics, endpoint, connectTimeOutInMilliseconds));
+    }
+    httpURLConnection.setRequestMethod(verb);
+    httpURLConnection.setDoInput(true);
+    if (acceptGzip == true)
+    {
+      // Setting the header explicitly disables the transparent decompression, the body being decoded by this class
+      httpURLConnection.setRequestProperty("Accept-Encoding", ContentDecoders.getAcceptEncoding());
+    }
+    if (headers != null)
+    {
+      for (Entry<String, String> header : headers.entrySet())
+      {
+        httpURLConnection.setRequestProperty(header.getKey(), header.getValue());
+      }
+    }
+    return httpURLConnection;
+  }
+
+  /**
+   * @param thresholdInBytes the body size above which the body is compressed, as understood by the {@link AdaptiveRequestOutputStream}
+   * @param policy           the policy the measures of the body are reported to, may be {@code null}
+   */
+  private <ContentType> ContentType sendJson(String uri, String verb, Map<String, String> headers, Object body,
+      long thresholdInBytes, RequestCompressionPolicy policy, JavaType javaType)
+      throws CallException
+  {
+    final Map<String, String> actualHeaders = new HashMap<String, String>();
+    if (headers != null)
+    {
+      actualHeaders.putAll(headers);
+    }
+    actualHeaders.put("Content-Type", "application/json; charset=UTF-8");
+    final CallTimings callTimings = new CallTimings(computeEndpoint(uri), uri);
+    HttpURLConnection httpURLConnection = null;
+    try
+    {
+      httpURLConnection = openConnection(uri, verb, actualHeaders);
+      httpURLConnection.setDoOutput(true);
+      final HttpURLConnection theHttpURLConnection = httpURLConnection;
+      final AdaptiveRequestOutputStream outputStream = new AdaptiveRequestOutputStream(thresholdInBytes)
+      {
+        @Override
+        protected OutputStream openConnectionStream(boolean compressed, long contentLength)
+            throws IOException
+        {
+          if (compressed == true)
+          {
+            theHttpURLConnection.setRequestProperty("Content-Encoding", "gzip");
+          }
+          if (contentLength >= 0)
+          {
+            theHttpURLConnection.setFixedLengthStreamingMode((int) contentLength);
+          }
+          else
+          {
+            // The body length is not known before it has been fully serialized
+            theHttpURLConnection.setChunkedStreamingMode(0);
+          }
+          try
+          {
+            return theHttpURLConnection.getOutputStream();
+          }
+          catch (IOException exception)
+          {
+            onConnectionFailure(theHttpURLConnection, exception);
+            throw exception;
+          }
+        }
+      };
+      try
+      {
+        jacksonParser.serializeJson(body, outputStream);
+      }
+      finally
+      {
+        outputStream.close();
+      }
+      final int statusCode = connect(httpURLConnection, callTimings);
+      if (policy != null)
+      {
+        policy.onRequestSent(callTimings.endpoint, outputStream.isCompressed(), outputStream.getRawBytesCount(), outputStream.getSentBytesCount(), outputStream.getCompressionDurationInNanoseconds(), System.nanoTime() - outputStream.getOpeningNanoTime());
+      }
+      if (statusCode < 200 || statusCode >= 300)
+      {
+        httpURLConnection.disconnect();
+        throw new CallException("The request to '" + uri + "' failed with the status code " + statusCode, statusCode);
+      }
+      final InputStream inputStream = callTimings.meter(httpURLConnection.getInputStream(), httpURLConnection.getContentEncoding());
+      if (javaType == null)
+      {
+        inputStream.close();
+        callTimings.onBodyConsumed();
+        onCallTimings(callTimings);
+        return null;
+      }
+      final long contentLength = callTimings.isEncoded() == true ? -1 : httpURLConnection.getContentLength();
+      return this.<ContentType>bind(callTimings, inputStream, contentLength, javaType, null);
+    }
+    catch (IOException exception)
+    {
+      if (httpURLConnection != null)
+      {
+        httpURLConnection.disconnect();
+      }
+      throw new CallException("The request to '" + uri + "' failed", exception);
+    }
+  }
+
+  /**
+   * @param javaType when {@code null}, the response is only stored
+   */
+  private <ContentType> ContentType fetchThroughCache(DiskResponseCache cache, String key, String uri,
+      Map<String, String> headers, DiskResponseCache.Entry entry, JavaType javaType)
+      throws IOException, CallException
+  {
+    final Map<String, String> actualHeaders = new HashMap<String, String>();
+    if (headers != null)
+    {
+      actualHeaders.putAll(headers);
+    }
+    if (entry != null && entry.eTag != null)
+    {
+      actualHeaders.put("If-None-Match", entry.eTag);
+    }
+    if (entry != null && entry.lastModified != null)
+    {
+      actualHeaders.put("If-Modified-Since", entry.lastModified);
+    }
+    final CallTimings callTimings = new CallTimings(computeEndpoint(uri), uri);
+    final HttpURLConnection httpURLConnection = openConnection(uri, "GET", actualHeaders);
+    // Tells whether the response body has been entirely consumed, or handed over to the binding, which closes it
+    boolean released = false;
+    try
+    {
+      final int statusCode = connect(httpURLConnection, callTimings);
+      final CachePolicy cachePolicy = CachePolicy.parse(httpURLConnection.getHeaderField("Cache-Control"), httpURLConnection.getExpiration(), httpURLConnection.getDate());
+      final DiskResponseCache.Entry newEntry;
+      if (statusCode == HttpURLConnection.HTTP_NOT_MODIFIED && entry != null)
+      {
+        httpURLConnection.getInputStream().close();
+        callTimings.setFromCache(true);
+        // A "304 Not Modified" response without any freshness information does not change the one of the stored response
+        final boolean hasFreshness = httpURLConnection.getHeaderField("Cache-Control") != null || httpURLConnection.getExpiration() > 0;
+        newEntry = cache.revalidate(entry, hasFreshness == true ? cachePolicy : entry.cachePolicy);
+        if (newEntry == null)
+        {
+          // The entry has been evicted since it was read, hence its body needs to be downloaded again
+          released = true;
+          callTimings.onBodyConsumed();
+          onCallTimings(callTimings);
+          return fetchThroughCache(cache, key, uri, headers, null, javaType);
+        }
+      }
+      else if (statusCode >= 200 && statusCode < 300)
+      {
+        final InputStream inputStream = callTimings.meter(httpURLConnection.getInputStream(), httpURLConnection.getContentEncoding());
+        if (cache == null || cachePolicy.noStore == true)
+        {
+          if (cache != null)
+          {
+            cache.remove(key);
+          }
+          if (javaType == null)
+          {
+            inputStream.close();
+            released = true;
+            callTimings.onBodyConsumed();
+            onCallTimings(callTimings);
+            return null;
+          }
+          // The body is bound while being downloaded
+          final long contentLength = callTimings.isEncoded() == true ? -1 : httpURLConnection.getContentLength();
+          released = true;
+          return this.<ContentType>bind(callTimings, inputStream, contentLength, javaType, null);
+        }
+        try
+        {
+          newEntry = cache.put(key, httpURLConnection.getHeaderField("ETag"), httpURLConnection.getHeaderField("Last-Modified"), cachePolicy, inputStream);
+        }
+        finally
+        {
+          inputStream.close();
+        }
+        callTimings.onBodyConsumed();
+      }
+      else
+      {
+        onCallTimings(callTimings);
+        throw new CallException("The request to '" + uri + "' failed with the status code " + statusCode, statusCode);
+      }
+      released = true;
+      if (javaType == null)
+      {
+        newEntry.releaseBody();
+        callTimings.onBodyConsumed();
+        onCallTimings(callTimings);
+        return null;
+      }
+      return this.<ContentType>bind(callTimings, openCacheEntry(newEntry), newEntry.getBodyLength(), javaType, null);
+    }
+    finally
+    {
+      if (released == false)
+      {
+        // The connection cannot be reused, and its socket is released
+        httpURLConnection.disconnect();
+      }
+    }
+  }
+
+  /**
+   * Establishes the connection and waits for the response headers, while measuring the related phases.
+   *
+   * @return the response status code
+   */
+  private int connect(HttpURLConnection httpURLConnection, CallTimings callTimings)
+      throws IOException
+  {
+    try
+    {
+      httpURLConnection.connect();
+    }
+    catch (IOException exception)
+    {
+      onConnectionFailure(httpURLConnection, exception);
+      throw exception;
+    }
+    final long connectedNanoTime = System.nanoTime();
+    callTimings.setDuration(Phase.Connect, connectedNanoTime - callTimings.getStartNanoTime());
+    final int statusCode = readStatusCode(httpURLConnection);
+    callTimings.setDuration(Phase.FirstByte, System.nanoTime() - connectedNanoTime);
+    callTimings.setStatusCode(statusCode);
+    return statusCode;
+  }
+
+  /**
+   * Waits for the response status code, and reports the outcome to the {@link CircuitBreaker}, if any: the network failures and the 5xx status
+   * codes are considered as failures.
+   */
+  final int readStatusCode(HttpURLConnection httpURLConnection)
+      throws IOException
+  {
+    final int statusCode;
+    try
+    {
+      statusCode = httpURLConnection.getResponseCode();
+    }
+    catch (IOException exception)
+    {
+      onConnectionFailure(httpURLConnection, exception);
+      throw exception;
+    }
+    final CircuitBreaker breaker = circuitBreaker;
+    if (breaker != null)
+    {
+      final String key = computeCircuitKey(httpURLConnection.getURL().toString());
+      if (statusCode >= 500)
+      {
+        breaker.onFailure(key);
+      }
+      else
+      {
+        breaker.onSuccess(key);
+      }
+    }
+    return statusCode;
+  }
+
+  /**
+   * Reports a connection failure to the {@link CircuitBreaker}, if any.
+   */
+  final void onConnectionFailure(HttpURLConnection httpURLConnection, IOException exception)
+  {
+    final CircuitBreaker breaker = circuitBreaker;
+    if (breaker != null && exception instanceof CircuitBreaker.OpenCircuitException == false)
+    {
+      breaker.onFailure(computeCircuitKey(httpURLConnection.getURL().toString()));
+    }
+  }
+
+  /**
+   * @param cancellationToken when not {@code null} and cancelled, the timings are not recorded, since they do not reflect the endpoint latency
+   */
+  private <ContentType> ContentType bind(CallTimings callTimings, InputStream inputStream, long contentLength,
+      JavaType javaType, CancellationToken cancellationToken)
+      throws CallException
+  {
+    final long start = System.nanoTime();
+    try
+    {
+      return jacksonParser.deserializeJson(inputStream, contentLength, null, null, javaType, cancellationToken);
+    }
+    finally
+    {
+      callTimings.setDuration(Phase.Bind, System.nanoTime() - start);
+      callTimings.onBodyConsumed();
+      if (cancellationToken == null || cancellationToken.isCancelled() == false)
+      {
+        onCallTimings(callTimings);
+      }
+    }
+  }
+
+  private <ContentType> ContentType getJson(String uri, Map<String, String> headers, JavaType javaType,
+      CancellationToken cancellationToken)
+      throws CallException
+  {
+    final CallTimings callTimings = new CallTimings(computeEndpoint(uri), uri);
+    HttpURLConnection httpURLConnection = null;
+    Closeable disconnector = null;
+    try
+    {
+      httpURLConnection = openConnection(uri, "GET", headers);
+      final HttpURLConnection theHttpURLConnection = httpURLConnection;
+      disconnector = new Closeable()
+      {
+        @Override
+        public void close()
+        {
+          // This releases the thread blocked on the connection
+          theHttpURLConnection.disconnect();
+        }
+      };
+      cancellationToken.register(disconnector);
+      final int statusCode = connect(httpURLConnection, callTimings);
+      if (statusCode < 200 || statusCode >= 300)
+      {
+        httpURLConnection.disconnect();
+        throw new CallException("The request to '" + uri + "' failed with the status code " + statusCode, statusCode);
+      }
+      final InputStream inputStream = callTimings.meter(httpURLConnection.getInputStream(), httpURLConnection.getContentEncoding());
+      final long contentLength = callTimings.isEncoded() == true ? -1 : httpURLConnection.getContentLength();
+      return this.<ContentType>bind(callTimings, inputStream, contentLength, javaType, cancellationToken);
+    }
+    catch (IOException exception)
+    {
+      if (httpURLConnection != null)
+      {
+        httpURLConnection.disconnect();
+      }
+      cancellationToken.throwIfCancelled();
+      throw new CallException(exception);
+    }
+    finally
+    {
+      if (disconnector != null)
+      {
+        cancellationToken.unregister(disconnector);
+      }
+    }
+  }
+
+  private <ContentType> ContentType readSnapshot(ResponseJournal journal, String key, String uri, JavaType javaType,
+      CallException exception)
+      throws CallException
+  {
+    final ResponseJournal.Entry entry = journal.get(key);
+    if (entry == null)
+    {
+      throw exception;
+    }
+    if (log.isWarnEnabled())
+    {
+      log.warn("Could not get a usable response from the server for the URI '" + uri + "': using the snapshot taken " + (System.currentTimeMillis() - entry.timestamp) + " ms ago", exception);
+    }
+    return jacksonParser.deserializeJson(entry.getBody(), javaType);
+  }
+
+  private <ContentType> ContentType parseCacheEntry(DiskResponseCache.Entry entry, JavaType javaType)
+      throws CallException
+  {
+    return jacksonParser.deserializeJson(openCacheEntry(entry), entry.getBodyLength(), null, null, javaType, null);
+  }
+
+  private InputStream openCacheEntry(DiskResponseCache.Entry entry)
+      throws CallException
+  {
+    try
+    {
+      return entry.openBody();
+    }
+    catch (IOException exception)
+    {
+      throw new CallException("Could not read the cached response for '" + DiskResponseCache.describe(entry.key) + "'", exception);
+    }
+  }
+
+  private void onCallTimings(CallTimings callTimings)
+  {
+    callTimings.complete();
+    endpointStatistics.record(callTimings);
+    final NetworkQualityEstimator estimator = networkQualityEstimator;
+    if (estimator != null)
+    {
+      estimator.record(callTimings);
+    }
+    final CallTimingsListener listener = callTimingsListener;
+    if (listener != null)
+    {
+      listener.onCallTimings(callTimings);
+    }
+  }
+
+  /**
+   * Revalidates the provided entry in the background, unless a revalidation of the same key is already in progress, in which case the listener
+   * is notified of its outcome.
+   *
+   * @param javaType       the type to bind the body to, which is only used when the listener is not {@code null}
+   * @param listener       notified when the revalidated content differs from the served one, may be {@code null}
+   * @param servedChecksum the checksum of the body which has been served, which is only used when the listener is not {@code null}
+   */
+  @SuppressWarnings("unchecked")
+  private <ContentType> void revalidateInBackground(final DiskResponseCache cache, final String key, final String uri,
+      final Map<String, String> headers, final DiskResponseCache.Entry entry, JavaType javaType,
+      ContentChangeListener<ContentType> listener, long servedChecksum)
+  {
+    final PendingListener pendingListener = listener == null ? null : new PendingListener((ContentChangeListener<Object>) listener, javaType, servedChecksum);
+    synchronized (pendingRevalidations)
+    {
+      final List<PendingListener> pendingListeners = pendingRevalidations.get(key);
+      if (pendingListeners != null)
+      {
+        // A revalidation is already in progress: its outcome will be notified to this listener as well
+        if (pendingListener != null)
+        {
+          pendingListeners.add(pendingListener);
+        }
+        return;
+      }
+      final List<PendingListener> newPendingListeners = new ArrayList<PendingListener>();
+      if (pendingListener != null)
+      {
+        newPendingListeners.add(pendingListener);
+      }
+      pendingRevalidations.put(key, newPendingListeners);
+      if (revalidationExecutor == null)
+      {
+        revalidationExecutor = Executors.newSingleThreadExecutor(JacksonURLConnectionWebServiceCaller.computeDaemonThreadFactory("droid4me-revalidation"));
+      }
+    }
+    revalidationExecutor.execute(new Runnable()
+    {
+      @Override
+      public void run()
+      {
+        boolean revalidated = false;
+        final List<PendingListener> pendingListeners;
+        try
+        {
+          fetchThroughCache(cache, key, uri, headers, entry, null);
+          revalidated = true;
+        }
+        catch (Exception exception)
+        {
+          if (log.isWarnEnabled())
+          {
+            log.warn("Could not revalidate in the background the cached response for the URI '" + uri + "'", exception);
+          }
+        }
+        finally
+        {
+          synchronized (pendingRevalidations)
+          {
+            pendingListeners = pendingRevalidations.remove(key);
+          }
+        }
+        if (revalidated == true && pendingListeners.isEmpty() == false)
+        {
+          notifyContentChanged(cache, key, uri, pendingListeners);
+        }
+      }
+    });
+  }
+
+  private void notifyContentChanged(DiskResponseCache cache, String key, String uri, List<PendingListener> pendingListeners)
+  {
+    try
+    {
+      final DiskResponseCache.Entry newEntry = cache.get(key);
+      if (newEntry == null)
+      {
+        return;
+      }
+      final long checksum = newEntry.computeBodyChecksum();
+      for (PendingListener pendingListener : pendingListeners)
+      {
+        if (pendingListener.servedChecksum != checksum)
+        {
+          if (log.isDebugEnabled())
+          {
+            log.debug("The revalidation of the cached response for the URI '" + uri + "' revealed a new content");
+          }
+          pendingListener.listener.onContentChanged(parseCacheEntry(newEntry, pendingListener.javaType));
+        }
+      }
+    }
+    catch (Exception exception)
+    {
+      if (log.isWarnEnabled())
+      {
+        log.warn("Could not notify the new content of the cached response for the URI '" + uri + "'", exception);
+      }
+    }
+  }
+
+  /**
+   * @param name the name given to the created threads
+   * @return a factory of daemon threads, so that the executors of the library do not prevent the process from exiting
+   */
+  public static ThreadFactory computeDaemonThreadFactory(final String name)
+  {
+    return new ThreadFactory()
+    {
+      @Override
+      public Thread newThread(Runnable runnable)
+      {
+        final Thread thread = new Thread(runnable, name);
+        thread.setDaemon(true);
+        return thread;
+      }
+    };
   }
 
 }
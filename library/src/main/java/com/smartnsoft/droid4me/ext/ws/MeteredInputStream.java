@@ -0,0 +1,117 @@
+// The MIT License (MIT)
+//
+// Copyright (c) 2017 Smart&Soft
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+// SOFTWARE.
+
+package com.smartnsoft.droid4me.ext.ws;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Counts the bytes read through a stream, along with the time spent reading them.
+ *
+ * @since 2026.10.19
+ */
+final class MeteredInputStream
+    extends FilterInputStream
+{
+
+  private long bytesCount;
+
+  private long readDurationInNanoseconds;
+
+  private long endNanoTime = -1;
+
+  MeteredInputStream(InputStream inputStream)
+  {
+    super(inputStream);
+  }
+
+  @Override
+  public int read()
+      throws IOException
+  {
+    final long start = System.nanoTime();
+    final int value = super.read();
+    onRead(start, value == -1 ? -1 : 1);
+    return value;
+  }
+
+  @Override
+  public int read(byte[] buffer, int offset, int length)
+      throws IOException
+  {
+    final long start = System.nanoTime();
+    final int count = super.read(buffer, offset, length);
+    onRead(start, count);
+    return count;
+  }
+
+  @Override
+  public long skip(long count)
+      throws IOException
+  {
+    final long start = System.nanoTime();
+    final long skipped = super.skip(count);
+    onRead(start, (int) skipped);
+    return skipped;
+  }
+
+  @Override
+  public boolean markSupported()
+  {
+    return false;
+  }
+
+  long getBytesCount()
+  {
+    return bytesCount;
+  }
+
+  long getReadDurationInNanoseconds()
+  {
+    return readDurationInNanoseconds;
+  }
+
+  /**
+   * @return the time the end of the stream was reached, or {@code -1} if it has not been reached yet
+   */
+  long getEndNanoTime()
+  {
+    return endNanoTime;
+  }
+
+  private void onRead(long start, int count)
+  {
+    final long now = System.nanoTime();
+    readDurationInNanoseconds += now - start;
+    if (count > 0)
+    {
+      bytesCount += count;
+    }
+    else if (count == -1 && endNanoTime == -1)
+    {
+      endNanoTime = now;
+    }
+  }
+
+}
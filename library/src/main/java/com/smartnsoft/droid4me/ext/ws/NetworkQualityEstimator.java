@@ -0,0 +1,484 @@
+// The MIT License (MIT)
+//
+// Copyright (c) 2017 Smart&Soft
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+// SOFTWARE.
+
+package com.smartnsoft.droid4me.ext.ws;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import android.os.SystemClock;
+
+import com.smartnsoft.droid4me.ext.ws.CallTimings.Phase;
+import com.smartnsoft.droid4me.log.Logger;
+import com.smartnsoft.droid4me.log.LoggerFactory;
+
+/**
+ * Estimates the quality of the network the device is currently using, from the round-trip times and the throughputs observed by the web service
+ * calls, so that the features which may adapt how much work and data they request, like the prefetching, the images size, the pages size, the
+ * request bodies compression or the hedging, can query it.
+ * <p>
+ * The round-trip time is the HTTP one, i.e. the time to the response headers, which includes the server processing time, and the throughput is
+ * only sampled on bodies which are large enough for not being dominated by the TCP slow start. Each estimate is the median of the latest samples,
+ * weighted by their age, which makes it robust to the outliers while following the network changes, and the {@link Quality} only changes when
+ * several consecutive samples confirm it.
+ * </p>
+ *
+ * @see JacksonURLConnectionWebServiceCaller#setNetworkQualityEstimator(NetworkQualityEstimator)
+ * @since 2026.10.19
+ */
+public final class NetworkQualityEstimator
+{
+
+  /**
+   * The network quality classes, from the worst to the best.
+   */
+  public enum Quality
+  {
+    /**
+     * Not enough samples have been observed yet.
+     */
+    Unknown(1f),
+    /**
+     * A network on which only the essential calls should be run, like a 2G one.
+     */
+    Poor(0.25f),
+    /**
+     * A network like a 3G one.
+     */
+    Moderate(0.5f),
+    Good(1f),
+    Excellent(1f);
+
+    /**
+     * The share of the nominal amount of work or data which is relevant on that network.
+     */
+    public final float workFactor;
+
+    Quality(float workFactor)
+    {
+      this.workFactor = workFactor;
+    }
+
+    /**
+     * Scales a nominal amount, like a page size or an image width, according to the quality.
+     *
+     * @param nominalValue the value relevant on a good network
+     * @param minimumValue the value which should never be undershot
+     * @return the value relevant on that network
+     */
+    public int scale(int nominalValue, int minimumValue)
+    {
+      return Math.max(minimumValue, Math.round(nominalValue * workFactor));
+    }
+
+    /**
+     * @return {@code true} if the quality is known and at least as good as the provided one
+     */
+    public boolean isAtLeast(Quality quality)
+    {
+      return this != Quality.Unknown && compareTo(quality) >= 0;
+    }
+
+  }
+
+  /**
+   * The interface notified when the estimated {@link Quality} changes.
+   */
+  public interface QualityListener
+  {
+
+    /**
+     * Invoked from the thread which ran the call that caused the change.
+     */
+    void onQualityChanged(Quality previousQuality, Quality quality);
+
+  }
+
+  private static final class Sample
+  {
+
+    private final double value;
+
+    private final long timestamp;
+
+    private double weight;
+
+    private Sample(double value, long timestamp)
+    {
+      this.value = value;
+      this.timestamp = timestamp;
+    }
+
+  }
+
+  private static final class SamplesWindow
+  {
+
+    private final Sample[] samples;
+
+    private int count;
+
+    private int position;
+
+    private SamplesWindow(int capacity)
+    {
+      samples = new Sample[capacity];
+    }
+
+    private void add(Sample sample)
+    {
+      samples[position] = sample;
+      position = (position + 1) % samples.length;
+      count = Math.min(count + 1, samples.length);
+    }
+
+    private void clear()
+    {
+      Arrays.fill(samples, null);
+      count = 0;
+      position = 0;
+    }
+
+    /**
+     * @return the median of the samples, whose weight halves every half-life, or {@code -1} if there is no sample
+     */
+    private double computeWeightedMedian(long now, long halfLifeInMilliseconds)
+    {
+      if (count == 0)
+      {
+        return -1;
+      }
+      final Sample[] sorted = Arrays.copyOf(samples, count);
+      double totalWeight = 0;
+      for (Sample sample : sorted)
+      {
+        sample.weight = Math.pow(0.5d, (double) Math.max(0, now - sample.timestamp) / halfLifeInMilliseconds);
+        totalWeight += sample.weight;
+      }
+      Arrays.sort(sorted, new Comparator<Sample>()
+      {
+        @Override
+        public int compare(Sample sample1, Sample sample2)
+        {
+          return Double.compare(sample1.value, sample2.value);
+        }
+      });
+      double cumulatedWeight = 0;
+      for (Sample sample : sorted)
+      {
+        cumulatedWeight += sample.weight;
+        if (cumulatedWeight >= totalWeight / 2d)
+        {
+          return sample.value;
+        }
+      }
+      return sorted[sorted.length - 1].value;
+    }
+
+  }
+
+  /**
+   * The HTTP round-trip time above which the network is considered as {@link Quality#Poor}.
+   */
+  public static final long POOR_RTT_IN_MILLISECONDS = 1400;
+
+  /**
+   * The HTTP round-trip time above which the network is considered as {@link Quality#Moderate}.
+   */
+  public static final long MODERATE_RTT_IN_MILLISECONDS = 400;
+
+  /**
+   * The HTTP round-trip time above which the network is considered as {@link Quality#Good}.
+   */
+  public static final long GOOD_RTT_IN_MILLISECONDS = 100;
+
+  /**
+   * The downstream throughput under which the network is considered as {@link Quality#Poor}.
+   */
+  public static final double POOR_THROUGHPUT_IN_KILOBITS_PER_SECOND = 150;
+
+  /**
+   * The downstream throughput under which the network is considered as {@link Quality#Moderate}.
+   */
+  public static final double MODERATE_THROUGHPUT_IN_KILOBITS_PER_SECOND = 700;
+
+  /**
+   * The downstream throughput under which the network is considered as {@link Quality#Good}.
+   */
+  public static final double GOOD_THROUGHPUT_IN_KILOBITS_PER_SECOND = 5000;
+
+  /**
+   * Below that size, the download duration is dominated by the latency and the TCP slow start, and does not reveal the throughput.
+   */
+  public static final long MINIMUM_THROUGHPUT_SAMPLE_SIZE_IN_BYTES = 32 * 1024;
+
+  public static final int DEFAULT_SAMPLES_COUNT = 20;
+
+  public static final long DEFAULT_HALF_LIFE_IN_MILLISECONDS = 60 * 1000;
+
+  /**
+   * The number of consecutive samples which need to agree on a new quality before it is adopted.
+   */
+  public static final int DEFAULT_CONFIRMATIONS_COUNT = 3;
+
+  private static final Logger log = LoggerFactory.getInstance(NetworkQualityEstimator.class);
+
+  private static volatile NetworkQualityEstimator instance;
+
+  // We accept the "out-of-order writes" case
+  public static NetworkQualityEstimator getInstance()
+  {
+    if (instance == null)
+    {
+      synchronized (NetworkQualityEstimator.class)
+      {
+        if (instance == null)
+        {
+          instance = new NetworkQualityEstimator(NetworkQualityEstimator.DEFAULT_SAMPLES_COUNT, NetworkQualityEstimator.DEFAULT_HALF_LIFE_IN_MILLISECONDS, NetworkQualityEstimator.DEFAULT_CONFIRMATIONS_COUNT);
+        }
+      }
+    }
+    return instance;
+  }
+
+  private final long halfLifeInMilliseconds;
+
+  private final int confirmationsCount;
+
+  private final SamplesWindow rttSamples;
+
+  private final SamplesWindow throughputSamples;
+
+  private final List<QualityListener> listeners = new CopyOnWriteArrayList<QualityListener>();
+
+  private double rttInMilliseconds = -1;
+
+  private double throughputInKilobitsPerSecond = -1;
+
+  private volatile Quality quality = Quality.Unknown;
+
+  private Quality candidateQuality = Quality.Unknown;
+
+  private int candidateConfirmationsCount;
+
+  /**
+   * @param samplesCount           the number of latest samples which are taken into account for each estimate
+   * @param halfLifeInMilliseconds the age at which the weight of a sample is halved
+   * @param confirmationsCount     the number of consecutive samples which need to agree on a new quality before it is adopted
+   */
+  public NetworkQualityEstimator(int samplesCount, long halfLifeInMilliseconds, int confirmationsCount)
+  {
+    this.halfLifeInMilliseconds = Math.max(1, halfLifeInMilliseconds);
+    this.confirmationsCount = Math.max(1, confirmationsCount);
+    this.rttSamples = new SamplesWindow(Math.max(1, samplesCount));
+    this.throughputSamples = new SamplesWindow(Math.max(1, samplesCount));
+  }
+
+  public void addQualityListener(QualityListener listener)
+  {
+    listeners.add(listener);
+  }
+
+  public void removeQualityListener(QualityListener listener)
+  {
+    listeners.remove(listener);
+  }
+
+  /**
+   * @return the current quality, which is {@link Quality#Unknown} till enough samples have been observed
+   */
+  public Quality getQuality()
+  {
+    return quality;
+  }
+
+  /**
+   * @return the estimated HTTP round-trip time, or {@code -1} if it has not been measured yet
+   */
+  public synchronized long getRttInMilliseconds()
+  {
+    return Math.round(rttInMilliseconds);
+  }
+
+  /**
+   * @return the estimated downstream throughput, or {@code -1} if it has not been measured yet
+   */
+  public synchronized double getThroughputInKilobitsPerSecond()
+  {
+    return throughputInKilobitsPerSecond;
+  }
+
+  /**
+   * Forgets all the samples, typically when the device switches to another network.
+   */
+  public void reset()
+  {
+    final Quality previousQuality;
+    synchronized (this)
+    {
+      rttSamples.clear();
+      throughputSamples.clear();
+      rttInMilliseconds = -1;
+      throughputInKilobitsPerSecond = -1;
+      candidateQuality = Quality.Unknown;
+      candidateConfirmationsCount = 0;
+      previousQuality = quality;
+      quality = Quality.Unknown;
+    }
+    notifyListeners(previousQuality, Quality.Unknown);
+  }
+
+  /**
+   * Takes into account the timings of a completed call. The calls served from the cache, the ones which failed before receiving the response
+   * headers, and the bodies which are too small do not provide any sample.
+   *
+   * @param callTimings the completed call timings
+   */
+  public void record(CallTimings callTimings)
+  {
+    if (callTimings.isFromCache() == true || callTimings.getStatusCode() <= 0)
+    {
+      return;
+    }
+    final long rttSample = callTimings.getDurationInMilliseconds(Phase.FirstByte);
+    // The download phase overlaps the binding one, hence the throughput is computed from the time spent waiting for the raw bytes only
+    final long readDurationInNanoseconds = callTimings.getNetworkReadDurationInNanoseconds();
+    final long receivedBytes = callTimings.getReceivedBytes();
+    final double throughputSample = receivedBytes >= NetworkQualityEstimator.MINIMUM_THROUGHPUT_SAMPLE_SIZE_IN_BYTES && readDurationInNanoseconds > 0 ? receivedBytes * 8d * 1000000d / readDurationInNanoseconds : -1;
+    record(rttSample, throughputSample);
+  }
+
+  /**
+   * Takes into account a round-trip time sample and a throughput sample, which may come from another source than the web service calls.
+   *
+   * @param rttSampleInMilliseconds             the round-trip time ; a negative value is ignored
+   * @param throughputSampleInKilobitsPerSecond the downstream throughput ; a non-positive value is ignored
+   */
+  public void record(long rttSampleInMilliseconds, double throughputSampleInKilobitsPerSecond)
+  {
+    if (rttSampleInMilliseconds < 0 && throughputSampleInKilobitsPerSecond <= 0)
+    {
+      return;
+    }
+    final Quality previousQuality;
+    final Quality newQuality;
+    synchronized (this)
+    {
+      final long now = SystemClock.elapsedRealtime();
+      if (rttSampleInMilliseconds >= 0)
+      {
+        rttSamples.add(new Sample(rttSampleInMilliseconds, now));
+        rttInMilliseconds = rttSamples.computeWeightedMedian(now, halfLifeInMilliseconds);
+      }
+      if (throughputSampleInKilobitsPerSecond > 0)
+      {
+        throughputSamples.add(new Sample(throughputSampleInKilobitsPerSecond, now));
+        throughputInKilobitsPerSecond = throughputSamples.computeWeightedMedian(now, halfLifeInMilliseconds);
+      }
+      final Quality computedQuality = computeQuality(rttInMilliseconds, throughputInKilobitsPerSecond);
+      if (computedQuality == quality)
+      {
+        candidateConfirmationsCount = 0;
+        return;
+      }
+      if (computedQuality == candidateQuality)
+      {
+        candidateConfirmationsCount++;
+      }
+      else
+      {
+        candidateQuality = computedQuality;
+        candidateConfirmationsCount = 1;
+      }
+      // The very first estimate does not need to be confirmed, since any estimate is better than none
+      if (candidateConfirmationsCount < confirmationsCount && quality != Quality.Unknown)
+      {
+        return;
+      }
+      previousQuality = quality;
+      newQuality = computedQuality;
+      quality = newQuality;
+      candidateConfirmationsCount = 0;
+    }
+    if (log.isInfoEnabled())
+    {
+      log.info("The network quality changed from " + previousQuality + " to " + newQuality + " (RTT of " + getRttInMilliseconds() + " ms" + (getThroughputInKilobitsPerSecond() < 0 ? "" : ", throughput of " + Math.round(getThroughputInKilobitsPerSecond()) + " kbps") + ")");
+    }
+    notifyListeners(previousQuality, newQuality);
+  }
+
+  /**
+   * @return the worst quality indicated by the round-trip time and the throughput, each of them being ignored when it is not known
+   */
+  private static Quality computeQuality(double rttInMilliseconds, double throughputInKilobitsPerSecond)
+  {
+    Quality rttQuality = Quality.Excellent;
+    if (rttInMilliseconds >= NetworkQualityEstimator.POOR_RTT_IN_MILLISECONDS)
+    {
+      rttQuality = Quality.Poor;
+    }
+    else if (rttInMilliseconds >= NetworkQualityEstimator.MODERATE_RTT_IN_MILLISECONDS)
+    {
+      rttQuality = Quality.Moderate;
+    }
+    else if (rttInMilliseconds >= NetworkQualityEstimator.GOOD_RTT_IN_MILLISECONDS)
+    {
+      rttQuality = Quality.Good;
+    }
+    Quality throughputQuality = Quality.Excellent;
+    if (throughputInKilobitsPerSecond >= 0)
+    {
+      if (throughputInKilobitsPerSecond < NetworkQualityEstimator.POOR_THROUGHPUT_IN_KILOBITS_PER_SECOND)
+      {
+        throughputQuality = Quality.Poor;
+      }
+      else if (throughputInKilobitsPerSecond < NetworkQualityEstimator.MODERATE_THROUGHPUT_IN_KILOBITS_PER_SECOND)
+      {
+        throughputQuality = Quality.Moderate;
+      }
+      else if (throughputInKilobitsPerSecond < NetworkQualityEstimator.GOOD_THROUGHPUT_IN_KILOBITS_PER_SECOND)
+      {
+        throughputQuality = Quality.Good;
+      }
+    }
+    else if (rttInMilliseconds < 0)
+    {
+      return Quality.Unknown;
+    }
+    return rttQuality.compareTo(throughputQuality) <= 0 ? rttQuality : throughputQuality;
+  }
+
+  private void notifyListeners(Quality previousQuality, Quality quality)
+  {
+    if (previousQuality == quality)
+    {
+      return;
+    }
+    for (QualityListener listener : listeners)
+    {
+      listener.onQualityChanged(previousQuality, quality);
+    }
+  }
+
+}
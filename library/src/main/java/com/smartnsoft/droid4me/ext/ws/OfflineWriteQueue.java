@@ -0,0 +1,797 @@
+// The MIT License (MIT)
+//
+// Copyright (c) 2017 Smart&Soft
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+// SOFTWARE.
+
+package com.smartnsoft.droid4me.ext.ws;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import com.smartnsoft.droid4me.ext.json.jackson.JacksonParser;
+import com.smartnsoft.droid4me.log.Logger;
+import com.smartnsoft.droid4me.log.LoggerFactory;
+import com.smartnsoft.droid4me.ws.WebServiceClient.CallException;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+/**
+ * A durable queue of the mutation requests which could not be sent yet, typically because the device is offline.
+ * <p>
+ * The queue is backed by an append-only journal, in which every enqueued write and every acknowledged write is recorded as a JSON line, so that
+ * the pending writes survive a process death. A "PUT" or "DELETE" write attached to a resource supersedes the pending write attached to the
+ * same resource, which is hence never sent, and a "PATCH" write is merged into the pending "PATCH" or "PUT" write of its resource when both
+ * bodies are JSON objects, according to the RFC 7386 merge patch semantics; the other writes are always sent. The pending writes are sent in
+ * their enqueuing order, by batches whose size is bounded: through a single request when a {@link #setBatchUri(String) batch endpoint} has been
+ * set, one request per write otherwise, the journal being synchronized once per batch; the flush stops at the first write which fails because of the network or of the server, and resumes on the next {@link #flush()} or
+ * {@link #onConnectivityChanged(boolean)} invocation. A write which the server keeps rejecting with a 5xx status code is moved to the dead letter
+ * writes after {@link #MAXIMUM_SERVER_FAILURES_COUNT} attempts, so that it does not block the following writes forever. A write rejected with
+ * a 401 or 403 status code also stops the flush and is kept, since the credentials have typically expired while the device was offline: the
+ * {@link HeadersProvider} is expected to supply fresh ones on the next flush.
+ * </p>
+ * <p>
+ * The credential headers, i.e. the {@link #CREDENTIAL_HEADER_NAMES}, are never written to the journal: the writes restored after a process death
+ * are sent without them, unless the {@link HeadersProvider} supplies them.
+ * </p>
+ *
+ * @since 2026.10.19
+ */
+public final class OfflineWriteQueue
+{
+
+  /**
+   * A write waiting for being sent.
+   */
+  public static final class Write
+  {
+
+    public final long sequence;
+
+    /**
+     * The identifier of the resource the write applies to, or {@code null} if the write cannot be superseded.
+     */
+    public final String resourceKey;
+
+    public final String verb;
+
+    public final String uri;
+
+    public final Map<String, String> headers;
+
+    public final JsonNode body;
+
+    /**
+     * The key of the write in the pending writes, which tells whether it may be superseded.
+     */
+    private final String key;
+
+    private int serverFailuresCount;
+
+    private Write(long sequence, String resourceKey, String verb, String uri, Map<String, String> headers, JsonNode body,
+        boolean supersedable)
+    {
+      // The writes which are not attached to any resource, or which cannot be merged with the pending write of their resource, are never superseded
+      this.key = resourceKey == null || supersedable == false ? "#" + sequence : "@" + resourceKey;
+      this.sequence = sequence;
+      this.resourceKey = resourceKey;
+      this.verb = verb;
+      this.uri = uri;
+      this.headers = headers;
+      this.body = body;
+    }
+
+  }
+
+  /**
+   * Supplies the headers which depend on the moment a write is sent, typically the credentials, which may have been refreshed since the write
+   * was enqueued.
+   */
+  public interface HeadersProvider
+  {
+
+    /**
+     * @param write the write which is about to be sent, or {@code null} for the request sent to the {@link #setBatchUri(String) batch endpoint}
+     * @return the headers to add to the ones of the write, which they override ; may be {@code null}
+     */
+    Map<String, String> computeHeaders(Write write);
+
+  }
+
+  public static final int DEFAULT_MAXIMUM_BATCH_SIZE = 20;
+
+  /**
+   * The number of times a write may be rejected by the server with a 5xx status code before it is moved to the dead letter writes.
+   */
+  public static final int MAXIMUM_SERVER_FAILURES_COUNT = 5;
+
+  /**
+   * The names of the headers which are kept in memory only.
+   */
+  public static final String[] CREDENTIAL_HEADER_NAMES = { "Authorization", "Proxy-Authorization", "Cookie" };
+
+  private static final Logger log = LoggerFactory.getInstance(OfflineWriteQueue.class);
+
+  private static final String WRITE_TYPE = "write";
+
+  private static final String ACKNOWLEDGMENT_TYPE = "ack";
+
+  private static final String DEAD_LETTER_TYPE = "dead";
+
+  private final JacksonURLConnectionWebServiceCaller caller;
+
+  private final ObjectMapper objectMapper;
+
+  private final File file;
+
+  private final int maximumBatchSize;
+
+  private final Map<String, Write> pendingWrites = new LinkedHashMap<String, Write>();
+
+  private final List<Write> deadLetterWrites = new ArrayList<Write>();
+
+  private final ExecutorService flushExecutor = Executors.newSingleThreadExecutor(JacksonURLConnectionWebServiceCaller.computeDaemonThreadFactory("droid4me-offline-writes"));
+
+  private final Object flushLock = new Object();
+
+  private volatile HeadersProvider headersProvider;
+
+  private volatile String batchUri;
+
+  private FileOutputStream journalOutputStream;
+
+  private long nextSequence;
+
+  private int journalRecordsCount;
+
+  /**
+   * Opens the queue, and restores the writes which were pending when the journal was last written.
+   *
+   * @param caller           the caller which sends the writes
+   * @param file             the journal file, which is created if necessary
+   * @param maximumBatchSize the maximum number of writes sent through a single batch request, and whose acknowledgment is synchronized at once in
+   *                         the journal
+   */
+  public OfflineWriteQueue(JacksonURLConnectionWebServiceCaller caller, File file, int maximumBatchSize)
+      throws IOException
+  {
+    this.caller = caller;
+    this.objectMapper = caller.jacksonParser.getObjectMapper();
+    this.file = file;
+    this.maximumBatchSize = Math.max(1, maximumBatchSize);
+    replay();
+    compact();
+  }
+
+  /**
+   * Durably records a write and triggers a flush. A "PUT" or "DELETE" write supersedes the pending write attached to the same resource, if any,
+   * and a "PATCH" write is merged into it when possible.
+   *
+   * @param resourceKey the identifier of the resource the write applies to, typically its URI ; {@code null} if the write must be sent whatever
+   *                    the subsequent writes, which is the case for a creation
+   * @param verb        the HTTP method
+   * @param uri         the full URI of the request
+   * @param headers     the request headers, may be {@code null} ; the {@link #CREDENTIAL_HEADER_NAMES credential ones} are not persisted
+   * @param body        the request body, which is converted into a JSON tree when enqueued, may be {@code null}
+   */
+  public void enqueue(String resourceKey, String verb, String uri, Map<String, String> headers, Object body)
+      throws IOException
+  {
+    synchronized (this)
+    {
+      final long sequence = nextSequence++;
+      final JsonNode bodyNode = body == null ? null : objectMapper.valueToTree(body);
+      final boolean fullWrite = "PUT".equalsIgnoreCase(verb) == true || "DELETE".equalsIgnoreCase(verb) == true;
+      final Write pendingWrite = resourceKey == null ? null : pendingWrites.get("@" + resourceKey);
+      final Write write;
+      if (fullWrite == true)
+      {
+        write = new Write(sequence, resourceKey, verb, uri, headers, bodyNode, true);
+      }
+      else if ("PATCH".equalsIgnoreCase(verb) == true && pendingWrite == null)
+      {
+        write = new Write(sequence, resourceKey, verb, uri, headers, bodyNode, true);
+      }
+      else if ("PATCH".equalsIgnoreCase(verb) == true && canMerge(pendingWrite, bodyNode) == true)
+      {
+        // The resulting write holds both changes, and keeps the verb of the pending write
+        final JsonNode mergedBody = "PATCH".equalsIgnoreCase(pendingWrite.verb) == true ? OfflineWriteQueue.composeMergePatches((ObjectNode) pendingWrite.body, (ObjectNode) bodyNode) : JacksonParser.mergePatch(pendingWrite.body, bodyNode);
+        write = new Write(sequence, resourceKey, pendingWrite.verb, uri, headers, mergedBody, true);
+      }
+      else
+      {
+        write = new Write(sequence, resourceKey, verb, uri, headers, bodyNode, false);
+      }
+      final List<ObjectNode> records = new ArrayList<ObjectNode>();
+      records.add(toRecord(write));
+      final Write supersededWrite = pendingWrites.get(write.key);
+      if (supersededWrite != null)
+      {
+        // The superseded write is acknowledged, so that it is not restored when the journal is replayed
+        records.add(toRecord(OfflineWriteQueue.ACKNOWLEDGMENT_TYPE, supersededWrite));
+        if (log.isDebugEnabled())
+        {
+          log.debug("The write " + write.sequence + " to '" + uri + "' supersedes the write " + supersededWrite.sequence);
+        }
+      }
+      append(records);
+      pendingWrites.remove(write.key);
+      pendingWrites.put(write.key, write);
+    }
+    flushInBackground();
+  }
+
+  /**
+   * @param headersProvider the provider of the headers which are computed when the writes are sent ; {@code null}, which is the default, means
+   *                        that the writes are sent with the headers they were enqueued with
+   */
+  public void setHeadersProvider(HeadersProvider headersProvider)
+  {
+    this.headersProvider = headersProvider;
+  }
+
+  /**
+   * Makes the flushes send the pending writes through a batch endpoint, instead of sending one request per write, so that the backend is not
+   * hammered when the connectivity is restored. The batch request is a "POST" with the following JSON body, which follows the format of the
+   * {@link RequestBatcher}:
+   * <pre>
+   * {"requests":[{"id":"12","method":"PUT","uri":"...","headers":{"...":"..."},"body":{...}}, ...]}
+   * </pre>
+   * and the batch endpoint is expected to apply the requests in order, to stop at the first one which fails, and to answer with:
+   * <pre>
+   * {"responses":[{"id":"12","status":200}, ...]}
+   * </pre>
+   * the requests which have not been processed being omitted, so that they are sent again on the next flush.
+   *
+   * @param batchUri the full URI of the batch endpoint ; {@code null}, which is the default, means that every write is sent on its own
+   */
+  public void setBatchUri(String batchUri)
+  {
+    this.batchUri = batchUri;
+  }
+
+  /**
+   * @return the writes which have been rejected too many times by the server, and which will not be sent anymore
+   */
+  public synchronized List<Write> getDeadLetterWrites()
+  {
+    return new ArrayList<Write>(deadLetterWrites);
+  }
+
+  /**
+   * Forgets the dead letter writes, once they have been handled.
+   */
+  public synchronized void clearDeadLetterWrites()
+      throws IOException
+  {
+    if (deadLetterWrites.isEmpty() == true)
+    {
+      return;
+    }
+    final List<ObjectNode> records = new ArrayList<ObjectNode>();
+    for (Write write : deadLetterWrites)
+    {
+      records.add(toRecord(OfflineWriteQueue.ACKNOWLEDGMENT_TYPE, write));
+    }
+    append(records);
+    deadLetterWrites.clear();
+  }
+
+  /**
+   * Should be invoked when the network connectivity changes, typically from a {@code ConnectivityManager.CONNECTIVITY_ACTION} broadcast
+   * listener: the pending writes are flushed in the background when the connectivity is restored.
+   */
+  public void onConnectivityChanged(boolean connected)
+  {
+    if (connected == true)
+    {
+      flushInBackground();
+    }
+  }
+
+  public synchronized int getPendingWritesCount()
+  {
+    return pendingWrites.size();
+  }
+
+  /**
+   * Sends the pending writes on the calling thread, batch after batch, until the queue is empty or a write fails.
+   *
+   * @return the number of writes which have been sent, discarded or moved to the dead letter writes
+   */
+  public int flush()
+      throws IOException
+  {
+    // Two concurrent flushes would send the same writes
+    synchronized (flushLock)
+    {
+      int count = 0;
+      while (true)
+      {
+        final List<Write> batch = new ArrayList<Write>();
+        synchronized (this)
+        {
+          final Iterator<Write> iterator = pendingWrites.values().iterator();
+          while (iterator.hasNext() == true && batch.size() < maximumBatchSize)
+          {
+            batch.add(iterator.next());
+          }
+        }
+        if (batch.isEmpty() == true)
+        {
+          return count;
+        }
+        final List<Write> acknowledgedWrites = new ArrayList<Write>();
+        final List<Write> deadWrites = new ArrayList<Write>();
+        final String theBatchUri = batchUri;
+        Map<Long, Integer> statusCodes = null;
+        boolean interrupted = false;
+        if (theBatchUri != null)
+        {
+          try
+          {
+            statusCodes = sendBatch(theBatchUri, batch);
+          }
+          catch (CallException exception)
+          {
+            if (log.isDebugEnabled())
+            {
+              log.debug("Stopping the flush of the offline writes, since the batch request to '" + theBatchUri + "' failed with the status code " + exception.getStatusCode());
+            }
+            interrupted = true;
+          }
+        }
+        for (int index = 0; index < batch.size() && interrupted == false; index++)
+        {
+          final Write write = batch.get(index);
+          if (statusCodes != null && statusCodes.containsKey(write.sequence) == false)
+          {
+            // The batch endpoint stopped at the previous write, which has been discarded or moved to the dead letter writes: the next batch starts
+            // with that write, unless the endpoint did not process any write at all
+            interrupted = index == 0;
+            break;
+          }
+          final CallException exception = send(write, statusCodes);
+          if (exception == null)
+          {
+            acknowledgedWrites.add(write);
+          }
+          else
+          {
+            final int statusCode = exception.getStatusCode();
+            // The credentials may be refreshed, and a timed out or throttled request may be retried later
+            if (statusCode >= 400 && statusCode < 500 && statusCode != 401 && statusCode != 403 && statusCode != 408 && statusCode != 429)
+            {
+              // The server will never accept that write
+              if (log.isWarnEnabled())
+              {
+                log.warn("Discarding the write " + write.sequence + " to '" + write.uri + "', rejected with the status code " + statusCode, exception);
+              }
+              acknowledgedWrites.add(write);
+            }
+            else if (statusCode >= 500 && ++write.serverFailuresCount >= OfflineWriteQueue.MAXIMUM_SERVER_FAILURES_COUNT)
+            {
+              if (log.isWarnEnabled())
+              {
+                log.warn("Moving the write " + write.sequence + " to '" + write.uri + "' to the dead letter writes, after " + write.serverFailuresCount + " failure(s) with a 5xx status code", exception);
+              }
+              deadWrites.add(write);
+            }
+            else
+            {
+              if (log.isDebugEnabled())
+              {
+                log.debug("Stopping the flush of the offline writes at the write " + write.sequence + " to '" + write.uri + "'");
+              }
+              interrupted = true;
+            }
+          }
+        }
+        acknowledge(acknowledgedWrites, deadWrites);
+        count += acknowledgedWrites.size() + deadWrites.size();
+        if (interrupted == true)
+        {
+          return count;
+        }
+      }
+    }
+  }
+
+  private void flushInBackground()
+  {
+    flushExecutor.execute(new Runnable()
+    {
+      @Override
+      public void run()
+      {
+        try
+        {
+          flush();
+        }
+        catch (IOException exception)
+        {
+          if (log.isErrorEnabled())
+          {
+            log.error("Could not update the offline writes journal '" + file.getAbsolutePath() + "'", exception);
+          }
+        }
+      }
+    });
+  }
+
+  /**
+   * @param statusCodes the status codes returned by the batch endpoint, or {@code null} if the write must be sent on its own
+   * @return the failure of the write, or {@code null} if the server accepted it
+   */
+  private CallException send(Write write, Map<Long, Integer> statusCodes)
+  {
+    if (statusCodes == null)
+    {
+      try
+      {
+        caller.sendJson(write.uri, write.verb, computeHeaders(write), write.body, false, null);
+        return null;
+      }
+      catch (CallException exception)
+      {
+        return exception;
+      }
+    }
+    final int statusCode = statusCodes.get(write.sequence);
+    return statusCode >= 200 && statusCode < 300 ? null : new CallException("The write " + write.sequence + " to '" + write.uri + "' failed with the status code " + statusCode, statusCode);
+  }
+
+  /**
+   * @return the status codes returned by the batch endpoint, indexed by the write sequence
+   */
+  private Map<Long, Integer> sendBatch(String theBatchUri, List<Write> batch)
+      throws CallException
+  {
+    final ObjectNode requestNode = objectMapper.createObjectNode();
+    final ArrayNode requestsNode = requestNode.putArray("requests");
+    for (Write write : batch)
+    {
+      final ObjectNode node = requestsNode.addObject();
+      node.put("id", Long.toString(write.sequence));
+      node.put("method", write.verb);
+      node.put("uri", write.uri);
+      final Map<String, String> headers = computeHeaders(write);
+      if (headers != null)
+      {
+        final ObjectNode headersNode = node.putObject("headers");
+        for (Entry<String, String> header : headers.entrySet())
+        {
+          headersNode.put(header.getKey(), header.getValue());
+        }
+      }
+      if (write.body != null)
+      {
+        node.set("body", write.body);
+      }
+    }
+    final JsonNode responseNode = caller.sendJson(theBatchUri, "POST", computeHeaders(null), requestNode, false, objectMapper.constructType(JsonNode.class));
+    final Map<Long, Integer> statusCodes = new HashMap<Long, Integer>();
+    for (JsonNode response : responseNode.path("responses"))
+    {
+      statusCodes.put(response.path("id").asLong(-1), response.path("status").asInt());
+    }
+    if (log.isDebugEnabled())
+    {
+      log.debug("Sent " + batch.size() + " offline write(s) through the batch endpoint '" + theBatchUri + "', which processed " + statusCodes.size() + " of them");
+    }
+    return statusCodes;
+  }
+
+  /**
+   * @param write the write whose headers are computed, or {@code null} for the batch request
+   */
+  private Map<String, String> computeHeaders(Write write)
+  {
+    final HeadersProvider provider = headersProvider;
+    final Map<String, String> providedHeaders = provider == null ? null : provider.computeHeaders(write);
+    final Map<String, String> writeHeaders = write == null ? null : write.headers;
+    if (providedHeaders == null || providedHeaders.isEmpty() == true)
+    {
+      return writeHeaders;
+    }
+    // The header names are case-insensitive
+    final Map<String, String> headers = new TreeMap<String, String>(String.CASE_INSENSITIVE_ORDER);
+    if (writeHeaders != null)
+    {
+      headers.putAll(writeHeaders);
+    }
+    headers.putAll(providedHeaders);
+    return headers;
+  }
+
+  private synchronized void acknowledge(List<Write> writes, List<Write> deadWrites)
+      throws IOException
+  {
+    if (writes.isEmpty() == true && deadWrites.isEmpty() == true)
+    {
+      return;
+    }
+    final List<ObjectNode> records = new ArrayList<ObjectNode>();
+    for (Write write : writes)
+    {
+      records.add(toRecord(OfflineWriteQueue.ACKNOWLEDGMENT_TYPE, write));
+      // The write may have been superseded in the meantime
+      if (pendingWrites.get(write.key) == write)
+      {
+        pendingWrites.remove(write.key);
+      }
+    }
+    for (Write write : deadWrites)
+    {
+      records.add(toRecord(OfflineWriteQueue.DEAD_LETTER_TYPE, write));
+      if (pendingWrites.get(write.key) == write)
+      {
+        pendingWrites.remove(write.key);
+        deadLetterWrites.add(write);
+      }
+    }
+    append(records);
+    if (journalRecordsCount > 64 && journalRecordsCount > 4 * pendingWrites.size())
+    {
+      compact();
+    }
+  }
+
+  private void append(List<ObjectNode> records)
+      throws IOException
+  {
+    if (journalOutputStream == null)
+    {
+      journalOutputStream = new FileOutputStream(file, true);
+    }
+    for (ObjectNode record : records)
+    {
+      journalOutputStream.write(objectMapper.writeValueAsBytes(record));
+      journalOutputStream.write('\n');
+    }
+    journalOutputStream.flush();
+    journalOutputStream.getFD().sync();
+    journalRecordsCount += records.size();
+  }
+
+  private void replay()
+      throws IOException
+  {
+    if (file.exists() == false)
+    {
+      return;
+    }
+    final Map<Long, Write> writes = new LinkedHashMap<Long, Write>();
+    final Map<Long, Write> deadWrites = new LinkedHashMap<Long, Write>();
+    final BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+    try
+    {
+      String line;
+      while ((line = reader.readLine()) != null)
+      {
+        final JsonNode record;
+        try
+        {
+          record = objectMapper.readTree(line);
+        }
+        catch (IOException exception)
+        {
+          // The last record may have been partially written when the process died
+          if (log.isWarnEnabled())
+          {
+            log.warn("Ignoring a corrupted record of the offline writes journal '" + file.getAbsolutePath() + "'", exception);
+          }
+          continue;
+        }
+        final long sequence = record.path("sequence").asLong();
+        nextSequence = Math.max(nextSequence, sequence + 1);
+        final String type = record.path("type").asText();
+        if (OfflineWriteQueue.ACKNOWLEDGMENT_TYPE.equals(type) == true)
+        {
+          writes.remove(sequence);
+          deadWrites.remove(sequence);
+        }
+        else if (OfflineWriteQueue.DEAD_LETTER_TYPE.equals(type) == true)
+        {
+          final Write write = writes.remove(sequence);
+          if (write != null)
+          {
+            deadWrites.put(sequence, write);
+          }
+        }
+        else
+        {
+          writes.put(sequence, fromRecord(record));
+        }
+      }
+    }
+    finally
+    {
+      reader.close();
+    }
+    for (Write write : writes.values())
+    {
+      pendingWrites.remove(write.key);
+      pendingWrites.put(write.key, write);
+    }
+    deadLetterWrites.addAll(deadWrites.values());
+    if (log.isDebugEnabled())
+    {
+      log.debug("Restored " + pendingWrites.size() + " pending write(s) from the offline writes journal '" + file.getAbsolutePath() + "'");
+    }
+  }
+
+  /**
+   * Rewrites the journal with the pending writes only.
+   */
+  private synchronized void compact()
+      throws IOException
+  {
+    if (journalOutputStream != null)
+    {
+      journalOutputStream.close();
+      journalOutputStream = null;
+    }
+    final File temporaryFile = new File(file.getPath() + ".tmp");
+    journalOutputStream = new FileOutputStream(temporaryFile, false);
+    journalRecordsCount = 0;
+    try
+    {
+      final List<ObjectNode> records = new ArrayList<ObjectNode>();
+      for (Write write : pendingWrites.values())
+      {
+        records.add(toRecord(write));
+      }
+      for (Write write : deadLetterWrites)
+      {
+        records.add(toRecord(write));
+        records.add(toRecord(OfflineWriteQueue.DEAD_LETTER_TYPE, write));
+      }
+      append(records);
+    }
+    finally
+    {
+      journalOutputStream.close();
+      journalOutputStream = null;
+    }
+    if (temporaryFile.renameTo(file) == false)
+    {
+      throw new IOException("Could not replace the offline writes journal '" + file.getAbsolutePath() + "'");
+    }
+  }
+
+  private ObjectNode toRecord(Write write)
+  {
+    final ObjectNode record = objectMapper.createObjectNode();
+    record.put("type", OfflineWriteQueue.WRITE_TYPE);
+    record.put("sequence", write.sequence);
+    record.put("resource", write.resourceKey);
+    record.put("supersedable", write.key.startsWith("@"));
+    record.put("verb", write.verb);
+    record.put("uri", write.uri);
+    if (write.headers != null)
+    {
+      final ObjectNode headersNode = record.putObject("headers");
+      for (Entry<String, String> header : write.headers.entrySet())
+      {
+        if (OfflineWriteQueue.isCredentialHeader(header.getKey()) == false)
+        {
+          headersNode.put(header.getKey(), header.getValue());
+        }
+      }
+    }
+    record.set("body", write.body);
+    return record;
+  }
+
+  private ObjectNode toRecord(String type, Write write)
+  {
+    final ObjectNode record = objectMapper.createObjectNode();
+    record.put("type", type);
+    record.put("sequence", write.sequence);
+    return record;
+  }
+
+  private static Write fromRecord(JsonNode record)
+  {
+    Map<String, String> headers = null;
+    final JsonNode headersNode = record.get("headers");
+    if (headersNode != null && headersNode.isObject() == true)
+    {
+      headers = new HashMap<String, String>();
+      final Iterator<Entry<String, JsonNode>> iterator = headersNode.fields();
+      while (iterator.hasNext() == true)
+      {
+        final Entry<String, JsonNode> header = iterator.next();
+        headers.put(header.getKey(), header.getValue().asText());
+      }
+    }
+    final JsonNode resourceNode = record.get("resource");
+    final JsonNode bodyNode = record.get("body");
+    return new Write(record.path("sequence").asLong(), resourceNode == null || resourceNode.isNull() == true ? null : resourceNode.asText(), record.path("verb").asText(), record.path("uri").asText(), headers, bodyNode == null || bodyNode.isNull() == true ? null : bodyNode, record.path("supersedable").asBoolean(true));
+  }
+
+  private static boolean isCredentialHeader(String headerName)
+  {
+    for (String credentialHeaderName : OfflineWriteQueue.CREDENTIAL_HEADER_NAMES)
+    {
+      if (credentialHeaderName.equalsIgnoreCase(headerName) == true)
+      {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Computes the merge patch which is equivalent to applying the first merge patch, then the second one: unlike the outcome of the
+   * {@link JacksonParser#mergePatch(JsonNode, JsonNode)} method, the result keeps the {@code null} members, which remove fields on the server.
+   */
+  private static ObjectNode composeMergePatches(ObjectNode first, ObjectNode second)
+  {
+    final ObjectNode result = first.deepCopy();
+    final Iterator<Entry<String, JsonNode>> iterator = second.fields();
+    while (iterator.hasNext() == true)
+    {
+      final Entry<String, JsonNode> field = iterator.next();
+      final JsonNode previousValue = result.get(field.getKey());
+      if (previousValue == null || field.getValue().isObject() == false)
+      {
+        result.set(field.getKey(), field.getValue());
+      }
+      else if (previousValue.isObject() == true)
+      {
+        result.set(field.getKey(), OfflineWriteQueue.composeMergePatches((ObjectNode) previousValue, (ObjectNode) field.getValue()));
+      }
+      else
+      {
+        // The first patch replaces the field with a value which is not an object, which the second patch is applied to
+        result.set(field.getKey(), JacksonParser.mergePatch(previousValue, field.getValue()));
+      }
+    }
+    return result;
+  }
+
+  /**
+   * @return {@code true} if the body of a "PATCH" write can be merged into the provided pending write
+   */
+  private static boolean canMerge(Write pendingWrite, JsonNode body)
+  {
+    final boolean mergeableVerb = "PATCH".equalsIgnoreCase(pendingWrite.verb) == true || "PUT".equalsIgnoreCase(pendingWrite.verb) == true;
+    return mergeableVerb == true && pendingWrite.body instanceof ObjectNode && body instanceof ObjectNode;
+  }
+
+}
@@ -0,0 +1,425 @@
+// The MIT License (MIT)
+//
+// Copyright (c) 2017 Smart&Soft
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+// SOFTWARE.
+
+package com.smartnsoft.droid4me.ext.ws;
+
+import java.io.EOFException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+/**
+ * Decodes a "gzip" or "deflate" body with an {@link Inflater} and an input buffer which are taken from a pool, and which are given back to it
+ * when the stream is closed, instead of being allocated for every response.
+ *
+ * @since 2026.10.19
+ */
+final class PooledInflaterInputStream
+    extends FilterInputStream
+{
+
+  private static final int BUFFER_SIZE = 8192;
+
+  private static final int POOL_CAPACITY = 4;
+
+  private static final int GZIP_FLAG_HEADER_CRC = 2;
+
+  private static final int GZIP_FLAG_EXTRA = 4;
+
+  private static final int GZIP_FLAG_NAME = 8;
+
+  private static final int GZIP_FLAG_COMMENT = 16;
+
+  private static final List<Inflater> rawInflaters = new ArrayList<Inflater>();
+
+  private static final List<Inflater> zlibInflaters = new ArrayList<Inflater>();
+
+  private static final List<byte[]> buffers = new ArrayList<byte[]>();
+
+  private static synchronized Inflater obtainInflater(boolean raw)
+  {
+    final List<Inflater> inflaters = raw == true ? rawInflaters : zlibInflaters;
+    return inflaters.isEmpty() == true ? new Inflater(raw) : inflaters.remove(inflaters.size() - 1);
+  }
+
+  private static synchronized void recycle(Inflater inflater, boolean raw)
+  {
+    final List<Inflater> inflaters = raw == true ? rawInflaters : zlibInflaters;
+    if (inflaters.size() < PooledInflaterInputStream.POOL_CAPACITY)
+    {
+      inflater.reset();
+      inflaters.add(inflater);
+    }
+    else
+    {
+      // The native resources are released immediately
+      inflater.end();
+    }
+  }
+
+  private static synchronized byte[] obtainBuffer()
+  {
+    return buffers.isEmpty() == true ? new byte[PooledInflaterInputStream.BUFFER_SIZE] : buffers.remove(buffers.size() - 1);
+  }
+
+  private static synchronized void recycle(byte[] buffer)
+  {
+    if (buffers.size() < PooledInflaterInputStream.POOL_CAPACITY)
+    {
+      buffers.add(buffer);
+    }
+  }
+
+  private final boolean gzip;
+
+  private final boolean raw;
+
+  private final Inflater inflater;
+
+  private final CRC32 crc;
+
+  private byte[] buffer;
+
+  private int bufferPosition;
+
+  private int bufferLength;
+
+  private final byte[] singleByte = new byte[1];
+
+  private boolean finished;
+
+  /**
+   * Guards the recycling of the inflater and of the buffer, since the stream may be closed from another thread, typically when a call is
+   * cancelled, while a read is in progress.
+   */
+  private final Object lock = new Object();
+
+  private boolean reading;
+
+  private volatile boolean closed;
+
+  private boolean recycled;
+
+  /**
+   * @param inputStream the encoded stream
+   * @param gzip        {@code true} for the "gzip" encoding, {@code false} for the "deflate" encoding, for which both the zlib format and the raw
+   *                    deflate format, sent by some servers, are accepted
+   */
+  PooledInflaterInputStream(InputStream inputStream, boolean gzip)
+      throws IOException
+  {
+    super(inputStream);
+    this.gzip = gzip;
+    this.buffer = PooledInflaterInputStream.obtainBuffer();
+    try
+    {
+      if (gzip == true)
+      {
+        readGzipHeader();
+        raw = true;
+        crc = new CRC32();
+      }
+      else
+      {
+        raw = isZlibHeader() == false;
+        crc = null;
+      }
+    }
+    catch (IOException exception)
+    {
+      PooledInflaterInputStream.recycle(buffer);
+      buffer = null;
+      throw exception;
+    }
+    inflater = PooledInflaterInputStream.obtainInflater(raw);
+  }
+
+  @Override
+  public int read()
+      throws IOException
+  {
+    return read(singleByte, 0, 1) == -1 ? -1 : singleByte[0] & 0xFF;
+  }
+
+  @Override
+  public int read(byte[] bytes, int offset, int length)
+      throws IOException
+  {
+    synchronized (lock)
+    {
+      if (closed == true)
+      {
+        throw new IOException("The stream is closed");
+      }
+      reading = true;
+    }
+    try
+    {
+      return inflate(bytes, offset, length);
+    }
+    finally
+    {
+      synchronized (lock)
+      {
+        reading = false;
+        if (closed == true)
+        {
+          // The stream has been closed by another thread during the read, which left the recycling to the current thread
+          recycleResources();
+        }
+      }
+    }
+  }
+
+  private int inflate(byte[] bytes, int offset, int length)
+      throws IOException
+  {
+    if (finished == true)
+    {
+      return -1;
+    }
+    if (length == 0)
+    {
+      return 0;
+    }
+    try
+    {
+      while (true)
+      {
+        final int count = inflater.inflate(bytes, offset, length);
+        if (count > 0)
+        {
+          if (crc != null)
+          {
+            crc.update(bytes, offset, count);
+          }
+          return count;
+        }
+        if (inflater.finished() == true)
+        {
+          onFinished();
+          return -1;
+        }
+        if (inflater.needsDictionary() == true)
+        {
+          throw new ZipException("A preset dictionary is required");
+        }
+        if (inflater.needsInput() == true)
+        {
+          if (bufferPosition >= bufferLength)
+          {
+            fill();
+          }
+          inflater.setInput(buffer, bufferPosition, bufferLength - bufferPosition);
+          bufferPosition = bufferLength;
+        }
+      }
+    }
+    catch (DataFormatException exception)
+    {
+      throw new ZipException(exception.getMessage());
+    }
+  }
+
+  @Override
+  public int available()
+      throws IOException
+  {
+    return finished == true || closed == true ? 0 : 1;
+  }
+
+  @Override
+  public long skip(long count)
+      throws IOException
+  {
+    final byte[] skipBuffer = new byte[(int) Math.min(512, Math.max(0, count))];
+    long skipped = 0;
+    while (skipped < count)
+    {
+      final int read = read(skipBuffer, 0, (int) Math.min(skipBuffer.length, count - skipped));
+      if (read == -1)
+      {
+        break;
+      }
+      skipped += read;
+    }
+    return skipped;
+  }
+
+  @Override
+  public boolean markSupported()
+  {
+    return false;
+  }
+
+  @Override
+  public void close()
+      throws IOException
+  {
+    synchronized (lock)
+    {
+      if (closed == true)
+      {
+        return;
+      }
+      closed = true;
+      // If a read is in progress on another thread, the inflater is still in use, and it will be recycled once that read returns
+      if (reading == false)
+      {
+        recycleResources();
+      }
+    }
+    // This unblocks a read which is waiting for the network
+    super.close();
+  }
+
+  private void recycleResources()
+  {
+    if (recycled == true)
+    {
+      return;
+    }
+    recycled = true;
+    PooledInflaterInputStream.recycle(inflater, raw);
+    PooledInflaterInputStream.recycle(buffer);
+    buffer = null;
+  }
+
+  private void onFinished()
+      throws IOException
+  {
+    finished = true;
+    if (gzip == true)
+    {
+      // The trailer lies in the bytes which have not been consumed by the inflater
+      bufferPosition = bufferLength - inflater.getRemaining();
+      final long expectedCrc = readInt();
+      final long expectedSize = readInt();
+      if (expectedCrc != crc.getValue() || expectedSize != (inflater.getBytesWritten() & 0xFFFFFFFFL))
+      {
+        throw new ZipException("Corrupted gzip trailer");
+      }
+    }
+  }
+
+  private void readGzipHeader()
+      throws IOException
+  {
+    if (readByte() != 0x1F || readByte() != 0x8B)
+    {
+      throw new ZipException("Not in the gzip format");
+    }
+    if (readByte() != 8)
+    {
+      throw new ZipException("Unsupported gzip compression method");
+    }
+    final int flags = readByte();
+    // The modification time, the extra flags and the operating system
+    skipBytes(6);
+    if ((flags & PooledInflaterInputStream.GZIP_FLAG_EXTRA) != 0)
+    {
+      skipBytes(readByte() | (readByte() << 8));
+    }
+    if ((flags & PooledInflaterInputStream.GZIP_FLAG_NAME) != 0)
+    {
+      while (readByte() != 0)
+      {
+        // The file name is ignored
+      }
+    }
+    if ((flags & PooledInflaterInputStream.GZIP_FLAG_COMMENT) != 0)
+    {
+      while (readByte() != 0)
+      {
+        // The comment is ignored
+      }
+    }
+    if ((flags & PooledInflaterInputStream.GZIP_FLAG_HEADER_CRC) != 0)
+    {
+      skipBytes(2);
+    }
+  }
+
+  /**
+   * Checks whether the body starts with a zlib header, without consuming it.
+   */
+  private boolean isZlibHeader()
+      throws IOException
+  {
+    while (bufferLength < 2)
+    {
+      final int count = in.read(buffer, bufferLength, buffer.length - bufferLength);
+      if (count == -1)
+      {
+        throw new EOFException("Unexpected end of the deflate stream");
+      }
+      bufferLength += count;
+    }
+    final int firstByte = buffer[0] & 0xFF;
+    final int secondByte = buffer[1] & 0xFF;
+    return (firstByte & 0x0F) == 8 && ((firstByte << 8) | secondByte) % 31 == 0;
+  }
+
+  private long readInt()
+      throws IOException
+  {
+    return (readByte() | (readByte() << 8) | (readByte() << 16) | ((long) readByte() << 24)) & 0xFFFFFFFFL;
+  }
+
+  private void skipBytes(int count)
+      throws IOException
+  {
+    for (int index = 0; index < count; index++)
+    {
+      readByte();
+    }
+  }
+
+  private int readByte()
+      throws IOException
+  {
+    if (bufferPosition >= bufferLength)
+    {
+      fill();
+    }
+    return buffer[bufferPosition++] & 0xFF;
+  }
+
+  private void fill()
+      throws IOException
+  {
+    final int count = in.read(buffer, 0, buffer.length);
+    if (count == -1)
+    {
+      throw new EOFException("Unexpected end of the " + (gzip == true ? "gzip" : "deflate") + " stream");
+    }
+    bufferPosition = 0;
+    bufferLength = count;
+  }
+
+}
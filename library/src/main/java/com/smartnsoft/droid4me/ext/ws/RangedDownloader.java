@@ -0,0 +1,521 @@
+// The MIT License (MIT)
+//
+// Copyright (c) 2017 Smart&Soft
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+// SOFTWARE.
+
+package com.smartnsoft.droid4me.ext.ws;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.net.HttpURLConnection;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import com.smartnsoft.droid4me.log.Logger;
+import com.smartnsoft.droid4me.log.LoggerFactory;
+import com.smartnsoft.droid4me.ws.WebServiceClient.CallException;
+
+/**
+ * Downloads a large body into a file through HTTP {@code Range} requests, so that an interrupted download resumes where it stopped, and so that
+ * a big body may be fetched through several concurrent connections.
+ * <p>
+ * While the download is in progress, the body is written into a {@code .part} file, and the progress of every range is persisted into a
+ * {@code .state} file, along with the validator of the body ({@code ETag} or {@code Last-Modified}), which is sent through the {@code If-Range}
+ * header when resuming: if the body has changed in the meantime, or if the server does not honour the ranges, the download starts over. Once
+ * complete, the {@code .part} file is renamed into the target file.
+ * </p>
+ *
+ * @see JacksonURLConnectionWebServiceCaller#downloadJson(String, Map, File, int, com.fasterxml.jackson.databind.JavaType)
+ * @since 2026.10.19
+ */
+public final class RangedDownloader
+{
+
+  private static final class Range
+  {
+
+    private final long start;
+
+    /**
+     * Inclusive, {@code -1} when the body length is not known.
+     */
+    private final long end;
+
+    private volatile long offset;
+
+    private Range(long start, long end, long offset)
+    {
+      this.start = start;
+      this.end = end;
+      this.offset = offset;
+    }
+
+    private boolean isComplete()
+    {
+      return end >= 0 && offset > end;
+    }
+
+  }
+
+  /**
+   * Thrown when the server answers with the whole body instead of the requested range.
+   */
+  private static final class RangeNotHonouredException
+      extends IOException
+  {
+
+    private static final long serialVersionUID = 1L;
+
+  }
+
+  /**
+   * The minimum size of a range downloaded through its own connection.
+   */
+  public static final long DEFAULT_MINIMUM_RANGE_SIZE_IN_BYTES = 1024 * 1024;
+
+  private static final Logger log = LoggerFactory.getInstance(RangedDownloader.class);
+
+  private static final int STATE_SAVING_INTERVAL_IN_BYTES = 256 * 1024;
+
+  private final JacksonURLConnectionWebServiceCaller caller;
+
+  private final long minimumRangeSizeInBytes;
+
+  public RangedDownloader(JacksonURLConnectionWebServiceCaller caller)
+  {
+    this(caller, RangedDownloader.DEFAULT_MINIMUM_RANGE_SIZE_IN_BYTES);
+  }
+
+  public RangedDownloader(JacksonURLConnectionWebServiceCaller caller, long minimumRangeSizeInBytes)
+  {
+    this.caller = caller;
+    this.minimumRangeSizeInBytes = minimumRangeSizeInBytes;
+  }
+
+  /**
+   * Downloads the body on the calling thread, resuming the previous download into the same file if any.
+   *
+   * @param uri           the full URI of the body
+   * @param headers       the request headers, may be {@code null}
+   * @param file          the target file, which is only written once the download is complete
+   * @param maximumRanges the maximum number of ranges downloaded concurrently, {@code 1} meaning that the body is downloaded through a single
+   *                      connection
+   * @return the target file
+   * @throws CallException if the download failed: invoking this method again resumes it
+   */
+  public File download(String uri, Map<String, String> headers, File file, int maximumRanges)
+      throws CallException
+  {
+    final File partFile = new File(file.getPath() + ".part");
+    final File stateFile = new File(file.getPath() + ".state");
+    try
+    {
+      try
+      {
+        return download(uri, headers, file, partFile, stateFile, maximumRanges, true);
+      }
+      catch (RangeNotHonouredException exception)
+      {
+        if (log.isWarnEnabled())
+        {
+          log.warn("The server did not honour the ranges of '" + uri + "': downloading it again from the beginning", exception);
+        }
+        stateFile.delete();
+        partFile.delete();
+        return download(uri, headers, file, partFile, stateFile, 1, false);
+      }
+    }
+    catch (CallException exception)
+    {
+      throw exception;
+    }
+    catch (IOException exception)
+    {
+      throw new CallException("Could not download '" + uri + "' into '" + file.getAbsolutePath() + "'", exception);
+    }
+  }
+
+  private File download(String uri, Map<String, String> headers, File file, File partFile, File stateFile,
+      int maximumRanges, boolean useRanges)
+      throws IOException, CallException
+  {
+    final Properties state = readState(uri, stateFile, partFile);
+    final List<Range> ranges;
+    if (state != null)
+    {
+      ranges = fromState(state);
+      if (log.isDebugEnabled())
+      {
+        log.debug("Resuming the download of '" + uri + "' through " + ranges.size() + " range(s)");
+      }
+    }
+    else
+    {
+      final long length = useRanges == true ? probe(uri, headers, stateFile) : -1;
+      ranges = split(length, length < 0 ? 1 : maximumRanges);
+    }
+    final String validator = state == null ? readValidator(stateFile) : state.getProperty("validator");
+    final RandomAccessFile randomAccessFile = new RandomAccessFile(partFile, "rw");
+    try
+    {
+      final FileChannel channel = randomAccessFile.getChannel();
+      writeState(uri, validator, ranges, stateFile);
+      if (ranges.size() == 1)
+      {
+        downloadRange(uri, headers, validator, ranges.get(0), channel, ranges, stateFile, useRanges);
+      }
+      else
+      {
+        downloadRanges(uri, headers, validator, ranges, channel, stateFile);
+      }
+      channel.force(false);
+    }
+    finally
+    {
+      randomAccessFile.close();
+    }
+    if (file.exists() == true)
+    {
+      file.delete();
+    }
+    if (partFile.renameTo(file) == false)
+    {
+      throw new IOException("Could not rename the file '" + partFile.getAbsolutePath() + "'");
+    }
+    stateFile.delete();
+    return file;
+  }
+
+  /**
+   * Sends a "HEAD" request, in order to know the body length, whether the server accepts ranges, and the body validator.
+   *
+   * @return the body length if the ranges are accepted, {@code -1} otherwise
+   */
+  private long probe(String uri, Map<String, String> headers, File stateFile)
+      throws IOException, CallException
+  {
+    final HttpURLConnection httpURLConnection = caller.openConnection(uri, "HEAD", computeHeaders(headers, null, null));
+    try
+    {
+      final int statusCode = caller.readStatusCode(httpURLConnection);
+      if (statusCode < 200 || statusCode >= 300)
+      {
+        throw new CallException("The request to '" + uri + "' failed with the status code " + statusCode, statusCode);
+      }
+      final String eTag = httpURLConnection.getHeaderField("ETag");
+      final String validator = eTag != null && eTag.startsWith("W/") == false ? eTag : httpURLConnection.getHeaderField("Last-Modified");
+      // The validator is kept until the state is written
+      final Properties properties = new Properties();
+      if (validator != null)
+      {
+        properties.setProperty("validator", validator);
+      }
+      store(properties, stateFile);
+      final long length = parseLong(httpURLConnection.getHeaderField("Content-Length"));
+      return "bytes".equalsIgnoreCase(httpURLConnection.getHeaderField("Accept-Ranges")) == true && validator != null ? length : -1;
+    }
+    finally
+    {
+      httpURLConnection.disconnect();
+    }
+  }
+
+  private List<Range> split(long length, int maximumRanges)
+  {
+    final List<Range> ranges = new ArrayList<Range>();
+    if (length <= 0)
+    {
+      ranges.add(new Range(0, length == 0 ? -1 : length - 1, 0));
+      return ranges;
+    }
+    final int count = (int) Math.max(1, Math.min(maximumRanges, length / Math.max(1, minimumRangeSizeInBytes)));
+    final long rangeSize = length / count;
+    for (int index = 0; index < count; index++)
+    {
+      final long start = index * rangeSize;
+      ranges.add(new Range(start, index == count - 1 ? length - 1 : start + rangeSize - 1, start));
+    }
+    return ranges;
+  }
+
+  private void downloadRanges(final String uri, final Map<String, String> headers, final String validator,
+      final List<Range> ranges, final FileChannel channel, final File stateFile)
+      throws IOException, CallException
+  {
+    final ExecutorService executor = Executors.newFixedThreadPool(ranges.size());
+    try
+    {
+      final List<Future<Void>> futures = new ArrayList<Future<Void>>();
+      for (final Range range : ranges)
+      {
+        futures.add(executor.submit(new Callable<Void>()
+        {
+          @Override
+          public Void call()
+              throws Exception
+          {
+            downloadRange(uri, headers, validator, range, channel, ranges, stateFile, true);
+            return null;
+          }
+        }));
+      }
+      Exception failure = null;
+      for (Future<Void> future : futures)
+      {
+        try
+        {
+          future.get();
+        }
+        catch (ExecutionException exception)
+        {
+          failure = exception.getCause() instanceof Exception ? (Exception) exception.getCause() : exception;
+        }
+        catch (InterruptedException exception)
+        {
+          Thread.currentThread().interrupt();
+          throw new CallException("Interrupted while downloading '" + uri + "'", exception);
+        }
+      }
+      writeState(uri, validator, ranges, stateFile);
+      if (failure instanceof IOException)
+      {
+        throw (IOException) failure;
+      }
+      else if (failure instanceof CallException)
+      {
+        throw (CallException) failure;
+      }
+      else if (failure != null)
+      {
+        throw new CallException(failure);
+      }
+    }
+    finally
+    {
+      executor.shutdownNow();
+    }
+  }
+
+  private void downloadRange(String uri, Map<String, String> headers, String validator, Range range,
+      FileChannel channel, List<Range> ranges, File stateFile, boolean useRanges)
+      throws IOException, CallException
+  {
+    if (range.isComplete() == true)
+    {
+      return;
+    }
+    final String rangeHeader = useRanges == false || (range.offset == 0 && range.end < 0) ? null : "bytes=" + range.offset + "-" + (range.end >= 0 ? range.end : "");
+    final HttpURLConnection httpURLConnection = caller.openConnection(uri, "GET", computeHeaders(headers, rangeHeader, validator));
+    try
+    {
+      final int statusCode = caller.readStatusCode(httpURLConnection);
+      if (statusCode == 416 && range.end < 0 && range.offset > 0)
+      {
+        // The previous download of the body of unknown length stopped right at its end
+        httpURLConnection.disconnect();
+        return;
+      }
+      else if (statusCode == HttpURLConnection.HTTP_OK && rangeHeader != null && range.offset > 0)
+      {
+        throw new RangeNotHonouredException();
+      }
+      else if (statusCode != HttpURLConnection.HTTP_OK && statusCode != HttpURLConnection.HTTP_PARTIAL)
+      {
+        throw new CallException("The request to '" + uri + "' failed with the status code " + statusCode, statusCode);
+      }
+      final InputStream inputStream = httpURLConnection.getInputStream();
+      try
+      {
+        final byte[] buffer = new byte[8192];
+        long unsavedBytes = 0;
+        int length;
+        while ((length = inputStream.read(buffer)) != -1)
+        {
+          final int count = range.end >= 0 ? (int) Math.min(length, range.end + 1 - range.offset) : length;
+          final ByteBuffer byteBuffer = ByteBuffer.wrap(buffer, 0, count);
+          while (byteBuffer.hasRemaining() == true)
+          {
+            range.offset += channel.write(byteBuffer, range.offset);
+          }
+          unsavedBytes += count;
+          if (unsavedBytes >= RangedDownloader.STATE_SAVING_INTERVAL_IN_BYTES)
+          {
+            // The written bytes must be on the disk before the state claims they are
+            channel.force(false);
+            writeState(uri, validator, ranges, stateFile);
+            unsavedBytes = 0;
+          }
+          if (range.isComplete() == true)
+          {
+            break;
+          }
+        }
+      }
+      finally
+      {
+        inputStream.close();
+      }
+      if (range.end >= 0 && range.isComplete() == false)
+      {
+        throw new IOException("The download of the range " + range.start + "-" + range.end + " of '" + uri + "' stopped at the offset " + range.offset);
+      }
+    }
+    catch (IOException exception)
+    {
+      httpURLConnection.disconnect();
+      channel.force(false);
+      writeState(uri, validator, ranges, stateFile);
+      throw exception;
+    }
+  }
+
+  private static Map<String, String> computeHeaders(Map<String, String> headers, String range, String validator)
+  {
+    final Map<String, String> actualHeaders = new HashMap<String, String>();
+    if (headers != null)
+    {
+      actualHeaders.putAll(headers);
+    }
+    // The ranges apply to the encoded body, which would not be decodable
+    actualHeaders.put("Accept-Encoding", "identity");
+    if (range != null)
+    {
+      actualHeaders.put("Range", range);
+      if (validator != null)
+      {
+        actualHeaders.put("If-Range", validator);
+      }
+    }
+    return actualHeaders;
+  }
+
+  private static Properties readState(String uri, File stateFile, File partFile)
+      throws IOException
+  {
+    if (stateFile.exists() == false || partFile.exists() == false)
+    {
+      return null;
+    }
+    final Properties properties = load(stateFile);
+    // The state file may only hold the validator, if the process died right after the probe
+    return uri.equals(properties.getProperty("uri")) == true && properties.getProperty("ranges") != null ? properties : null;
+  }
+
+  private static String readValidator(File stateFile)
+      throws IOException
+  {
+    return stateFile.exists() == true ? load(stateFile).getProperty("validator") : null;
+  }
+
+  private static List<Range> fromState(Properties state)
+  {
+    final int count = Integer.parseInt(state.getProperty("ranges"));
+    final List<Range> ranges = new ArrayList<Range>(count);
+    for (int index = 0; index < count; index++)
+    {
+      ranges.add(new Range(Long.parseLong(state.getProperty("range." + index + ".start")), Long.parseLong(state.getProperty("range." + index + ".end")), Long.parseLong(state.getProperty("range." + index + ".offset"))));
+    }
+    return ranges;
+  }
+
+  private static synchronized void writeState(String uri, String validator, List<Range> ranges, File stateFile)
+      throws IOException
+  {
+    final Properties properties = new Properties();
+    properties.setProperty("uri", uri);
+    if (validator != null)
+    {
+      properties.setProperty("validator", validator);
+    }
+    properties.setProperty("ranges", Integer.toString(ranges.size()));
+    for (int index = 0; index < ranges.size(); index++)
+    {
+      final Range range = ranges.get(index);
+      properties.setProperty("range." + index + ".start", Long.toString(range.start));
+      properties.setProperty("range." + index + ".end", Long.toString(range.end));
+      properties.setProperty("range." + index + ".offset", Long.toString(range.offset));
+    }
+    store(properties, stateFile);
+  }
+
+  private static Properties load(File file)
+      throws IOException
+  {
+    final Properties properties = new Properties();
+    final InputStream inputStream = new FileInputStream(file);
+    try
+    {
+      properties.load(inputStream);
+    }
+    finally
+    {
+      inputStream.close();
+    }
+    return properties;
+  }
+
+  private static void store(Properties properties, File file)
+      throws IOException
+  {
+    // The state is replaced atomically, so that a process death never leaves a truncated state
+    final File temporaryFile = new File(file.getPath() + ".tmp");
+    final OutputStream outputStream = new FileOutputStream(temporaryFile);
+    try
+    {
+      properties.store(outputStream, null);
+    }
+    finally
+    {
+      outputStream.close();
+    }
+    if (temporaryFile.renameTo(file) == false)
+    {
+      throw new IOException("Could not write the file '" + file.getAbsolutePath() + "'");
+    }
+  }
+
+  private static long parseLong(String value)
+  {
+    try
+    {
+      return value == null ? -1 : Long.parseLong(value.trim());
+    }
+    catch (NumberFormatException exception)
+    {
+      return -1;
+    }
+  }
+
+}
@@ -0,0 +1,455 @@
+// The MIT License (MIT)
+//
+// Copyright (c) 2017 Smart&Soft
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+// SOFTWARE.
+
+package com.smartnsoft.droid4me.ext.ws;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import com.smartnsoft.droid4me.ext.json.jackson.JacksonExceptions;
+import com.smartnsoft.droid4me.ext.json.jackson.JacksonExceptions.JacksonParsingException;
+import com.smartnsoft.droid4me.log.Logger;
+import com.smartnsoft.droid4me.log.LoggerFactory;
+import com.smartnsoft.droid4me.ws.WebServiceClient.CallException;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Collects the "GET" calls issued within a short window, and sends them as a single request to a batch endpoint, which saves round trips on
+ * high-latency networks.
+ * <p>
+ * The batch request is a "POST" with the following JSON body:
+ * <pre>
+ * {"requests":[{"id":"0","method":"GET","uri":"...","headers":{"...":"..."}}, ...]}
+ * </pre>
+ * and the batch endpoint is expected to answer with:
+ * <pre>
+ * {"responses":[{"id":"0","status":200,"body":{...}}, ...]}
+ * </pre>
+ * The responses may come in any order: the batch response is streamed, and every caller is released as soon as its own response has been
+ * bound, while the following ones are still being downloaded.
+ * </p>
+ *
+ * @see JacksonURLConnectionWebServiceCaller#setBatching(String, long, int)
+ * @since 2026.10.19
+ */
+public final class RequestBatcher
+{
+
+  private static final class BatchedCall
+  {
+
+    private final String uri;
+
+    private final Map<String, String> headers;
+
+    private final JavaType javaType;
+
+    private final CountDownLatch latch = new CountDownLatch(1);
+
+    private Object result;
+
+    private CallException exception;
+
+    private BatchedCall(String uri, Map<String, String> headers, JavaType javaType)
+    {
+      this.uri = uri;
+      this.headers = headers;
+      this.javaType = javaType;
+    }
+
+    private void complete(Object result, CallException exception)
+    {
+      if (latch.getCount() > 0)
+      {
+        this.result = result;
+        this.exception = exception;
+        latch.countDown();
+      }
+    }
+
+  }
+
+  private static final Logger log = LoggerFactory.getInstance(RequestBatcher.class);
+
+  private final JacksonURLConnectionWebServiceCaller caller;
+
+  private final String batchUri;
+
+  private final long windowInMilliseconds;
+
+  private final int maximumBatchSize;
+
+  private final ScheduledExecutorService scheduledExecutor = Executors.newSingleThreadScheduledExecutor(JacksonURLConnectionWebServiceCaller.computeDaemonThreadFactory("droid4me-batcher-timer"));
+
+  private final ExecutorService sendingExecutor = Executors.newCachedThreadPool(JacksonURLConnectionWebServiceCaller.computeDaemonThreadFactory("droid4me-batcher"));
+
+  private List<BatchedCall> pendingCalls = new ArrayList<BatchedCall>();
+
+  /**
+   * The timer which sends the pending calls at the end of the window.
+   */
+  private ScheduledFuture<?> windowTimer;
+
+  private boolean shutdown;
+
+  RequestBatcher(JacksonURLConnectionWebServiceCaller caller, String batchUri, long windowInMilliseconds,
+      int maximumBatchSize)
+  {
+    this.caller = caller;
+    this.batchUri = batchUri;
+    this.windowInMilliseconds = windowInMilliseconds;
+    this.maximumBatchSize = Math.max(1, maximumBatchSize);
+  }
+
+  /**
+   * Adds a call to the current batch, and waits for its response.
+   *
+   * @param uri      the full URI of the call
+   * @param headers  the call headers, may be {@code null}
+   * @param javaType the type to bind the response body to
+   * @return the bound body
+   * @throws CallException if the batch request failed, if the call response has a non-successful status, or if its body could not be bound
+   */
+  @SuppressWarnings("unchecked")
+  public <ContentType> ContentType execute(String uri, Map<String, String> headers, JavaType javaType)
+      throws CallException
+  {
+    final BatchedCall batchedCall = new BatchedCall(uri, headers, javaType);
+    final boolean sendAlone;
+    synchronized (this)
+    {
+      sendAlone = shutdown;
+      if (shutdown == false)
+      {
+        pendingCalls.add(batchedCall);
+        if (pendingCalls.size() >= maximumBatchSize)
+        {
+          sendingExecutor.execute(computeFlusher());
+        }
+        else if (pendingCalls.size() == 1)
+        {
+          final List<BatchedCall> batchedCalls = pendingCalls;
+          windowTimer = scheduledExecutor.schedule(new Runnable()
+          {
+            @Override
+            public void run()
+            {
+              synchronized (RequestBatcher.this)
+              {
+                // The batch may have already been sent because it reached its maximum size
+                if (pendingCalls == batchedCalls && shutdown == false)
+                {
+                  sendingExecutor.execute(computeFlusher());
+                }
+              }
+            }
+          }, windowInMilliseconds, TimeUnit.MILLISECONDS);
+        }
+      }
+    }
+    if (sendAlone == true)
+    {
+      // The batcher has been replaced while the call was being issued, hence the call is sent on its own
+      send(Collections.singletonList(batchedCall));
+    }
+    try
+    {
+      batchedCall.latch.await();
+    }
+    catch (InterruptedException exception)
+    {
+      Thread.currentThread().interrupt();
+      throw new CallException("Interrupted while waiting for the batched call to '" + uri + "'", exception);
+    }
+    if (batchedCall.exception != null)
+    {
+      throw batchedCall.exception;
+    }
+    return (ContentType) batchedCall.result;
+  }
+
+  /**
+   * Sends the pending calls, and stops the threads of the batcher once they have been sent. The calls issued afterwards are sent on their own.
+   */
+  public synchronized void shutdown()
+  {
+    if (shutdown == true)
+    {
+      return;
+    }
+    sendingExecutor.execute(computeFlusher());
+    shutdown = true;
+    sendingExecutor.shutdown();
+    scheduledExecutor.shutdownNow();
+  }
+
+  /**
+   * @return a runnable which sends the calls pending at the time it is invoked
+   */
+  private synchronized Runnable computeFlusher()
+  {
+    final List<BatchedCall> batchedCalls = pendingCalls;
+    pendingCalls = new ArrayList<BatchedCall>();
+    if (windowTimer != null)
+    {
+      // The window timer of the batch is not needed anymore, and should not send the next batch too early
+      windowTimer.cancel(false);
+      windowTimer = null;
+    }
+    return new Runnable()
+    {
+      @Override
+      public void run()
+      {
+        if (batchedCalls.isEmpty() == false)
+        {
+          send(batchedCalls);
+        }
+      }
+    };
+  }
+
+  private void send(List<BatchedCall> batchedCalls)
+  {
+    if (log.isDebugEnabled())
+    {
+      log.debug("Sending a batch of " + batchedCalls.size() + " call(s) to '" + batchUri + "'");
+    }
+    final ObjectMapper objectMapper = caller.jacksonParser.getObjectMapper();
+    HttpURLConnection httpURLConnection = null;
+    // Tells whether the response body has been entirely consumed, in which case the connection may be reused
+    boolean released = false;
+    try
+    {
+      final Map<String, String> headers = new HashMap<String, String>();
+      headers.put("Content-Type", "application/json");
+      httpURLConnection = caller.openConnection(batchUri, "POST", headers);
+      httpURLConnection.setDoOutput(true);
+      httpURLConnection.setChunkedStreamingMode(0);
+      final OutputStream outputStream;
+      try
+      {
+        outputStream = httpURLConnection.getOutputStream();
+      }
+      catch (IOException exception)
+      {
+        caller.onConnectionFailure(httpURLConnection, exception);
+        throw exception;
+      }
+      try
+      {
+        writeRequests(objectMapper, outputStream, batchedCalls);
+      }
+      finally
+      {
+        outputStream.close();
+      }
+      final int statusCode = caller.readStatusCode(httpURLConnection);
+      if (statusCode < 200 || statusCode >= 300)
+      {
+        throw new CallException("The batch request to '" + batchUri + "' failed with the status code " + statusCode, statusCode);
+      }
+      final String contentEncoding = httpURLConnection.getContentEncoding();
+      final InputStream inputStream = ContentDecoders.decode(contentEncoding, httpURLConnection.getInputStream());
+      try
+      {
+        readResponses(objectMapper, inputStream, batchedCalls);
+      }
+      finally
+      {
+        inputStream.close();
+      }
+      released = true;
+    }
+    catch (CallException exception)
+    {
+      fail(batchedCalls, exception);
+    }
+    catch (JsonProcessingException exception)
+    {
+      fail(batchedCalls, JacksonExceptions.toParsingException(exception));
+    }
+    catch (IOException exception)
+    {
+      fail(batchedCalls, new CallException("The batch request to '" + batchUri + "' failed", exception));
+    }
+    catch (RuntimeException exception)
+    {
+      fail(batchedCalls, new CallException(exception));
+    }
+    finally
+    {
+      if (httpURLConnection != null && released == false)
+      {
+        // The connection cannot be reused, and its socket is released
+        httpURLConnection.disconnect();
+      }
+      // The calls which have not received any response are released
+      fail(batchedCalls, new CallException("The batch response from '" + batchUri + "' did not contain any response for the call"));
+    }
+  }
+
+  private void writeRequests(ObjectMapper objectMapper, OutputStream outputStream, List<BatchedCall> batchedCalls)
+      throws IOException
+  {
+    final JsonGenerator jsonGenerator = objectMapper.getFactory().createGenerator(outputStream);
+    jsonGenerator.writeStartObject();
+    jsonGenerator.writeArrayFieldStart("requests");
+    for (int index = 0; index < batchedCalls.size(); index++)
+    {
+      final BatchedCall batchedCall = batchedCalls.get(index);
+      jsonGenerator.writeStartObject();
+      jsonGenerator.writeStringField("id", Integer.toString(index));
+      jsonGenerator.writeStringField("method", "GET");
+      jsonGenerator.writeStringField("uri", batchedCall.uri);
+      if (batchedCall.headers != null && batchedCall.headers.isEmpty() == false)
+      {
+        jsonGenerator.writeObjectFieldStart("headers");
+        for (Entry<String, String> header : batchedCall.headers.entrySet())
+        {
+          jsonGenerator.writeStringField(header.getKey(), header.getValue());
+        }
+        jsonGenerator.writeEndObject();
+      }
+      jsonGenerator.writeEndObject();
+    }
+    jsonGenerator.writeEndArray();
+    jsonGenerator.writeEndObject();
+    jsonGenerator.flush();
+  }
+
+  private void readResponses(ObjectMapper objectMapper, InputStream inputStream, List<BatchedCall> batchedCalls)
+      throws IOException
+  {
+    final JsonParser jsonParser = objectMapper.getFactory().createParser(inputStream);
+    if (jsonParser.nextToken() != JsonToken.START_OBJECT)
+    {
+      throw new IOException("The batch response is not a JSON object");
+    }
+    while (jsonParser.nextToken() == JsonToken.FIELD_NAME)
+    {
+      final String fieldName = jsonParser.getCurrentName();
+      final JsonToken token = jsonParser.nextToken();
+      if ("responses".equals(fieldName) == true && token == JsonToken.START_ARRAY)
+      {
+        while (jsonParser.nextToken() == JsonToken.START_OBJECT)
+        {
+          readResponse(objectMapper, jsonParser, batchedCalls);
+        }
+      }
+      else
+      {
+        jsonParser.skipChildren();
+      }
+    }
+  }
+
+  private void readResponse(ObjectMapper objectMapper, JsonParser jsonParser, List<BatchedCall> batchedCalls)
+      throws IOException
+  {
+    BatchedCall batchedCall = null;
+    int statusCode = HttpURLConnection.HTTP_OK;
+    // The fields may come in any order, hence the body is kept as a tree until the response identifier is known
+    JsonNode bodyNode = null;
+    while (jsonParser.nextToken() == JsonToken.FIELD_NAME)
+    {
+      final String fieldName = jsonParser.getCurrentName();
+      jsonParser.nextToken();
+      if ("id".equals(fieldName) == true)
+      {
+        batchedCall = getBatchedCall(batchedCalls, jsonParser.getValueAsString());
+      }
+      else if ("status".equals(fieldName) == true)
+      {
+        statusCode = jsonParser.getValueAsInt();
+      }
+      else if ("body".equals(fieldName) == true)
+      {
+        bodyNode = objectMapper.readTree(jsonParser);
+      }
+      else
+      {
+        jsonParser.skipChildren();
+      }
+    }
+    if (batchedCall == null)
+    {
+      return;
+    }
+    if (statusCode < 200 || statusCode >= 300)
+    {
+      batchedCall.complete(null, new CallException("The batched request to '" + batchedCall.uri + "' failed with the status code " + statusCode, statusCode));
+      return;
+    }
+    try
+    {
+      batchedCall.complete(bodyNode == null ? null : caller.jacksonParser.deserializeJson(bodyNode, batchedCall.javaType), null);
+    }
+    catch (JacksonParsingException exception)
+    {
+      batchedCall.complete(null, exception);
+    }
+  }
+
+  private static BatchedCall getBatchedCall(List<BatchedCall> batchedCalls, String identifier)
+  {
+    try
+    {
+      final int index = Integer.parseInt(identifier);
+      return index >= 0 && index < batchedCalls.size() ? batchedCalls.get(index) : null;
+    }
+    catch (NumberFormatException exception)
+    {
+      return null;
+    }
+  }
+
+  private static void fail(List<BatchedCall> batchedCalls, CallException exception)
+  {
+    for (BatchedCall batchedCall : batchedCalls)
+    {
+      batchedCall.complete(null, exception);
+    }
+  }
+
+}
@@ -0,0 +1,173 @@
+// The MIT License (MIT)
+//
+// Copyright (c) 2017 Smart&Soft
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+// SOFTWARE.
+
+package com.smartnsoft.droid4me.ext.ws;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CountDownLatch;
+
+import com.smartnsoft.droid4me.ext.ws.JacksonURLConnectionWebServiceCaller.Call;
+import com.smartnsoft.droid4me.log.Logger;
+import com.smartnsoft.droid4me.log.LoggerFactory;
+import com.smartnsoft.droid4me.ws.WebServiceClient.CallException;
+
+/**
+ * Makes sure that identical calls which are run concurrently are only executed once: the first one is actually executed, and the other ones
+ * wait for its outcome, which is shared among all of them.
+ * <p>
+ * Caution: since the same result instance is handed to every waiter, the business objects returned by coalesced calls should not be modified.
+ * </p>
+ *
+ * @since 2026.10.19
+ */
+public final class RequestCoalescer
+{
+
+  private static final class InFlightCall
+  {
+
+    private final CountDownLatch latch = new CountDownLatch(1);
+
+    private int waitersCount;
+
+    private Object result;
+
+    private Throwable throwable;
+
+  }
+
+  private static final Logger log = LoggerFactory.getInstance(RequestCoalescer.class);
+
+  private final Map<String, InFlightCall> inFlightCalls = new HashMap<String, InFlightCall>();
+
+  /**
+   * Computes the key which identifies a call: two calls with the same key are considered identical.
+   *
+   * @param verb                the HTTP method
+   * @param uri                 the full URI, including the query parameters
+   * @param headers             the request headers, may be {@code null}
+   * @param relevantHeaderNames the names of the headers which have an influence on the response, the other ones being ignored
+   * @return a key which is suitable for the {@link #execute(String, Call)} method
+   */
+  public static String computeKey(String verb, String uri, Map<String, String> headers, String... relevantHeaderNames)
+  {
+    final StringBuilder builder = new StringBuilder(verb).append(' ').append(uri);
+    if (headers != null && relevantHeaderNames != null)
+    {
+      // We sort the headers, so that their declaration order does not matter
+      final Map<String, String> sortedHeaders = new TreeMap<String, String>(String.CASE_INSENSITIVE_ORDER);
+      sortedHeaders.putAll(headers);
+      for (String headerName : relevantHeaderNames)
+      {
+        final String value = sortedHeaders.get(headerName);
+        if (value != null)
+        {
+          builder.append('\n').append(headerName.toLowerCase()).append(": ").append(value);
+        }
+      }
+    }
+    return builder.toString();
+  }
+
+  /**
+   * Executes the provided call, unless an identical call is already in flight, in which case the current thread waits for its outcome.
+   *
+   * @param key  the call identifier, computed through the {@link #computeKey(String, String, Map, String...)} method
+   * @param call the actual call
+   * @return the result of the call, which may have been executed by another thread
+   * @throws CallException if the call failed, or if the current thread has been interrupted while waiting
+   */
+  @SuppressWarnings("unchecked")
+  public <ResultType> ResultType execute(String key, Call<ResultType> call)
+      throws CallException
+  {
+    final InFlightCall inFlightCall;
+    final boolean isLeader;
+    synchronized (inFlightCalls)
+    {
+      final InFlightCall existingCall = inFlightCalls.get(key);
+      isLeader = existingCall == null;
+      inFlightCall = isLeader == true ? new InFlightCall() : existingCall;
+      if (isLeader == true)
+      {
+        inFlightCalls.put(key, inFlightCall);
+      }
+      else
+      {
+        inFlightCall.waitersCount++;
+      }
+    }
+
+    if (isLeader == true)
+    {
+      try
+      {
+        inFlightCall.result = call.call();
+      }
+      catch (Throwable throwable)
+      {
+        inFlightCall.throwable = throwable;
+      }
+      finally
+      {
+        synchronized (inFlightCalls)
+        {
+          inFlightCalls.remove(key);
+          if (inFlightCall.waitersCount > 0 && log.isDebugEnabled())
+          {
+            log.debug("Shared the outcome of the call '" + DiskResponseCache.describe(key) + "' with " + inFlightCall.waitersCount + " other caller(s)");
+          }
+        }
+        inFlightCall.latch.countDown();
+      }
+    }
+    else
+    {
+      try
+      {
+        inFlightCall.latch.await();
+      }
+      catch (InterruptedException exception)
+      {
+        Thread.currentThread().interrupt();
+        throw new CallException("Interrupted while waiting for an identical call", exception);
+      }
+    }
+
+    if (inFlightCall.throwable instanceof CallException)
+    {
+      throw (CallException) inFlightCall.throwable;
+    }
+    else if (inFlightCall.throwable instanceof RuntimeException)
+    {
+      throw (RuntimeException) inFlightCall.throwable;
+    }
+    else if (inFlightCall.throwable instanceof Error)
+    {
+      throw (Error) inFlightCall.throwable;
+    }
+    return (ResultType) inFlightCall.result;
+  }
+
+}
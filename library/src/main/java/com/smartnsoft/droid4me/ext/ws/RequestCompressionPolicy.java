@@ -0,0 +1,235 @@
+// The MIT License (MIT)
+//
+// Copyright (c) 2017 Smart&Soft
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+// SOFTWARE.
+
+package com.smartnsoft.droid4me.ext.ws;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import com.smartnsoft.droid4me.log.Logger;
+import com.smartnsoft.droid4me.log.LoggerFactory;
+
+/**
+ * Decides, per endpoint, whether the request bodies are gzip-encoded, depending on their size: compressing a body is worth it only when the
+ * time saved on the uplink exceeds the time spent compressing it, which depends on how well the bodies of the endpoint compress, on the time
+ * the device needs for compressing a byte, and on the uplink throughput.
+ * <p>
+ * Those three values are measured on every request and averaged, and the size threshold above which the bodies are compressed is derived from
+ * them. As long as an endpoint has not been measured, its bodies are compressed above the minimum threshold. When the compression is not worth
+ * it anymore for an endpoint, one request out of the probing period is compressed anyway, so that the estimates keep up with the network
+ * conditions. The bytes saved through the compression are accounted per endpoint.
+ * </p>
+ * <p>
+ * The server must support the "Content-Encoding" request header for the endpoints this policy is used with.
+ * </p>
+ *
+ * @see JacksonURLConnectionWebServiceCaller#setRequestCompressionPolicy(RequestCompressionPolicy)
+ * @since 2026.10.19
+ */
+public final class RequestCompressionPolicy
+{
+
+  private static final class EndpointCompression
+  {
+
+    /**
+     * The compressed size divided by the raw size, or {@code -1} when not measured yet.
+     */
+    private double ratio = -1;
+
+    private double compressionNanosecondsPerByte = -1;
+
+    private double uplinkBytesPerMillisecond = -1;
+
+    private long requestsCount;
+
+    private long compressedRequestsCount;
+
+    private long savedBytes;
+
+  }
+
+  public static final long DEFAULT_MINIMUM_THRESHOLD_IN_BYTES = 1024;
+
+  public static final long DEFAULT_MAXIMUM_THRESHOLD_IN_BYTES = 256 * 1024;
+
+  public static final int DEFAULT_PROBING_PERIOD = 20;
+
+  /**
+   * The uplink throughput assumed before it has been measured, which is the one of a poor mobile network.
+   */
+  public static final double DEFAULT_UPLINK_BYTES_PER_MILLISECOND = 50;
+
+  /**
+   * The size of the gzip header and trailer.
+   */
+  private static final int GZIP_OVERHEAD_IN_BYTES = 18;
+
+  /**
+   * The weight of a new measure in the averages.
+   */
+  private static final double SMOOTHING_FACTOR = 0.2;
+
+  /**
+   * Below that size, the sending duration is dominated by the latency, and does not reveal the uplink throughput.
+   */
+  private static final long MINIMUM_THROUGHPUT_SAMPLE_IN_BYTES = 8 * 1024;
+
+  private static final Logger log = LoggerFactory.getInstance(RequestCompressionPolicy.class);
+
+  private final long minimumThresholdInBytes;
+
+  private final long maximumThresholdInBytes;
+
+  private final int probingPeriod;
+
+  private final Map<String, EndpointCompression> endpoints = new HashMap<String, EndpointCompression>();
+
+  public RequestCompressionPolicy()
+  {
+    this(RequestCompressionPolicy.DEFAULT_MINIMUM_THRESHOLD_IN_BYTES, RequestCompressionPolicy.DEFAULT_MAXIMUM_THRESHOLD_IN_BYTES, RequestCompressionPolicy.DEFAULT_PROBING_PERIOD);
+  }
+
+  /**
+   * @param minimumThresholdInBytes the size below which a body is never compressed
+   * @param maximumThresholdInBytes when the computed threshold exceeds that size, the bodies of the endpoint are not compressed at all, which
+   *                                also bounds the memory used for buffering the beginning of the bodies
+   * @param probingPeriod           the number of requests after which a body is compressed anyway, when the compression is disabled for an
+   *                                endpoint
+   */
+  public RequestCompressionPolicy(long minimumThresholdInBytes, long maximumThresholdInBytes, int probingPeriod)
+  {
+    this.minimumThresholdInBytes = minimumThresholdInBytes;
+    this.maximumThresholdInBytes = maximumThresholdInBytes;
+    this.probingPeriod = probingPeriod;
+  }
+
+  /**
+   * @param endpoint the endpoint, as computed by the {@link JacksonURLConnectionWebServiceCaller#computeEndpoint(String)} method
+   * @return the size above which the request bodies of the endpoint are compressed, or {@link Long#MAX_VALUE} if they are not compressed
+   */
+  public synchronized long getThresholdInBytes(String endpoint)
+  {
+    final EndpointCompression compression = endpoints.get(endpoint);
+    if (compression == null || compression.ratio < 0)
+    {
+      return minimumThresholdInBytes;
+    }
+    final double uplinkBytesPerNanosecond = (compression.uplinkBytesPerMillisecond < 0 ? RequestCompressionPolicy.DEFAULT_UPLINK_BYTES_PER_MILLISECOND : compression.uplinkBytesPerMillisecond) / 1000000d;
+    // The time saved on the uplink for each byte of the body, minus the time spent compressing it
+    final double gainNanosecondsPerByte = (1d - compression.ratio) / uplinkBytesPerNanosecond - compression.compressionNanosecondsPerByte;
+    if (gainNanosecondsPerByte <= 0)
+    {
+      return Long.MAX_VALUE;
+    }
+    final double threshold = (RequestCompressionPolicy.GZIP_OVERHEAD_IN_BYTES / uplinkBytesPerNanosecond) / gainNanosecondsPerByte;
+    return threshold > maximumThresholdInBytes ? Long.MAX_VALUE : Math.max(minimumThresholdInBytes, (long) threshold);
+  }
+
+  /**
+   * @return the number of bytes which have not been sent thanks to the compression of the request bodies of the endpoint
+   */
+  public synchronized long getSavedBytes(String endpoint)
+  {
+    final EndpointCompression compression = endpoints.get(endpoint);
+    return compression == null ? 0 : compression.savedBytes;
+  }
+
+  /**
+   * @return the number of bytes which have not been sent thanks to the compression, all endpoints included
+   */
+  public synchronized long getSavedBytes()
+  {
+    long savedBytes = 0;
+    for (EndpointCompression compression : endpoints.values())
+    {
+      savedBytes += compression.savedBytes;
+    }
+    return savedBytes;
+  }
+
+  public synchronized long getCompressedRequestsCount(String endpoint)
+  {
+    final EndpointCompression compression = endpoints.get(endpoint);
+    return compression == null ? 0 : compression.compressedRequestsCount;
+  }
+
+  public synchronized void clear()
+  {
+    endpoints.clear();
+  }
+
+  /**
+   * @return the threshold to use for the next request of the endpoint, which takes the probing into account
+   */
+  synchronized long computeThresholdInBytes(String endpoint)
+  {
+    final long threshold = getThresholdInBytes(endpoint);
+    final EndpointCompression compression = endpoints.get(endpoint);
+    if (threshold == Long.MAX_VALUE && compression != null && compression.requestsCount % probingPeriod == probingPeriod - 1)
+    {
+      return minimumThresholdInBytes;
+    }
+    return threshold;
+  }
+
+  /**
+   * Records the measures of a request body which has been sent.
+   *
+   * @param rawBytes                       the size of the body before its encoding
+   * @param sentBytes                      the number of bytes actually sent
+   * @param compressionDurationInNanoseconds the time spent compressing the body
+   * @param sendingDurationInNanoseconds   the time elapsed between the opening of the connection stream and the reception of the response status
+   */
+  synchronized void onRequestSent(String endpoint, boolean compressed, long rawBytes, long sentBytes,
+      long compressionDurationInNanoseconds, long sendingDurationInNanoseconds)
+  {
+    EndpointCompression compression = endpoints.get(endpoint);
+    if (compression == null)
+    {
+      compression = new EndpointCompression();
+      endpoints.put(endpoint, compression);
+    }
+    compression.requestsCount++;
+    if (compressed == true && rawBytes > 0)
+    {
+      compression.compressedRequestsCount++;
+      compression.savedBytes += rawBytes - sentBytes;
+      compression.ratio = smooth(compression.ratio, (double) sentBytes / rawBytes);
+      compression.compressionNanosecondsPerByte = smooth(compression.compressionNanosecondsPerByte, (double) compressionDurationInNanoseconds / rawBytes);
+      if (log.isDebugEnabled())
+      {
+        log.debug("Saved " + (rawBytes - sentBytes) + " byte(s) out of " + rawBytes + " through the compression of a request body for the endpoint '" + endpoint + "'");
+      }
+    }
+    if (sentBytes >= RequestCompressionPolicy.MINIMUM_THROUGHPUT_SAMPLE_IN_BYTES && sendingDurationInNanoseconds > 0)
+    {
+      compression.uplinkBytesPerMillisecond = smooth(compression.uplinkBytesPerMillisecond, sentBytes * 1000000d / sendingDurationInNanoseconds);
+    }
+  }
+
+  private static double smooth(double average, double sample)
+  {
+    return average < 0 ? sample : average + RequestCompressionPolicy.SMOOTHING_FACTOR * (sample - average);
+  }
+
+}
@@ -0,0 +1,298 @@
+// The MIT License (MIT)
+//
+// Copyright (c) 2017 Smart&Soft
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+// SOFTWARE.
+
+package com.smartnsoft.droid4me.ext.ws;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+import com.smartnsoft.droid4me.ext.ws.JacksonURLConnectionWebServiceCaller.Call;
+import com.smartnsoft.droid4me.ws.WebServiceClient.CallException;
+
+/**
+ * Limits the number of concurrent calls per host, and grants the connection slots according to the calls priority.
+ * <p>
+ * The calls are attached to an owner, typically the {@link com.smartnsoft.droid4me.app.Smartable} entity which needs their result: when an owner
+ * is not visible anymore, its pending calls are demoted to the {@link Priority#Background} priority, and they recover their initial priority as
+ * soon as the owner becomes visible again. The last slot of every host is reserved to the calls which do not have the
+ * {@link Priority#Background} priority, so that a background synchronization cannot starve the visible screen. When the
+ * {@link NetworkQualityEstimator} reports a {@link NetworkQualityEstimator.Quality#Poor} network, the calls which do not have the
+ * {@link Priority#Visible} priority are run one at a time per host, so that they do not compete for the scarce bandwidth.
+ * </p>
+ *
+ * @see JacksonURLConnectionWebServiceCaller#runScheduled(String, Object, Priority, Call)
+ * @since 2026.10.19
+ */
+public final class RequestScheduler
+{
+
+  /**
+   * The priority classes, from the highest to the lowest.
+   */
+  public enum Priority
+  {
+    /**
+     * The call is needed by the screen the end-user is looking at.
+     */
+    Visible,
+    /**
+     * The call anticipates a need of the end-user.
+     */
+    Prefetch,
+    /**
+     * The call is not related to the user interface.
+     */
+    Background
+  }
+
+  private static final class Ticket
+  {
+
+    private final String host;
+
+    private final Object owner;
+
+    private final Priority requestedPriority;
+
+    private final long sequence;
+
+    private Ticket(String host, Object owner, Priority requestedPriority, long sequence)
+    {
+      this.host = host;
+      this.owner = owner;
+      this.requestedPriority = requestedPriority;
+      this.sequence = sequence;
+    }
+
+  }
+
+  public static final int DEFAULT_MAXIMUM_CONCURRENT_CALLS_PER_HOST = 4;
+
+  private static volatile RequestScheduler instance;
+
+  // We accept the "out-of-order writes" case
+  public static RequestScheduler getInstance()
+  {
+    if (instance == null)
+    {
+      synchronized (RequestScheduler.class)
+      {
+        if (instance == null)
+        {
+          final RequestScheduler requestScheduler = new RequestScheduler(RequestScheduler.DEFAULT_MAXIMUM_CONCURRENT_CALLS_PER_HOST);
+          requestScheduler.setNetworkQualityEstimator(NetworkQualityEstimator.getInstance());
+          instance = requestScheduler;
+        }
+      }
+    }
+    return instance;
+  }
+
+  private final int maximumConcurrentCallsPerHost;
+
+  private final Map<String, Integer> runningCallsCount = new HashMap<String, Integer>();
+
+  private final List<Ticket> waitingTickets = new ArrayList<Ticket>();
+
+  private final Set<Object> hiddenOwners = Collections.newSetFromMap(new WeakHashMap<Object, Boolean>());
+
+  private long sequence;
+
+  private final NetworkQualityEstimator.QualityListener qualityListener = new NetworkQualityEstimator.QualityListener()
+  {
+    @Override
+    public void onQualityChanged(NetworkQualityEstimator.Quality previousQuality, NetworkQualityEstimator.Quality quality)
+    {
+      synchronized (RequestScheduler.this)
+      {
+        // Some waiting calls may be granted a slot
+        RequestScheduler.this.notifyAll();
+      }
+    }
+  };
+
+  private NetworkQualityEstimator networkQualityEstimator;
+
+  /**
+   * @param maximumConcurrentCallsPerHost the maximum number of calls run at the same time against a single host
+   */
+  public RequestScheduler(int maximumConcurrentCallsPerHost)
+  {
+    this.maximumConcurrentCallsPerHost = Math.max(1, maximumConcurrentCallsPerHost);
+  }
+
+  /**
+   * Runs the provided call as soon as a slot is available for its host and no call with a higher priority is waiting for it.
+   *
+   * @param uri      the full URI of the call, used for determining its host
+   * @param owner    the entity which needs the call result, may be {@code null}
+   * @param priority the call priority
+   * @param call     the actual call
+   * @return the call result
+   * @throws CallException if the call failed, or if the current thread has been interrupted while waiting for a slot
+   */
+  public <ResultType> ResultType execute(String uri, Object owner, Priority priority, Call<ResultType> call)
+      throws CallException
+  {
+    final Ticket ticket = acquire(computeHost(uri), owner, priority);
+    try
+    {
+      return call.call();
+    }
+    finally
+    {
+      release(ticket);
+    }
+  }
+
+  /**
+   * Indicates whether an owner is currently visible: the pending calls of a hidden owner are handled with the {@link Priority#Background}
+   * priority.
+   *
+   * @param owner   the entity passed to the {@link #execute(String, Object, Priority, Call)} method
+   * @param visible whether the owner is visible
+   */
+  public synchronized void setOwnerVisible(Object owner, boolean visible)
+  {
+    final boolean changed = visible == true ? hiddenOwners.remove(owner) : hiddenOwners.add(owner);
+    if (changed == true)
+    {
+      notifyAll();
+    }
+  }
+
+  /**
+   * @param networkQualityEstimator the estimator which is taken into account for granting the slots, may be {@code null} ; the
+   *                                {@link #getInstance() shared instance} uses the {@link NetworkQualityEstimator#getInstance() shared estimator},
+   *                                whatever the estimator set on the callers which use it
+   */
+  public synchronized void setNetworkQualityEstimator(NetworkQualityEstimator networkQualityEstimator)
+  {
+    if (this.networkQualityEstimator != null)
+    {
+      this.networkQualityEstimator.removeQualityListener(qualityListener);
+    }
+    this.networkQualityEstimator = networkQualityEstimator;
+    if (networkQualityEstimator != null)
+    {
+      networkQualityEstimator.addQualityListener(qualityListener);
+    }
+    notifyAll();
+  }
+
+  public synchronized NetworkQualityEstimator getNetworkQualityEstimator()
+  {
+    return networkQualityEstimator;
+  }
+
+  private synchronized Ticket acquire(String host, Object owner, Priority priority)
+      throws CallException
+  {
+    final Ticket ticket = new Ticket(host, owner, priority, sequence++);
+    waitingTickets.add(ticket);
+    try
+    {
+      while (canRun(ticket) == false)
+      {
+        wait();
+      }
+    }
+    catch (InterruptedException exception)
+    {
+      waitingTickets.remove(ticket);
+      notifyAll();
+      Thread.currentThread().interrupt();
+      throw new CallException("Interrupted while waiting for a connection slot", exception);
+    }
+    waitingTickets.remove(ticket);
+    runningCallsCount.put(host, getRunningCallsCount(host) + 1);
+    return ticket;
+  }
+
+  private synchronized void release(Ticket ticket)
+  {
+    runningCallsCount.put(ticket.host, getRunningCallsCount(ticket.host) - 1);
+    notifyAll();
+  }
+
+  private boolean canRun(Ticket ticket)
+  {
+    final Priority priority = getEffectivePriority(ticket);
+    final int slotsCount;
+    if (priority != Priority.Visible && networkQualityEstimator != null && networkQualityEstimator.getQuality() == NetworkQualityEstimator.Quality.Poor)
+    {
+      slotsCount = 1;
+    }
+    else
+    {
+      slotsCount = priority == Priority.Background ? Math.max(1, maximumConcurrentCallsPerHost - 1) : maximumConcurrentCallsPerHost;
+    }
+    if (getRunningCallsCount(ticket.host) >= slotsCount)
+    {
+      return false;
+    }
+    for (Ticket otherTicket : waitingTickets)
+    {
+      if (otherTicket != ticket && otherTicket.host.equals(ticket.host) == true)
+      {
+        final int comparison = getEffectivePriority(otherTicket).compareTo(priority);
+        if (comparison < 0 || (comparison == 0 && otherTicket.sequence < ticket.sequence))
+        {
+          // Another call comes first
+          return false;
+        }
+      }
+    }
+    return true;
+  }
+
+  private Priority getEffectivePriority(Ticket ticket)
+  {
+    return ticket.owner != null && hiddenOwners.contains(ticket.owner) == true ? Priority.Background : ticket.requestedPriority;
+  }
+
+  private int getRunningCallsCount(String host)
+  {
+    final Integer count = runningCallsCount.get(host);
+    return count == null ? 0 : count;
+  }
+
+  private static String computeHost(String uri)
+  {
+    try
+    {
+      final URI theUri = new URI(uri);
+      return theUri.getHost() + ":" + theUri.getPort();
+    }
+    catch (Exception exception)
+    {
+      return uri;
+    }
+  }
+
+}
@@ -0,0 +1,159 @@
+// The MIT License (MIT)
+//
+// Copyright (c) 2017 Smart&Soft
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+// SOFTWARE.
+
+package com.smartnsoft.droid4me.ext.ws;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import android.os.SystemClock;
+
+import com.smartnsoft.droid4me.ext.ws.JacksonURLConnectionWebServiceCaller.Call;
+import com.smartnsoft.droid4me.log.Logger;
+import com.smartnsoft.droid4me.log.LoggerFactory;
+import com.smartnsoft.droid4me.ws.WebServiceClient.CallException;
+
+/**
+ * Protects the backend from the storms of identical calls, typically triggered by a user who repeatedly taps a "retry" or "refresh" button:
+ * an identical call which is in flight is joined, as with the {@link RequestCoalescer}, and the outcome of a call which succeeded less than the
+ * minimum interval ago is reused instead of running the call again.
+ * <p>
+ * The failures are not reused, so that a call which failed can be retried immediately. Caution: since the same result instance is handed to
+ * several callers, the business objects returned by throttled calls should not be modified.
+ * </p>
+ *
+ * @see JacksonURLConnectionWebServiceCaller#setRequestThrottler(RequestThrottler)
+ * @since 2026.10.19
+ */
+public final class RequestThrottler
+{
+
+  private static final class Outcome
+  {
+
+    private final Object result;
+
+    /**
+     * The {@link SystemClock#elapsedRealtime()} of the success, which is not affected by the changes of the wall clock.
+     */
+    private final long timestamp;
+
+    private Outcome(Object result, long timestamp)
+    {
+      this.result = result;
+      this.timestamp = timestamp;
+    }
+
+  }
+
+  public static final long DEFAULT_MINIMUM_INTERVAL_IN_MILLISECONDS = 2000;
+
+  /**
+   * The number of outcomes kept, the least recently used ones being forgotten first.
+   */
+  private static final int MAXIMUM_OUTCOMES_COUNT = 32;
+
+  private static final Logger log = LoggerFactory.getInstance(RequestThrottler.class);
+
+  private final long minimumIntervalInMilliseconds;
+
+  private final RequestCoalescer requestCoalescer = new RequestCoalescer();
+
+  private final Map<String, Outcome> outcomes = new LinkedHashMap<String, Outcome>(16, 0.75f, true)
+  {
+    private static final long serialVersionUID = 1L;
+
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<String, Outcome> eldest)
+    {
+      return size() > RequestThrottler.MAXIMUM_OUTCOMES_COUNT;
+    }
+  };
+
+  public RequestThrottler()
+  {
+    this(RequestThrottler.DEFAULT_MINIMUM_INTERVAL_IN_MILLISECONDS);
+  }
+
+  /**
+   * @param minimumIntervalInMilliseconds the minimum duration between two executions of identical calls
+   */
+  public RequestThrottler(long minimumIntervalInMilliseconds)
+  {
+    this.minimumIntervalInMilliseconds = minimumIntervalInMilliseconds;
+  }
+
+  /**
+   * Executes the provided call, unless an identical call is already in flight or has succeeded less than the minimum interval ago, in which
+   * case its outcome is returned.
+   *
+   * @param key  the call identifier, computed through the {@link RequestCoalescer#computeKey(String, String, Map, String...)} method
+   * @param call the actual call
+   * @return the result of the call, which may have been obtained by another call
+   * @throws CallException if the call failed, or if the current thread has been interrupted while waiting for an identical call
+   */
+  @SuppressWarnings("unchecked")
+  public <ResultType> ResultType execute(final String key, final Call<ResultType> call)
+      throws CallException
+  {
+    synchronized (outcomes)
+    {
+      final Outcome outcome = outcomes.get(key);
+      final long age = outcome == null ? -1 : SystemClock.elapsedRealtime() - outcome.timestamp;
+      if (outcome != null && age < minimumIntervalInMilliseconds)
+      {
+        if (log.isDebugEnabled())
+        {
+          log.debug("Reused the outcome of the call '" + DiskResponseCache.describe(key) + "', which succeeded " + age + " ms ago");
+        }
+        return (ResultType) outcome.result;
+      }
+    }
+    return requestCoalescer.execute(key, new Call<ResultType>()
+    {
+      @Override
+      public ResultType call()
+          throws CallException
+      {
+        final ResultType result = call.call();
+        synchronized (outcomes)
+        {
+          outcomes.put(key, new Outcome(result, SystemClock.elapsedRealtime()));
+        }
+        return result;
+      }
+    });
+  }
+
+  /**
+   * Forgets the outcomes of the calls, so that the next calls are actually executed, which is relevant when the user explicitly asks for fresh
+   * data.
+   */
+  public void clear()
+  {
+    synchronized (outcomes)
+    {
+      outcomes.clear();
+    }
+  }
+
+}
@@ -0,0 +1,639 @@
+// The MIT License (MIT)
+//
+// Copyright (c) 2017 Smart&Soft
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+// SOFTWARE.
+
+package com.smartnsoft.droid4me.ext.ws;
+
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
+
+import com.smartnsoft.droid4me.ext.json.jackson.JacksonExceptions.JacksonParsingException;
+import com.smartnsoft.droid4me.ext.json.jackson.JacksonParser;
+import com.smartnsoft.droid4me.log.Logger;
+import com.smartnsoft.droid4me.log.LoggerFactory;
+
+import com.fasterxml.jackson.databind.JavaType;
+
+/**
+ * A persistent store of the last response of many requests, designed for the offline snapshots: instead of a file per response, which costs an
+ * inode and a synchronization per write, the responses are appended to a few segment files, which are memory-mapped, so that a write is a mere
+ * memory copy, the operating system being in charge of flushing the pages.
+ * <p>
+ * Each record holds the request key, the response headers and the raw response body, along with a checksum, so that a record torn by a process
+ * death is detected and ignored when the journal is opened. An in-memory index tells where the latest record of each key lies ; a record
+ * superseded by a newer one for the same key, or removed, is garbage, which is reclaimed by the compaction: the live records of the segments
+ * which are mostly made of garbage are appended again, and those segments are deleted. The number of kept responses is bounded, the oldest ones
+ * being evicted first.
+ * </p>
+ * <p>
+ * The bodies are exposed as read-only views on the mapped segments, which are bound by the {@link JacksonParser} without being copied into the
+ * heap. Those views remain valid after the compaction of their segment.
+ * </p>
+ *
+ * @since 2026.10.19
+ */
+public final class ResponseJournal
+{
+
+  /**
+   * A response read from the journal.
+   */
+  public static final class Entry
+  {
+
+    public final String key;
+
+    /**
+     * The time the response was appended, in milliseconds since the epoch.
+     */
+    public final long timestamp;
+
+    public final Map<String, String> headers;
+
+    private final ByteBuffer body;
+
+    private Entry(String key, long timestamp, Map<String, String> headers, ByteBuffer body)
+    {
+      this.key = key;
+      this.timestamp = timestamp;
+      this.headers = headers;
+      this.body = body;
+    }
+
+    /**
+     * @return a read-only view on the body, which is not copied
+     */
+    public ByteBuffer getBody()
+    {
+      return body.duplicate();
+    }
+
+  }
+
+  private static final class Segment
+  {
+
+    private final int number;
+
+    private final File file;
+
+    private final MappedByteBuffer buffer;
+
+    private int position;
+
+    private int liveBytes;
+
+    private Segment(int number, File file, MappedByteBuffer buffer)
+    {
+      this.number = number;
+      this.file = file;
+      this.buffer = buffer;
+    }
+
+  }
+
+  /**
+   * Where the latest record of a key lies.
+   */
+  private static final class Location
+  {
+
+    private final Segment segment;
+
+    private final int offset;
+
+    private final int length;
+
+    private Location(Segment segment, int offset, int length)
+    {
+      this.segment = segment;
+      this.offset = offset;
+      this.length = length;
+    }
+
+  }
+
+  public static final int DEFAULT_SEGMENT_SIZE_IN_BYTES = 4 * 1024 * 1024;
+
+  public static final int DEFAULT_MAXIMUM_ENTRIES_COUNT = 256;
+
+  private static final int MAGIC = 0x524A4E4C;
+
+  /**
+   * The magic number, the key, headers and body lengths, the timestamp and the checksum.
+   */
+  private static final int RECORD_HEADER_SIZE = 4 + 4 + 4 + 4 + 8 + 8;
+
+  /**
+   * A segment whose ratio of live bytes is below that value is compacted.
+   */
+  private static final float COMPACTION_LIVE_RATIO = 0.5f;
+
+  private static final String SEGMENT_PREFIX = "journal-";
+
+  private static final String SEGMENT_EXTENSION = ".segment";
+
+  private static final Logger log = LoggerFactory.getInstance(ResponseJournal.class);
+
+  private final File directory;
+
+  private final int segmentSizeInBytes;
+
+  private final int maximumEntriesCount;
+
+  private final List<Segment> segments = new ArrayList<Segment>();
+
+  /**
+   * The locations of the latest records, the oldest ones first.
+   */
+  private final LinkedHashMap<String, Location> index = new LinkedHashMap<String, Location>();
+
+  public ResponseJournal(File directory)
+      throws IOException
+  {
+    this(directory, ResponseJournal.DEFAULT_SEGMENT_SIZE_IN_BYTES, ResponseJournal.DEFAULT_MAXIMUM_ENTRIES_COUNT);
+  }
+
+  /**
+   * Opens the journal, and indexes its existing records.
+   *
+   * @param directory           the directory which holds the segment files, and which is created if necessary
+   * @param segmentSizeInBytes  the size of a segment file ; a record which is larger is written to a segment of its own
+   * @param maximumEntriesCount the maximum number of responses kept
+   */
+  public ResponseJournal(File directory, int segmentSizeInBytes, int maximumEntriesCount)
+      throws IOException
+  {
+    this.directory = directory;
+    this.segmentSizeInBytes = segmentSizeInBytes;
+    this.maximumEntriesCount = maximumEntriesCount;
+    if (directory.exists() == false && directory.mkdirs() == false)
+    {
+      throw new IOException("Could not create the journal directory '" + directory.getAbsolutePath() + "'");
+    }
+    open();
+  }
+
+  /**
+   * Appends a response, which supersedes the previous response with the same key.
+   *
+   * @param key     the request key, typically computed through the {@link RequestCoalescer#computeKey(String, String, Map, String...)} method
+   * @param headers the response headers worth keeping, may be {@code null}
+   * @param body    the raw response body
+   * @return the appended response
+   */
+  public synchronized Entry put(String key, Map<String, String> headers, byte[] body)
+      throws IOException
+  {
+    final byte[] keyBytes = key.getBytes("UTF-8");
+    final byte[] headersBytes = encodeHeaders(headers);
+    final long timestamp = System.currentTimeMillis();
+    final Location location = append(keyBytes, headersBytes, body, 0, body.length, timestamp);
+    supersede(key, location);
+    evictAndCompact();
+    return readEntry(key, location);
+  }
+
+  /**
+   * @return the latest response with the given key, or {@code null} if there is none
+   */
+  public synchronized Entry get(String key)
+  {
+    final Location location = index.get(key);
+    return location == null ? null : readEntry(key, location);
+  }
+
+  /**
+   * Binds the body of the latest response with the given key straight from the mapped segment.
+   *
+   * @return the bound body, or {@code null} if there is no response with that key
+   */
+  public <ContentType> ContentType read(String key, JacksonParser jacksonParser, JavaType javaType)
+      throws JacksonParsingException
+  {
+    final Entry entry = get(key);
+    return entry == null ? null : jacksonParser.<ContentType>deserializeJson(entry.body, javaType);
+  }
+
+  /**
+   * Removes the response with the given key.
+   */
+  public synchronized void remove(String key)
+      throws IOException
+  {
+    if (index.containsKey(key) == true)
+    {
+      appendTombstone(key);
+    }
+  }
+
+  public synchronized int getEntriesCount()
+  {
+    return index.size();
+  }
+
+  /**
+   * @return the keys of the kept responses, the oldest ones first
+   */
+  public synchronized List<String> getKeys()
+  {
+    return new ArrayList<String>(index.keySet());
+  }
+
+  /**
+   * Asks the operating system to write the modified pages of the segments to the storage, which is only required for surviving a power loss.
+   */
+  public synchronized void sync()
+  {
+    for (Segment segment : segments)
+    {
+      segment.buffer.force();
+    }
+  }
+
+  /**
+   * Compacts all the segments which hold some garbage, the active one excepted.
+   */
+  public synchronized void compact()
+      throws IOException
+  {
+    compact(1f);
+  }
+
+  private void open()
+      throws IOException
+  {
+    final File[] files = directory.listFiles(new FilenameFilter()
+    {
+      @Override
+      public boolean accept(File directory, String name)
+      {
+        return name.startsWith(ResponseJournal.SEGMENT_PREFIX) == true && name.endsWith(ResponseJournal.SEGMENT_EXTENSION) == true;
+      }
+    });
+    if (files != null)
+    {
+      Arrays.sort(files);
+      for (File file : files)
+      {
+        final String name = file.getName();
+        int number;
+        try
+        {
+          number = Integer.parseInt(name.substring(ResponseJournal.SEGMENT_PREFIX.length(), name.length() - ResponseJournal.SEGMENT_EXTENSION.length()));
+        }
+        catch (NumberFormatException exception)
+        {
+          number = -1;
+        }
+        if (number < 0 || name.equals(computeSegmentFileName(number)) == false)
+        {
+          // This file has not been created by the journal
+          if (log.isWarnEnabled())
+          {
+            log.warn("Ignoring the file '" + name + "', which is not a segment of the response journal");
+          }
+          continue;
+        }
+        final Segment segment = new Segment(number, file, map(file, (int) file.length()));
+        segments.add(segment);
+        scan(segment);
+      }
+    }
+    if (log.isDebugEnabled())
+    {
+      log.debug("Opened the response journal in '" + directory.getAbsolutePath() + "' with " + index.size() + " response(s) in " + segments.size() + " segment(s)");
+    }
+  }
+
+  /**
+   * Indexes the records of a segment, and stops at the first record which is incomplete or corrupted.
+   */
+  private void scan(Segment segment)
+  {
+    final ByteBuffer buffer = segment.buffer;
+    int offset = 0;
+    while (offset + ResponseJournal.RECORD_HEADER_SIZE <= buffer.capacity() && buffer.getInt(offset) == ResponseJournal.MAGIC)
+    {
+      final int keyLength = buffer.getInt(offset + 4);
+      final int headersLength = buffer.getInt(offset + 8);
+      final int bodyLength = buffer.getInt(offset + 12);
+      final int dataLength = keyLength + headersLength + Math.max(0, bodyLength);
+      if (keyLength < 0 || headersLength < 0 || offset + ResponseJournal.RECORD_HEADER_SIZE + dataLength > buffer.capacity() || computeChecksum(buffer, offset + ResponseJournal.RECORD_HEADER_SIZE, dataLength) != buffer.getLong(offset + 24))
+      {
+        if (log.isWarnEnabled())
+        {
+          log.warn("Ignoring the corrupted tail of the journal segment '" + segment.file.getName() + "' at offset " + offset);
+        }
+        // The tail is erased, so that the leftovers of the corrupted record are not mistaken for a record once overwritten
+        for (int position = offset; position < buffer.capacity(); position++)
+        {
+          buffer.put(position, (byte) 0);
+        }
+        break;
+      }
+      final String key = decode(buffer, offset + ResponseJournal.RECORD_HEADER_SIZE, keyLength);
+      final int length = ResponseJournal.RECORD_HEADER_SIZE + dataLength;
+      if (bodyLength < 0)
+      {
+        supersede(key, null);
+      }
+      else
+      {
+        segment.liveBytes += length;
+        supersede(key, new Location(segment, offset, length));
+      }
+      offset += length;
+    }
+    segment.position = offset;
+  }
+
+  private Location append(byte[] keyBytes, byte[] headersBytes, byte[] body, int bodyOffset, int bodyLength,
+      long timestamp)
+      throws IOException
+  {
+    final int length = ResponseJournal.RECORD_HEADER_SIZE + keyBytes.length + headersBytes.length + bodyLength;
+    Segment segment = segments.isEmpty() == true ? null : segments.get(segments.size() - 1);
+    if (segment == null || segment.position + length > segment.buffer.capacity())
+    {
+      segment = createSegment(Math.max(segmentSizeInBytes, length));
+    }
+    final ByteBuffer buffer = segment.buffer.duplicate();
+    final int offset = segment.position;
+    buffer.position(offset + ResponseJournal.RECORD_HEADER_SIZE);
+    buffer.put(keyBytes).put(headersBytes);
+    if (body != null)
+    {
+      buffer.put(body, bodyOffset, bodyLength);
+    }
+    buffer.putInt(offset + 4, keyBytes.length);
+    buffer.putInt(offset + 8, headersBytes.length);
+    buffer.putInt(offset + 12, body == null ? -1 : bodyLength);
+    buffer.putLong(offset + 16, timestamp);
+    buffer.putLong(offset + 24, computeChecksum(buffer, offset + ResponseJournal.RECORD_HEADER_SIZE, length - ResponseJournal.RECORD_HEADER_SIZE));
+    // The magic number is written last, so that a record is only considered once complete
+    buffer.putInt(offset, ResponseJournal.MAGIC);
+    segment.position += length;
+    segment.liveBytes += length;
+    return new Location(segment, offset, length);
+  }
+
+  private Segment createSegment(int size)
+      throws IOException
+  {
+    final int number = segments.isEmpty() == true ? 1 : segments.get(segments.size() - 1).number + 1;
+    final File file = new File(directory, computeSegmentFileName(number));
+    final Segment segment = new Segment(number, file, map(file, size));
+    segments.add(segment);
+    return segment;
+  }
+
+  /**
+   * Declares the new location of the latest record of a key, the previous one becoming garbage.
+   *
+   * @param location {@code null} when the key is removed
+   */
+  private void supersede(String key, Location location)
+  {
+    final Location previous = index.remove(key);
+    if (previous != null)
+    {
+      previous.segment.liveBytes -= previous.length;
+    }
+    if (location != null)
+    {
+      index.put(key, location);
+    }
+  }
+
+  private void evictAndCompact()
+      throws IOException
+  {
+    while (index.size() > maximumEntriesCount)
+    {
+      appendTombstone(index.keySet().iterator().next());
+    }
+    compact(ResponseJournal.COMPACTION_LIVE_RATIO);
+  }
+
+  /**
+   * Records the removal of a key, so that it survives the reopening of the journal.
+   */
+  private void appendTombstone(String key)
+      throws IOException
+  {
+    final Location tombstone = append(key.getBytes("UTF-8"), new byte[0], null, 0, 0, System.currentTimeMillis());
+    supersede(key, null);
+    // The tombstone is garbage by itself, and it is dropped once its segment is compacted
+    tombstone.segment.liveBytes -= tombstone.length;
+  }
+
+  /**
+   * Appends again the live records of the segments whose live ratio is below the provided one, and deletes those segments. The tombstones of a
+   * segment which is not the oldest one are also kept, because an older segment may still hold a record they supersede.
+   */
+  private void compact(float liveRatio)
+      throws IOException
+  {
+    final Segment activeSegment = segments.isEmpty() == true ? null : segments.get(segments.size() - 1);
+    for (Segment segment : new ArrayList<Segment>(segments))
+    {
+      if (segment == activeSegment || segment.liveBytes >= segment.position * liveRatio)
+      {
+        continue;
+      }
+      final boolean isOldest = segments.get(0) == segment;
+      int liveRecordsCount = 0;
+      int offset = 0;
+      while (offset < segment.position)
+      {
+        final int keyLength = segment.buffer.getInt(offset + 4);
+        final int bodyLength = segment.buffer.getInt(offset + 12);
+        final int length = ResponseJournal.RECORD_HEADER_SIZE + keyLength + segment.buffer.getInt(offset + 8) + Math.max(0, bodyLength);
+        final String key = decode(segment.buffer, offset + ResponseJournal.RECORD_HEADER_SIZE, keyLength);
+        final Location location = index.get(key);
+        if (location != null && location.segment == segment && location.offset == offset)
+        {
+          // The compacted record keeps its rank in the eviction order
+          index.put(key, appendRecord(segment, offset, length));
+          liveRecordsCount++;
+        }
+        else if (bodyLength < 0 && isOldest == false && location == null)
+        {
+          appendRecord(segment, offset, length).segment.liveBytes -= length;
+        }
+        offset += length;
+      }
+      segments.remove(segment);
+      if (segment.file.delete() == false && log.isWarnEnabled())
+      {
+        log.warn("Could not delete the compacted journal segment '" + segment.file.getName() + "'");
+      }
+      if (log.isDebugEnabled())
+      {
+        log.debug("Compacted the journal segment '" + segment.file.getName() + "', which held " + liveRecordsCount + " live response(s)");
+      }
+    }
+  }
+
+  /**
+   * Copies a record of a segment at the end of the journal.
+   */
+  private Location appendRecord(Segment sourceSegment, int sourceOffset, int length)
+      throws IOException
+  {
+    Segment segment = segments.get(segments.size() - 1);
+    if (segment.position + length > segment.buffer.capacity())
+    {
+      segment = createSegment(Math.max(segmentSizeInBytes, length));
+    }
+    final ByteBuffer source = sourceSegment.buffer.duplicate();
+    source.position(sourceOffset + 4);
+    source.limit(sourceOffset + length);
+    final ByteBuffer buffer = segment.buffer.duplicate();
+    final int offset = segment.position;
+    buffer.position(offset + 4);
+    buffer.put(source);
+    // The magic number is written last, so that a record is only considered once complete
+    buffer.putInt(offset, ResponseJournal.MAGIC);
+    segment.position += length;
+    segment.liveBytes += length;
+    return new Location(segment, offset, length);
+  }
+
+  private Entry readEntry(String key, Location location)
+  {
+    final ByteBuffer buffer = location.segment.buffer;
+    final int keyLength = buffer.getInt(location.offset + 4);
+    final int headersLength = buffer.getInt(location.offset + 8);
+    final int bodyLength = buffer.getInt(location.offset + 12);
+    final long timestamp = buffer.getLong(location.offset + 16);
+    final int headersOffset = location.offset + ResponseJournal.RECORD_HEADER_SIZE + keyLength;
+    final ByteBuffer body = buffer.asReadOnlyBuffer();
+    body.position(headersOffset + headersLength);
+    body.limit(headersOffset + headersLength + bodyLength);
+    return new Entry(key, timestamp, decodeHeaders(decode(buffer, headersOffset, headersLength)), body.slice());
+  }
+
+  private static String computeSegmentFileName(int number)
+  {
+    return ResponseJournal.SEGMENT_PREFIX + String.format("%08d", number) + ResponseJournal.SEGMENT_EXTENSION;
+  }
+
+  private static MappedByteBuffer map(File file, int size)
+      throws IOException
+  {
+    final RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+    try
+    {
+      // The mapping remains valid once the channel is closed
+      return randomAccessFile.getChannel().map(MapMode.READ_WRITE, 0, size);
+    }
+    finally
+    {
+      randomAccessFile.close();
+    }
+  }
+
+  private static long computeChecksum(ByteBuffer buffer, int offset, int length)
+  {
+    final CRC32 crc = new CRC32();
+    final byte[] chunk = new byte[Math.min(8192, Math.max(1, length))];
+    final ByteBuffer view = buffer.duplicate();
+    view.position(offset);
+    int remaining = length;
+    while (remaining > 0)
+    {
+      final int count = Math.min(chunk.length, remaining);
+      view.get(chunk, 0, count);
+      crc.update(chunk, 0, count);
+      remaining -= count;
+    }
+    return crc.getValue();
+  }
+
+  private static byte[] encodeHeaders(Map<String, String> headers)
+      throws UnsupportedEncodingException
+  {
+    if (headers == null || headers.isEmpty() == true)
+    {
+      return new byte[0];
+    }
+    final StringBuilder builder = new StringBuilder();
+    for (Map.Entry<String, String> header : headers.entrySet())
+    {
+      if (header.getKey() != null && header.getValue() != null)
+      {
+        builder.append(header.getKey()).append(": ").append(header.getValue().replace('\n', ' ')).append('\n');
+      }
+    }
+    return builder.toString().getBytes("UTF-8");
+  }
+
+  private static Map<String, String> decodeHeaders(String text)
+  {
+    if (text.length() == 0)
+    {
+      return Collections.emptyMap();
+    }
+    final Map<String, String> headers = new TreeMap<String, String>(String.CASE_INSENSITIVE_ORDER);
+    for (String line : text.split("\n"))
+    {
+      final int index = line.indexOf(": ");
+      if (index > 0)
+      {
+        headers.put(line.substring(0, index), line.substring(index + 2));
+      }
+    }
+    return Collections.unmodifiableMap(headers);
+  }
+
+  private static String decode(ByteBuffer buffer, int offset, int length)
+  {
+    final byte[] bytes = new byte[length];
+    final ByteBuffer view = buffer.duplicate();
+    view.position(offset);
+    view.get(bytes);
+    try
+    {
+      return new String(bytes, "UTF-8");
+    }
+    catch (UnsupportedEncodingException exception)
+    {
+      throw new IllegalStateException(exception);
+    }
+  }
+
+}
@@ -0,0 +1,177 @@
+// The MIT License (MIT)
+//
+// Copyright (c) 2017 Smart&Soft
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+// SOFTWARE.
+
+package com.smartnsoft.droid4me.ext.ws;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.smartnsoft.droid4me.ext.ws.CallTimings.Phase;
+
+/**
+ * Derives the time-outs and the hedging delay of the calls from the latency percentiles of their endpoint, instead of relying on fixed values.
+ * <p>
+ * As long as an endpoint has not been called enough times, the time-outs set on the caller are used, and its calls are not hedged. Once
+ * enough calls have been measured:
+ * <ul>
+ * <li>the connection and read time-outs are a multiple of the p99 of the related phase, within the bounds of the minimum time-out and of the
+ * time-outs set on the caller;</li>
+ * <li>an idempotent call which has not completed after the p95 of the endpoint total duration is duplicated, the first response being used and
+ * the other call being cancelled, the delay never being lower than the minimum hedging delay.</li>
+ * </ul>
+ * </p>
+ *
+ * @see JacksonURLConnectionWebServiceCaller#setTailLatencyPolicy(TailLatencyPolicy)
+ * @since 2026.10.19
+ */
+public final class TailLatencyPolicy
+{
+
+  public static final int DEFAULT_MINIMUM_SAMPLES_COUNT = 20;
+
+  public static final int DEFAULT_HEDGING_PERCENTILE = 95;
+
+  public static final int DEFAULT_TIME_OUT_MULTIPLIER = 3;
+
+  public static final int DEFAULT_MINIMUM_TIME_OUT_IN_MILLISECONDS = 1000;
+
+  public static final int DEFAULT_MINIMUM_HEDGING_DELAY_IN_MILLISECONDS = 50;
+
+  private final int minimumSamplesCount;
+
+  private final int hedgingPercentile;
+
+  private final int timeOutMultiplier;
+
+  private final int minimumTimeOutInMilliseconds;
+
+  private final int minimumHedgingDelayInMilliseconds;
+
+  private final AtomicLong hedgesCount = new AtomicLong();
+
+  private final AtomicLong hedgeWinsCount = new AtomicLong();
+
+  public TailLatencyPolicy()
+  {
+    this(TailLatencyPolicy.DEFAULT_MINIMUM_SAMPLES_COUNT, TailLatencyPolicy.DEFAULT_HEDGING_PERCENTILE, TailLatencyPolicy.DEFAULT_TIME_OUT_MULTIPLIER, TailLatencyPolicy.DEFAULT_MINIMUM_TIME_OUT_IN_MILLISECONDS);
+  }
+
+  public TailLatencyPolicy(int minimumSamplesCount, int hedgingPercentile, int timeOutMultiplier,
+      int minimumTimeOutInMilliseconds)
+  {
+    this(minimumSamplesCount, hedgingPercentile, timeOutMultiplier, minimumTimeOutInMilliseconds, TailLatencyPolicy.DEFAULT_MINIMUM_HEDGING_DELAY_IN_MILLISECONDS);
+  }
+
+  /**
+   * @param minimumSamplesCount               the number of calls an endpoint must have been measured on before its percentiles are used
+   * @param hedgingPercentile                 the percentile of the endpoint total duration after which an idempotent call is duplicated
+   * @param timeOutMultiplier                 the factor applied to the p99 of the connection and first byte durations for computing the time-outs
+   * @param minimumTimeOutInMilliseconds      the lowest time-out ever used
+   * @param minimumHedgingDelayInMilliseconds the lowest hedging delay ever used, so that a very fast endpoint does not get all its calls
+   *                                          duplicated
+   */
+  public TailLatencyPolicy(int minimumSamplesCount, int hedgingPercentile, int timeOutMultiplier,
+      int minimumTimeOutInMilliseconds, int minimumHedgingDelayInMilliseconds)
+  {
+    this.minimumSamplesCount = Math.max(1, minimumSamplesCount);
+    this.hedgingPercentile = hedgingPercentile;
+    this.timeOutMultiplier = timeOutMultiplier;
+    this.minimumTimeOutInMilliseconds = minimumTimeOutInMilliseconds;
+    this.minimumHedgingDelayInMilliseconds = Math.max(0, minimumHedgingDelayInMilliseconds);
+  }
+
+  /**
+   * @return the number of calls which have been duplicated
+   */
+  public long getHedgesCount()
+  {
+    return hedgesCount.get();
+  }
+
+  /**
+   * @return the number of duplicated calls whose duplicate responded first
+   */
+  public long getHedgeWinsCount()
+  {
+    return hedgeWinsCount.get();
+  }
+
+  /**
+   * @return the delay after which a call to the given endpoint should be duplicated, or {@code -1} if not enough calls have been measured
+   */
+  public long computeHedgingDelayInMilliseconds(EndpointStatistics endpointStatistics, String endpoint)
+  {
+    if (endpointStatistics.getCallsCount(endpoint) < minimumSamplesCount)
+    {
+      return -1;
+    }
+    final long percentile = endpointStatistics.getPercentile(endpoint, Phase.Total, hedgingPercentile);
+    return percentile < 0 ? -1 : Math.max(minimumHedgingDelayInMilliseconds, percentile);
+  }
+
+  /**
+   * @param defaultTimeOutInMilliseconds the time-out set on the caller, which is also the upper bound
+   * @return the connection time-out to use for the given endpoint
+   */
+  public int computeConnectTimeOutInMilliseconds(EndpointStatistics endpointStatistics, String endpoint,
+      int defaultTimeOutInMilliseconds)
+  {
+    return computeTimeOut(endpointStatistics, endpoint, Phase.Connect, defaultTimeOutInMilliseconds);
+  }
+
+  /**
+   * @param defaultTimeOutInMilliseconds the time-out set on the caller, which is also the upper bound
+   * @return the read time-out to use for the given endpoint
+   */
+  public int computeReadTimeOutInMilliseconds(EndpointStatistics endpointStatistics, String endpoint,
+      int defaultTimeOutInMilliseconds)
+  {
+    return computeTimeOut(endpointStatistics, endpoint, Phase.FirstByte, defaultTimeOutInMilliseconds);
+  }
+
+  void onHedge()
+  {
+    hedgesCount.incrementAndGet();
+  }
+
+  void onHedgeWin()
+  {
+    hedgeWinsCount.incrementAndGet();
+  }
+
+  private int computeTimeOut(EndpointStatistics endpointStatistics, String endpoint, Phase phase,
+      int defaultTimeOutInMilliseconds)
+  {
+    if (endpointStatistics.getCallsCount(endpoint) < minimumSamplesCount)
+    {
+      return defaultTimeOutInMilliseconds;
+    }
+    final long percentile = endpointStatistics.getPercentile(endpoint, phase, 99);
+    if (percentile < 0)
+    {
+      return defaultTimeOutInMilliseconds;
+    }
+    final long timeOut = Math.max(minimumTimeOutInMilliseconds, percentile * timeOutMultiplier);
+    // A zero time-out means an infinite one
+    return defaultTimeOutInMilliseconds <= 0 ? (int) timeOut : (int) Math.min(defaultTimeOutInMilliseconds, timeOut);
+  }
+
+}
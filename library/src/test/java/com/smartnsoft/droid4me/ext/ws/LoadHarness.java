@@ -0,0 +1,275 @@
+// The MIT License (MIT)
+//
+// Copyright (c) 2017 Smart&Soft
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+// SOFTWARE.
+
+package com.smartnsoft.droid4me.ext.ws;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.smartnsoft.droid4me.ext.ws.JacksonURLConnectionWebServiceCaller.Call;
+import com.smartnsoft.droid4me.ws.WebServiceClient.CallException;
+
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.JsonNode;
+
+/**
+ * Runs a web service call from many concurrent threads and reports the throughput, the latency percentiles and the memory allocations, so that
+ * the features of the web service layer can be compared against a {@link StandInServer}.
+ * <p>
+ * The {@link #main(String[])} method runs the stock scenario on a plain JVM, for instance through the "loadTest" Gradle task:
+ * {@code ./gradlew :library:loadTest -Pcallers=16 -Pcalls=200 -Pmode=hedged}.
+ * </p>
+ *
+ * @since 2026.10.19
+ */
+public final class LoadHarness
+{
+
+  /**
+   * The outcome of a run.
+   */
+  public static final class Report
+  {
+
+    public final int callsCount;
+
+    public final int failuresCount;
+
+    public final long durationInMilliseconds;
+
+    /**
+     * The sorted latencies of the successful calls, in microseconds.
+     */
+    private final long[] latenciesInMicroseconds;
+
+    /**
+     * The number of bytes allocated by the calling threads, which excludes the executors used by some features, or {@code -1} if the JVM cannot
+     * measure it.
+     */
+    public final long allocatedBytes;
+
+    private Report(int callsCount, int failuresCount, long durationInMilliseconds, long[] latenciesInMicroseconds, long allocatedBytes)
+    {
+      this.callsCount = callsCount;
+      this.failuresCount = failuresCount;
+      this.durationInMilliseconds = durationInMilliseconds;
+      this.latenciesInMicroseconds = latenciesInMicroseconds;
+      this.allocatedBytes = allocatedBytes;
+    }
+
+    public double getThroughput()
+    {
+      return durationInMilliseconds <= 0 ? 0d : (callsCount - failuresCount) * 1000d / durationInMilliseconds;
+    }
+
+    /**
+     * @param percentile a value between 0 and 100
+     * @return the latency of the successful calls at the given percentile, in milliseconds
+     */
+    public double getLatencyInMilliseconds(double percentile)
+    {
+      if (latenciesInMicroseconds.length == 0)
+      {
+        return 0d;
+      }
+      final int index = (int) Math.ceil(percentile / 100d * latenciesInMicroseconds.length) - 1;
+      return latenciesInMicroseconds[Math.max(0, Math.min(latenciesInMicroseconds.length - 1, index))] / 1000d;
+    }
+
+    @Override
+    public String toString()
+    {
+      return String.format(Locale.ENGLISH,
+          "%d call(s), %d failure(s) in %d ms: %.1f call(s)/s, latency p50=%.1f ms p90=%.1f ms p99=%.1f ms max=%.1f ms, %s allocated per call",
+          callsCount, failuresCount, durationInMilliseconds, getThroughput(), getLatencyInMilliseconds(50), getLatencyInMilliseconds(90),
+          getLatencyInMilliseconds(99), getLatencyInMilliseconds(100),
+          allocatedBytes < 0 ? "unknown bytes" : (allocatedBytes / Math.max(1, callsCount)) + " bytes");
+    }
+
+  }
+
+  /**
+   * A caller which exposes the features under test.
+   */
+  private static final class HarnessWebServiceCaller
+      extends JacksonURLConnectionWebServiceCaller
+  {
+
+    private HarnessWebServiceCaller()
+    {
+      super(10000, 5000, true);
+    }
+
+    private JsonNode getJson(String mode, String uri, JavaType javaType)
+        throws CallException
+    {
+      if ("hedged".equals(mode) == true)
+      {
+        return getJsonHedged(uri, null, javaType);
+      }
+      // When the batching is disabled, the call is run on its own
+      return getJsonBatched(uri, null, javaType);
+    }
+
+  }
+
+  /**
+   * Runs the provided call the given number of times from each calling thread, all the threads starting at the same time.
+   *
+   * @param callersCount the number of concurrent threads
+   * @param callsCount   the number of calls run by each thread, one after the other
+   * @param call         the call to measure, which should throw an exception when it fails
+   * @return the measures
+   */
+  public static Report run(int callersCount, final int callsCount, final Call<?> call)
+      throws InterruptedException
+  {
+    final ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+    final com.sun.management.ThreadMXBean allocationsMXBean = threadMXBean instanceof com.sun.management.ThreadMXBean ? (com.sun.management.ThreadMXBean) threadMXBean : null;
+    final CountDownLatch startLatch = new CountDownLatch(1);
+    final CountDownLatch endLatch = new CountDownLatch(callersCount);
+    final long[] latencies = new long[callersCount * callsCount];
+    final AtomicLong latenciesCount = new AtomicLong();
+    final AtomicLong failuresCount = new AtomicLong();
+    final AtomicLong allocatedBytes = new AtomicLong(allocationsMXBean == null ? -1 : 0);
+    for (int index = 0; index < callersCount; index++)
+    {
+      final Thread thread = new Thread(new Runnable()
+      {
+        @Override
+        public void run()
+        {
+          try
+          {
+            startLatch.await();
+            final long startAllocatedBytes = allocationsMXBean == null ? 0 : allocationsMXBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+            for (int callIndex = 0; callIndex < callsCount; callIndex++)
+            {
+              final long start = System.nanoTime();
+              try
+              {
+                call.call();
+                final long latency = (System.nanoTime() - start) / 1000;
+                synchronized (latencies)
+                {
+                  latencies[(int) latenciesCount.getAndIncrement()] = latency;
+                }
+              }
+              catch (Exception exception)
+              {
+                failuresCount.incrementAndGet();
+              }
+            }
+            if (allocationsMXBean != null)
+            {
+              allocatedBytes.addAndGet(allocationsMXBean.getThreadAllocatedBytes(Thread.currentThread().getId()) - startAllocatedBytes);
+            }
+          }
+          catch (InterruptedException exception)
+          {
+            Thread.currentThread().interrupt();
+          }
+          finally
+          {
+            endLatch.countDown();
+          }
+        }
+      }, "LoadHarness-" + index);
+      thread.start();
+    }
+    final long start = System.currentTimeMillis();
+    startLatch.countDown();
+    endLatch.await();
+    final long duration = System.currentTimeMillis() - start;
+    final long[] sortedLatencies;
+    synchronized (latencies)
+    {
+      sortedLatencies = Arrays.copyOf(latencies, (int) latenciesCount.get());
+    }
+    Arrays.sort(sortedLatencies);
+    return new Report(callersCount * callsCount, (int) failuresCount.get(), duration, sortedLatencies, allocatedBytes.get());
+  }
+
+  /**
+   * Runs the stock scenario: a JSON resource served with a jittered latency, gzip-encoded and chunked, with some injected errors.
+   *
+   * @param arguments the number of concurrent callers, the number of calls per caller, and the mode among "plain", "hedged" and "batched"
+   */
+  public static void main(String[] arguments)
+      throws Exception
+  {
+    final int callersCount = arguments.length > 0 ? Integer.parseInt(arguments[0]) : 8;
+    final int callsCount = arguments.length > 1 ? Integer.parseInt(arguments[1]) : 100;
+    final String mode = arguments.length > 2 ? arguments[2] : "plain";
+
+    final StandInServer server = new StandInServer();
+    try
+    {
+      final StringBuilder body = new StringBuilder("{\"items\":[");
+      for (int index = 0; index < 200; index++)
+      {
+        body.append(index == 0 ? "" : ",").append("{\"id\":").append(index).append(",\"label\":\"Item #").append(index).append("\"}");
+      }
+      body.append("]}");
+      server.route("/items").setBody(body.toString()).setLatency(20, 80).setGzip(true).setChunked(true).setErrorRate(0.01, 503);
+      server.route("/batch").setBatch(true).setLatency(20, 80);
+
+      final HarnessWebServiceCaller caller = new HarnessWebServiceCaller();
+      if ("hedged".equals(mode) == true)
+      {
+        caller.setTailLatencyPolicy(new TailLatencyPolicy());
+      }
+      else if ("batched".equals(mode) == true)
+      {
+        caller.setBatching(server.getBaseUri() + "/batch", 10, 16);
+      }
+      final String uri = server.getBaseUri() + "/items";
+      final JavaType javaType = caller.jacksonParser.getObjectMapper().constructType(JsonNode.class);
+      final Call<JsonNode> call = new Call<JsonNode>()
+      {
+        @Override
+        public JsonNode call()
+            throws CallException
+        {
+          return caller.getJson(mode, uri, javaType);
+        }
+      };
+
+      // The first run warms the JIT compiler and the connection pool up, and is not reported
+      LoadHarness.run(callersCount, Math.max(1, callsCount / 10), call);
+      final long requestsCount = server.getRequestsCount();
+      final long connectionsCount = server.getConnectionsCount();
+      final Report report = LoadHarness.run(callersCount, callsCount, call);
+      System.out.println("Mode '" + mode + "' with " + callersCount + " caller(s): " + report);
+      System.out.println((server.getRequestsCount() - requestsCount) + " HTTP request(s) over " + (server.getConnectionsCount() - connectionsCount) + " new connection(s)");
+    }
+    finally
+    {
+      server.close();
+    }
+  }
+
+}
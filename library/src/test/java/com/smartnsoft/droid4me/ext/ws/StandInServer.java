@@ -0,0 +1,610 @@
+// The MIT License (MIT)
+//
+// Copyright (c) 2017 Smart&Soft
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+// SOFTWARE.
+
+package com.smartnsoft.droid4me.ext.ws;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+/**
+ * A minimal HTTP/1.1 server, which stands in for the backends when testing the web service callers on a plain JVM: every route serves a fixed
+ * body, with a scripted latency, bandwidth, transfer encoding and content encoding, and with injected failures.
+ * <p>
+ * The server supports the persistent connections, the chunked request bodies, and the {@code Range} requests. A route may also be declared as
+ * a batch endpoint, in which case it implements the protocol described in {@link RequestBatcher} against the other routes.
+ * </p>
+ *
+ * @since 2026.10.19
+ */
+public final class StandInServer
+    implements Closeable
+{
+
+  /**
+   * The behaviour of a route, which may be changed while the server is running.
+   */
+  public static final class Route
+  {
+
+    private volatile byte[] body = new byte[0];
+
+    private volatile String contentType = "application/json";
+
+    private volatile int statusCode = 200;
+
+    private volatile long latencyInMilliseconds;
+
+    private volatile long latencyJitterInMilliseconds;
+
+    private volatile long bytesPerSecond;
+
+    private volatile boolean chunked;
+
+    private volatile boolean gzip;
+
+    private volatile double errorRate;
+
+    private volatile int errorStatusCode = 503;
+
+    private volatile double resetRate;
+
+    private volatile double truncationRate;
+
+    private volatile boolean batch;
+
+    public Route setBody(byte[] body)
+    {
+      this.body = body;
+      return this;
+    }
+
+    public Route setBody(String body)
+    {
+      try
+      {
+        return setBody(body.getBytes("UTF-8"));
+      }
+      catch (IOException exception)
+      {
+        throw new IllegalStateException(exception);
+      }
+    }
+
+    public Route setContentType(String contentType)
+    {
+      this.contentType = contentType;
+      return this;
+    }
+
+    public Route setStatusCode(int statusCode)
+    {
+      this.statusCode = statusCode;
+      return this;
+    }
+
+    /**
+     * @param latencyInMilliseconds the delay before the response headers are sent
+     * @param jitterInMilliseconds  a random delay, between 0 and that value, which is added to the latency
+     */
+    public Route setLatency(long latencyInMilliseconds, long jitterInMilliseconds)
+    {
+      this.latencyInMilliseconds = latencyInMilliseconds;
+      this.latencyJitterInMilliseconds = jitterInMilliseconds;
+      return this;
+    }
+
+    /**
+     * @param bytesPerSecond the throughput the body is sent with, {@code 0} meaning that it is not throttled
+     */
+    public Route setBandwidth(long bytesPerSecond)
+    {
+      this.bytesPerSecond = bytesPerSecond;
+      return this;
+    }
+
+    public Route setChunked(boolean chunked)
+    {
+      this.chunked = chunked;
+      return this;
+    }
+
+    /**
+     * @param gzip whether the body is gzip-encoded, provided the request accepts it
+     */
+    public Route setGzip(boolean gzip)
+    {
+      this.gzip = gzip;
+      return this;
+    }
+
+    /**
+     * @param errorRate       the ratio of the requests answered with the error status code
+     * @param errorStatusCode the status code of the injected errors
+     */
+    public Route setErrorRate(double errorRate, int errorStatusCode)
+    {
+      this.errorRate = errorRate;
+      this.errorStatusCode = errorStatusCode;
+      return this;
+    }
+
+    /**
+     * @param resetRate the ratio of the requests whose connection is closed without any response
+     */
+    public Route setResetRate(double resetRate)
+    {
+      this.resetRate = resetRate;
+      return this;
+    }
+
+    /**
+     * @param truncationRate the ratio of the requests whose connection is closed in the middle of the body
+     */
+    public Route setTruncationRate(double truncationRate)
+    {
+      this.truncationRate = truncationRate;
+      return this;
+    }
+
+    /**
+     * Turns the route into a batch endpoint.
+     */
+    public Route setBatch(boolean batch)
+    {
+      this.batch = batch;
+      return this;
+    }
+
+  }
+
+  private static final class Request
+  {
+
+    private String method;
+
+    private String path;
+
+    private final Map<String, String> headers = new TreeMap<String, String>(String.CASE_INSENSITIVE_ORDER);
+
+    private byte[] body;
+
+  }
+
+  private final ServerSocket serverSocket;
+
+  private final ExecutorService executor = Executors.newCachedThreadPool();
+
+  private final Map<String, Route> routes = new ConcurrentHashMap<String, Route>();
+
+  private final Map<Socket, Boolean> sockets = new ConcurrentHashMap<Socket, Boolean>();
+
+  private final Random random = new Random();
+
+  private final ObjectMapper objectMapper = new ObjectMapper();
+
+  private final AtomicLong requestsCount = new AtomicLong();
+
+  private final AtomicLong connectionsCount = new AtomicLong();
+
+  private volatile boolean closed;
+
+  /**
+   * Starts a server listening on the loopback interface, on an ephemeral port.
+   */
+  public StandInServer()
+      throws IOException
+  {
+    serverSocket = new ServerSocket(0, 128, InetAddress.getByName("127.0.0.1"));
+    executor.execute(new Runnable()
+    {
+      @Override
+      public void run()
+      {
+        accept();
+      }
+    });
+  }
+
+  /**
+   * @return the base URI of the server, without any trailing slash
+   */
+  public String getBaseUri()
+  {
+    return "http://127.0.0.1:" + serverSocket.getLocalPort();
+  }
+
+  /**
+   * Declares a route, or returns the existing one.
+   *
+   * @param path the path of the route, without its query string, which is ignored when routing
+   */
+  public Route route(String path)
+  {
+    Route route = routes.get(path);
+    if (route == null)
+    {
+      route = new Route();
+      routes.put(path, route);
+    }
+    return route;
+  }
+
+  public long getRequestsCount()
+  {
+    return requestsCount.get();
+  }
+
+  /**
+   * @return the number of accepted connections, which reveals whether the persistent connections are reused
+   */
+  public long getConnectionsCount()
+  {
+    return connectionsCount.get();
+  }
+
+  @Override
+  public void close()
+      throws IOException
+  {
+    closed = true;
+    serverSocket.close();
+    // A thread blocked on a persistent connection ignores the interruption, hence the sockets are closed
+    for (Socket socket : sockets.keySet())
+    {
+      socket.close();
+    }
+    executor.shutdownNow();
+  }
+
+  private void accept()
+  {
+    while (closed == false)
+    {
+      try
+      {
+        final Socket socket = serverSocket.accept();
+        connectionsCount.incrementAndGet();
+        sockets.put(socket, Boolean.TRUE);
+        executor.execute(new Runnable()
+        {
+          @Override
+          public void run()
+          {
+            serve(socket);
+          }
+        });
+      }
+      catch (IOException exception)
+      {
+        // The server has been closed
+      }
+    }
+  }
+
+  private void serve(Socket socket)
+  {
+    try
+    {
+      socket.setTcpNoDelay(true);
+      final InputStream inputStream = new BufferedInputStream(socket.getInputStream());
+      final OutputStream outputStream = socket.getOutputStream();
+      Request request;
+      while ((request = readRequest(inputStream)) != null)
+      {
+        requestsCount.incrementAndGet();
+        if (respond(request, outputStream) == false || "close".equalsIgnoreCase(request.headers.get("Connection")) == true)
+        {
+          break;
+        }
+      }
+    }
+    catch (IOException exception)
+    {
+      // The client has closed the connection
+    }
+    finally
+    {
+      sockets.remove(socket);
+      try
+      {
+        socket.close();
+      }
+      catch (IOException exception)
+      {
+        // We cannot do anything :(
+      }
+    }
+  }
+
+  /**
+   * @return {@code false} if the connection must be closed
+   */
+  private boolean respond(Request request, OutputStream outputStream)
+      throws IOException
+  {
+    final int queryIndex = request.path.indexOf('?');
+    final Route route = routes.get(queryIndex == -1 ? request.path : request.path.substring(0, queryIndex));
+    if (route == null)
+    {
+      writeResponse(outputStream, request, 404, "text/plain", "Not found".getBytes("UTF-8"), false, false, 0, false);
+      return true;
+    }
+    sleep(route.latencyInMilliseconds + (route.latencyJitterInMilliseconds > 0 ? (long) (random.nextDouble() * route.latencyJitterInMilliseconds) : 0));
+    if (random.nextDouble() < route.resetRate)
+    {
+      return false;
+    }
+    if (random.nextDouble() < route.errorRate)
+    {
+      writeResponse(outputStream, request, route.errorStatusCode, "text/plain", "Injected error".getBytes("UTF-8"), false, false, 0, false);
+      return true;
+    }
+    final byte[] body = route.batch == true ? computeBatchBody(request) : route.body;
+    final boolean gzip = route.gzip == true && String.valueOf(request.headers.get("Accept-Encoding")).contains("gzip") == true;
+    final boolean truncated = random.nextDouble() < route.truncationRate;
+    writeResponse(outputStream, request, route.statusCode, route.contentType, body, route.chunked, gzip, route.bytesPerSecond, truncated);
+    return truncated == false;
+  }
+
+  private byte[] computeBatchBody(Request request)
+      throws IOException
+  {
+    final JsonNode requests = objectMapper.readTree(request.body).path("requests");
+    final ObjectNode response = objectMapper.createObjectNode();
+    final ArrayNode responses = response.putArray("responses");
+    for (JsonNode batchedRequest : requests)
+    {
+      final ObjectNode batchedResponse = responses.addObject();
+      batchedResponse.put("id", batchedRequest.path("id").asText());
+      String path = batchedRequest.path("uri").asText();
+      if (path.startsWith(getBaseUri()) == true)
+      {
+        path = path.substring(getBaseUri().length());
+      }
+      final int queryIndex = path.indexOf('?');
+      final Route route = routes.get(queryIndex == -1 ? path : path.substring(0, queryIndex));
+      if (route == null || route.batch == true)
+      {
+        batchedResponse.put("status", 404);
+      }
+      else if (random.nextDouble() < route.errorRate)
+      {
+        batchedResponse.put("status", route.errorStatusCode);
+      }
+      else
+      {
+        batchedResponse.put("status", route.statusCode);
+        batchedResponse.set("body", objectMapper.readTree(route.body));
+      }
+    }
+    return objectMapper.writeValueAsBytes(response);
+  }
+
+  private void writeResponse(OutputStream outputStream, Request request, int statusCode, String contentType,
+      byte[] body, boolean chunked, boolean gzip, long bytesPerSecond, boolean truncated)
+      throws IOException
+  {
+    byte[] payload = body;
+    if (gzip == true)
+    {
+      final ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+      final GZIPOutputStream gzipOutputStream = new GZIPOutputStream(byteArrayOutputStream);
+      gzipOutputStream.write(body);
+      gzipOutputStream.close();
+      payload = byteArrayOutputStream.toByteArray();
+    }
+    int start = 0;
+    int end = payload.length - 1;
+    final String range = request.headers.get("Range");
+    boolean partial = false;
+    if (range != null && statusCode == 200 && gzip == false && range.startsWith("bytes=") == true)
+    {
+      final String[] bounds = range.substring("bytes=".length()).split("-", -1);
+      start = Integer.parseInt(bounds[0]);
+      end = bounds[1].length() == 0 ? payload.length - 1 : Math.min(payload.length - 1, Integer.parseInt(bounds[1]));
+      partial = true;
+    }
+    final boolean isHead = "HEAD".equals(request.method);
+    final StringBuilder headers = new StringBuilder("HTTP/1.1 ").append(partial == true ? 206 : statusCode).append(" Stand-in\r\n");
+    headers.append("Content-Type: ").append(contentType).append("\r\n");
+    headers.append("Accept-Ranges: bytes\r\n");
+    headers.append("ETag: \"").append(Integer.toHexString(Arrays.hashCode(body))).append("\"\r\n");
+    if (gzip == true)
+    {
+      headers.append("Content-Encoding: gzip\r\n");
+    }
+    if (partial == true)
+    {
+      headers.append("Content-Range: bytes ").append(start).append('-').append(end).append('/').append(payload.length).append("\r\n");
+    }
+    if (chunked == true && isHead == false)
+    {
+      headers.append("Transfer-Encoding: chunked\r\n");
+    }
+    else
+    {
+      headers.append("Content-Length: ").append(isHead == true ? payload.length : end - start + 1).append("\r\n");
+    }
+    headers.append("\r\n");
+    outputStream.write(headers.toString().getBytes("ISO-8859-1"));
+    if (isHead == true)
+    {
+      outputStream.flush();
+      return;
+    }
+    final int length = truncated == true ? (end - start + 1) / 2 : end - start + 1;
+    final int sliceSize = bytesPerSecond > 0 ? (int) Math.max(1, Math.min(8192, bytesPerSecond / 20)) : 8192;
+    int offset = start;
+    while (offset < start + length)
+    {
+      final int count = Math.min(sliceSize, start + length - offset);
+      if (chunked == true)
+      {
+        outputStream.write((Integer.toHexString(count) + "\r\n").getBytes("ISO-8859-1"));
+      }
+      outputStream.write(payload, offset, count);
+      if (chunked == true)
+      {
+        outputStream.write("\r\n".getBytes("ISO-8859-1"));
+      }
+      offset += count;
+      if (bytesPerSecond > 0)
+      {
+        outputStream.flush();
+        sleep(count * 1000L / bytesPerSecond);
+      }
+    }
+    if (chunked == true && truncated == false)
+    {
+      outputStream.write("0\r\n\r\n".getBytes("ISO-8859-1"));
+    }
+    outputStream.flush();
+  }
+
+  private Request readRequest(InputStream inputStream)
+      throws IOException
+  {
+    final String requestLine = readLine(inputStream);
+    if (requestLine == null || requestLine.length() == 0)
+    {
+      return null;
+    }
+    final String[] tokens = requestLine.split(" ");
+    final Request request = new Request();
+    request.method = tokens[0].toUpperCase(Locale.ENGLISH);
+    request.path = tokens.length > 1 ? tokens[1] : "/";
+    String line;
+    while ((line = readLine(inputStream)) != null && line.length() > 0)
+    {
+      final int index = line.indexOf(':');
+      if (index > 0)
+      {
+        request.headers.put(line.substring(0, index).trim(), line.substring(index + 1).trim());
+      }
+    }
+    final ByteArrayOutputStream body = new ByteArrayOutputStream();
+    if ("chunked".equalsIgnoreCase(request.headers.get("Transfer-Encoding")) == true)
+    {
+      int chunkSize;
+      while ((chunkSize = Integer.parseInt(readLine(inputStream).split(";")[0].trim(), 16)) > 0)
+      {
+        copy(inputStream, body, chunkSize);
+        readLine(inputStream);
+      }
+      readLine(inputStream);
+    }
+    else if (request.headers.get("Content-Length") != null)
+    {
+      copy(inputStream, body, Integer.parseInt(request.headers.get("Content-Length")));
+    }
+    request.body = body.toByteArray();
+    if ("gzip".equalsIgnoreCase(request.headers.get("Content-Encoding")) == true)
+    {
+      final InputStream gzipInputStream = new GZIPInputStream(new ByteArrayInputStream(request.body));
+      final ByteArrayOutputStream decoded = new ByteArrayOutputStream();
+      final byte[] buffer = new byte[8192];
+      int count;
+      while ((count = gzipInputStream.read(buffer)) != -1)
+      {
+        decoded.write(buffer, 0, count);
+      }
+      request.body = decoded.toByteArray();
+    }
+    return request;
+  }
+
+  private static String readLine(InputStream inputStream)
+      throws IOException
+  {
+    final StringBuilder builder = new StringBuilder();
+    int character;
+    while ((character = inputStream.read()) != -1)
+    {
+      if (character == '\n')
+      {
+        final int length = builder.length();
+        return length > 0 && builder.charAt(length - 1) == '\r' ? builder.substring(0, length - 1) : builder.toString();
+      }
+      builder.append((char) character);
+    }
+    return builder.length() == 0 ? null : builder.toString();
+  }
+
+  private static void copy(InputStream inputStream, OutputStream outputStream, int count)
+      throws IOException
+  {
+    final byte[] buffer = new byte[8192];
+    int remaining = count;
+    while (remaining > 0)
+    {
+      final int read = inputStream.read(buffer, 0, Math.min(buffer.length, remaining));
+      if (read == -1)
+      {
+        throw new SocketException("Unexpected end of the request body");
+      }
+      outputStream.write(buffer, 0, read);
+      remaining -= read;
+    }
+  }
+
+  private static void sleep(long durationInMilliseconds)
+  {
+    if (durationInMilliseconds <= 0)
+    {
+      return;
+    }
+    try
+    {
+      Thread.sleep(durationInMilliseconds);
+    }
+    catch (InterruptedException exception)
+    {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+}